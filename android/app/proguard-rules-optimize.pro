@@ -39,6 +39,7 @@
 	native <methods>;
     private long mNativeObject;
     private org.coolreader.crengine.ReaderCallback readerCallback;
+    private final java.lang.Object mutex;
 }
 
 -keepclassmembers class * implements org.coolreader.crengine.ReaderCallback {
@@ -157,6 +157,7 @@ CRENGINE_SRC_FILES := \
 JNI_SRC_FILES := \
     cr3engine.cpp \
     cr3java.cpp \
+    cr3concurrency.cpp \
     docview.cpp
 
 COFFEECATCH_SRC_FILES := \
@@ -0,0 +1,163 @@
+/*
+ * CoolReader 3 Java Port: crengine concurrency provider.
+ *
+ * Mutexes, monitors and worker threads are based on pthreads, worker threads are attached
+ * to Java VM to allow calls to Java. GUI tasks are not supported: nothing in engine or JNI layer
+ * posts them on Android.
+ *
+ * Engine guards (REF_GUARD, FONT_GUARD, glyph cache guards) are not set up here: jobs running
+ * in worker threads (see cache writer in docview.cpp) take Engine.lock like any Java thread calling
+ * the engine, so guards would only add locking cost.
+ */
+
+#include "cr3concurrency.h"
+#include "cr3java.h"
+#include "../../crengine/include/crlog.h"
+
+#include <pthread.h>
+#include <unistd.h>
+#include <sys/resource.h>
+
+static JavaVM * s_vm = NULL;
+
+class PthreadMutex : public CRMutex {
+    pthread_mutex_t _mutex;
+public:
+    PthreadMutex() {
+        // recursive: engine guards may be nested
+        pthread_mutexattr_t attr;
+        pthread_mutexattr_init(&attr);
+        pthread_mutexattr_settype(&attr, PTHREAD_MUTEX_RECURSIVE);
+        pthread_mutex_init(&_mutex, &attr);
+        pthread_mutexattr_destroy(&attr);
+    }
+    virtual ~PthreadMutex() {
+        pthread_mutex_destroy(&_mutex);
+    }
+    virtual void acquire() {
+        pthread_mutex_lock(&_mutex);
+    }
+    virtual void release() {
+        pthread_mutex_unlock(&_mutex);
+    }
+};
+
+class PthreadMonitor : public CRMonitor {
+    pthread_mutex_t _mutex;
+    pthread_cond_t _cond;
+public:
+    PthreadMonitor() {
+        pthread_mutex_init(&_mutex, NULL);
+        pthread_cond_init(&_cond, NULL);
+    }
+    virtual ~PthreadMonitor() {
+        pthread_cond_destroy(&_cond);
+        pthread_mutex_destroy(&_mutex);
+    }
+    virtual void acquire() {
+        pthread_mutex_lock(&_mutex);
+    }
+    virtual void release() {
+        pthread_mutex_unlock(&_mutex);
+    }
+    virtual void wait() {
+        pthread_cond_wait(&_cond, &_mutex);
+    }
+    virtual void notify() {
+        pthread_cond_signal(&_cond);
+    }
+    virtual void notifyAll() {
+        pthread_cond_broadcast(&_cond);
+    }
+};
+
+class PthreadThread : public CRThread {
+    CRRunnable * _task;
+    pthread_t _thread;
+    bool _started;
+
+    static void * threadProc(void * arg) {
+        PthreadThread * self = (PthreadThread *) arg;
+        JNIEnv * env = NULL;
+        bool attached = s_vm && s_vm->AttachCurrentThread(&env, NULL) == JNI_OK;
+        if (!attached)
+            CRLog::error("cannot attach engine worker thread to Java VM");
+        self->_task->run();
+        if (attached)
+            s_vm->DetachCurrentThread();
+        return NULL;
+    }
+public:
+    PthreadThread(CRRunnable * task) : _task(task), _started(false) { }
+    virtual ~PthreadThread() {
+        if (_started)
+            pthread_detach(_thread);
+    }
+    virtual void start() {
+        if (_started)
+            return;
+        int res = pthread_create(&_thread, NULL, threadProc, this);
+        if (res != 0) {
+            CRLog::error("cannot create engine worker thread, error %d", res);
+            return;
+        }
+        _started = true;
+    }
+    virtual void join() {
+        if (!_started)
+            return;
+        pthread_join(_thread, NULL);
+        _started = false;
+    }
+};
+
+class JNIConcurrencyProvider : public CRConcurrencyProvider {
+public:
+    virtual CRMutex * createMutex() {
+        return new PthreadMutex();
+    }
+    virtual CRMonitor * createMonitor() {
+        return new PthreadMonitor();
+    }
+    virtual CRThread * createThread(CRRunnable * threadTask) {
+        return new PthreadThread(threadTask);
+    }
+    virtual void executeGui(CRRunnable * task) {
+        // no engine code posts GUI tasks on Android: reject instead of running task w/o Engine.lock
+        if (task) {
+            CRLog::error("concurrency provider: GUI tasks are not supported, task is dropped");
+            delete task;
+        }
+    }
+    virtual void executeGui(CRRunnable * task, int delayMillis) {
+        CR_UNUSED(delayMillis);
+        executeGui(task);
+    }
+    virtual void sleepMs(int durationMs) {
+        usleep((useconds_t) durationMs * 1000);
+    }
+    virtual void setThreadPriority(int p) {
+        // nice values of android.os.Process THREAD_PRIORITY_BACKGROUND, DEFAULT and DISPLAY
+        int nice = 0;
+        if (p == CR_THREAD_PRIORITY_LOW)
+            nice = 10;
+        else if (p == CR_THREAD_PRIORITY_HIGH)
+            nice = -4;
+        setpriority(PRIO_PROCESS, 0, nice); // 0 is calling thread on Linux
+    }
+};
+
+void cr3InstallConcurrencyProvider(JNIEnv * env) {
+    if (concurrencyProvider)
+        return;
+    env->GetJavaVM(&s_vm);
+    concurrencyProvider = new JNIConcurrencyProvider();
+    CRLog::info("concurrency provider is installed");
+}
+
+JNIEnv * cr3GetWorkerEnv() {
+    JNIEnv * env = NULL;
+    if (!s_vm || s_vm->GetEnv((void **) &env, JNI_VERSION_1_4) != JNI_OK)
+        return NULL;
+    return env;
+}
@@ -0,0 +1,20 @@
+/*
+ * CoolReader 3 Java Port: crengine concurrency provider.
+ */
+
+#ifndef CR3_CONCURRENCY_H
+#define CR3_CONCURRENCY_H
+
+#include <jni.h>
+
+#include "../../crengine/include/crconcurrent.h"
+
+/// installs concurrency provider based on pthreads, GUI tasks are not supported; call once from Java thread
+/// engine guards are not enabled: engine code in worker threads should run under Engine.lock
+void cr3InstallConcurrencyProvider(JNIEnv * env);
+
+/// returns JNI environment of current thread: worker threads created by provider are attached to Java VM
+/// returns NULL if thread is not attached
+JNIEnv * cr3GetWorkerEnv();
+
+#endif // CR3_CONCURRENCY_H
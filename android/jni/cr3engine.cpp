@@ -16,6 +16,7 @@
 #include "org_coolreader_crengine_DocView.h"
 
 #include "cr3java.h"
+#include "cr3concurrency.h"
 #include "../../crengine/include/cr3version.h"
 #include "docview.h"
 #include "../../crengine/include/crengine.h"
@@ -414,7 +415,8 @@ protected:
 
     virtual void log(const char *lvl, const char *msg, va_list args) {
 #define MAX_LOG_MSG_SIZE 1024
-        static char buffer[MAX_LOG_MSG_SIZE + 1];
+        // may be called from engine worker threads
+        char buffer[MAX_LOG_MSG_SIZE + 1];
         vsnprintf(buffer, MAX_LOG_MSG_SIZE, msg, args);
         int level = ANDROID_LOG_DEBUG;
         //LOGD("CRLog::log is called with LEVEL %s, pattern %s", lvl, msg);
@@ -444,6 +446,35 @@ void cr3androidFatalErrorHandler(int errorCode, const char *errorText) {
     //LOGASSERTFAILED(errorText, "CoolReader Fatal Error #%d: %s", errorCode, errorText);
 }
 
+// font face properties are passed to/from Java as "fileName\tindex\tweight\titalic\tscalable\tfamily\ttypeface"
+static bool parseFontFaceProps(const lString32 &str, font_face_props_t &props) {
+    lString32Collection fields;
+    fields.parse(str, U'\t', false);
+    if (fields.length() != 7)
+        return false;
+    int italic, scalable, family;
+    if (!fields[1].atoi(props.index) || !fields[2].atoi(props.weight)
+            || !fields[3].atoi(italic) || !fields[4].atoi(scalable) || !fields[5].atoi(family))
+        return false;
+    props.fileName = UnicodeToUtf8(fields[0]);
+    props.italic = italic != 0;
+    props.scalable = scalable != 0;
+    props.family = (css_font_family_t) family;
+    props.typeface = UnicodeToUtf8(fields[6]);
+    return !props.fileName.empty();
+}
+
+static lString32 formatFontFaceProps(const font_face_props_t &props) {
+    lString32 str = Utf8ToUnicode(props.fileName);
+    str << "\t" << fmt::decimal(props.index)
+        << "\t" << fmt::decimal(props.weight)
+        << "\t" << (props.italic ? "1" : "0")
+        << "\t" << (props.scalable ? "1" : "0")
+        << "\t" << fmt::decimal((int) props.family)
+        << "\t" << Utf8ToUnicode(props.typeface);
+    return str;
+}
+
 jboolean initInternal(JNIEnv *penv, jclass obj, jobjectArray fontArray, jint sdk_int) {
 
     CRJNIEnv::sdk_int = sdk_int;
@@ -462,6 +493,9 @@ jboolean initInternal(JNIEnv *penv, jclass obj, jobjectArray fontArray, jint sdk
     CRLog::info("CREngine log redirected");
     CRLog::info("CRENGINE version %s %s", CR_ENGINE_VERSION, CR_ENGINE_BUILD_DATE);
 
+    // allow engine to use worker threads
+    cr3InstallConcurrencyProvider(penv);
+
     CRLog::info("initializing hyphenation manager");
     HyphMan::initDictionaries(lString32::empty_str); //don't look for dictionaries
     HyphMan::activateDictionary(lString32(HYPH_DICT_ID_NONE));
@@ -471,8 +505,18 @@ jboolean initInternal(JNIEnv *penv, jclass obj, jobjectArray fontArray, jint sdk
     lString32Collection fonts;
     env.fromJavaStringArray(fontArray, fonts);
     int len = fonts.length();
-    CRLog::debug("registering fonts: %d fonts in list", len);
+    CRLog::debug("registering fonts: %d items in list", len);
+    // items are font files to parse, or properties of font faces from font index to register w/o parsing;
+    // order of items is kept, since it decides which of duplicate faces is registered
     for (int i = 0; i < len; i++) {
+        if (fonts[i].pos(U'\t') >= 0) {
+            font_face_props_t props;
+            if (!parseFontFaceProps(fonts[i], props))
+                CRLog::error("invalid font face properties %s", LCSTR(fonts[i]));
+            else if (!fontMan->RegisterFontFace(props))
+                CRLog::debug("cannot register font face %s[%d]", props.fileName.c_str(), props.index);
+            continue;
+        }
         lString8 fontName = UnicodeToUtf8(fonts[i]);
         CRLog::debug("registering font %s", fontName.c_str());
         if (!fontMan->RegisterFont(fontName))
@@ -928,6 +972,41 @@ JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_Engine_getFontFaceLi
 	return env.toJavaStringArray(list);
 }
 
+/*
+ * Class:     org_coolreader_crengine_Engine
+ * Method:    getFontFacePropsListInternal
+ * Signature: ()[Ljava/lang/String;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_Engine_getFontFacePropsListInternal
+        (JNIEnv * penv, jclass cls)
+{
+    LOGI("getFontFacePropsListInternal called");
+    CRJNIEnv env(penv);
+    lString32Collection list;
+    COFFEE_TRY_JNI(penv, {
+        LVArray<font_face_props_t> faces;
+        fontMan->getFontFacePropsList(faces);
+        for (int i = 0; i < faces.length(); i++)
+            list.add(formatFontFaceProps(faces[i]));
+    });
+    return env.toJavaStringArray(list);
+}
+
+/*
+ * Class:     org_coolreader_crengine_Engine
+ * Method:    getDuplicateFontFileListInternal
+ * Signature: ()[Ljava/lang/String;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_Engine_getDuplicateFontFileListInternal
+        (JNIEnv * penv, jclass cls)
+{
+    LOGI("getDuplicateFontFileListInternal called");
+    CRJNIEnv env(penv);
+    lString32Collection list;
+    COFFEE_TRY_JNI(penv, fontMan->getDuplicateFontFileList(list));
+    return env.toJavaStringArray(list);
+}
+
 /*
  * Class:     org_coolreader_crengine_Engine
  * Method:    getFontFileNameListInternal
@@ -1199,6 +1278,8 @@ static JNINativeMethod sEngineMethods[] = {
   {"uninitInternal", "()V", (void*)Java_org_coolreader_crengine_Engine_uninitInternal},
   {"initDictionaries", "([Lorg/coolreader/crengine/Engine$HyphDict;)Z", (void*)Java_org_coolreader_crengine_Engine_initDictionaries},
   {"getFontFaceListInternal", "()[Ljava/lang/String;", (void*)Java_org_coolreader_crengine_Engine_getFontFaceListInternal},
+  {"getFontFacePropsListInternal", "()[Ljava/lang/String;", (void*)Java_org_coolreader_crengine_Engine_getFontFacePropsListInternal},
+  {"getDuplicateFontFileListInternal", "()[Ljava/lang/String;", (void*)Java_org_coolreader_crengine_Engine_getDuplicateFontFileListInternal},
   {"getFontFileNameListInternal", "()[Ljava/lang/String;", (void*)Java_org_coolreader_crengine_Engine_getFontFileNameListInternal},
   {"getAvailableFontWeightInternal", "(Ljava/lang/String;)[I", (void*)Java_org_coolreader_crengine_Engine_getAvailableFontWeightInternal},
   {"getAvailableSynthFontWeightInternal", "()[I", (void*)Java_org_coolreader_crengine_Engine_getAvailableSynthFontWeightInternal},
@@ -1246,7 +1327,11 @@ static JNINativeMethod sDocViewMethods[] = {
   {"checkLinkInternal", "(III)Ljava/lang/String;", (void*)Java_org_coolreader_crengine_DocView_checkLinkInternal},
   {"goLinkInternal", "(Ljava/lang/String;)I", (void*)Java_org_coolreader_crengine_DocView_goLinkInternal},
   {"moveSelectionInternal", "(Lorg/coolreader/crengine/Selection;II)Z", (void*)Java_org_coolreader_crengine_DocView_moveSelectionInternal},
+  {"getNextSentencesInternal", "(Ljava/lang/String;[Lorg/coolreader/crengine/Selection;)I", (void*)Java_org_coolreader_crengine_DocView_getNextSentencesInternal},
+  {"selectSentenceInternal", "(Ljava/lang/String;Ljava/lang/String;)Z", (void*)Java_org_coolreader_crengine_DocView_selectSentenceInternal},
   {"swapToCacheInternal", "()I", (void*)Java_org_coolreader_crengine_DocView_swapToCacheInternal},
+  {"getCacheFilePathInternal", "()Ljava/lang/String;", (void*)Java_org_coolreader_crengine_DocView_getCacheFilePathInternal},
+  {"startCacheWritingInternal", "()Z", (void*)Java_org_coolreader_crengine_DocView_startCacheWritingInternal},
   {"checkImageInternal", "(IILorg/coolreader/crengine/ImageInfo;)Z", (void*)Java_org_coolreader_crengine_DocView_checkImageInternal},
   {"drawImageInternal", "(Landroid/graphics/Bitmap;ILorg/coolreader/crengine/ImageInfo;)Z", (void*)Java_org_coolreader_crengine_DocView_drawImageInternal},
   {"closeImageInternal", "()Z", (void*)Java_org_coolreader_crengine_DocView_closeImageInternal},
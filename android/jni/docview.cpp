@@ -1,4 +1,5 @@
 #include "docview.h"
+#include "cr3concurrency.h"
 #include "lvdocview.h"
 #include "lvgraydrawbuf.h"
 #include "lvcolordrawbuf.h"
@@ -158,6 +159,77 @@ public:
 
 CRTimerUtil _timeoutControl;
 
+// Document cache file is written by engine worker thread in short slices, each slice runs under
+// DocView mutex (Engine.lock) like any other document operation: page rendering waits for one slice at most.
+#define CACHE_WRITER_SLICE_MS 300
+// pause between slices to let other threads take engine lock
+#define CACHE_WRITER_PAUSE_MS 20
+// pause after slice is interrupted by Engine.suspendLongOperation(): background thread has tasks to run
+#define CACHE_WRITER_SUSPEND_PAUSE_MS 2000
+
+static CRThreadExecutor * _cacheWriter = NULL;
+// changed under engine lock when document is loaded, closed or destroyed: stops writing for previous document
+static int _cacheWriterGeneration = 0;
+
+static void cancelCacheWriting() {
+	_cacheWriterGeneration++;
+}
+
+class CacheWriterTask : public CRRunnable {
+	DocViewNative * _view;
+	jobject _lock;
+	int _generation;
+public:
+	CacheWriterTask(JNIEnv * env, DocViewNative * view, jobject lock, int generation)
+		: _view(view), _generation(generation) {
+		_lock = env->NewGlobalRef(lock);
+	}
+	virtual ~CacheWriterTask() {
+		JNIEnv * env = cr3GetWorkerEnv();
+		if (env)
+			env->DeleteGlobalRef(_lock);
+	}
+	virtual void run() {
+		JNIEnv * env = cr3GetWorkerEnv();
+		if (!env) {
+			CRLog::error("Cache writer: thread is not attached to Java VM");
+			return;
+		}
+		concurrencyProvider->setThreadPriority(CR_THREAD_PRIORITY_LOW);
+		CRTimerUtil total;
+		int pause = 0;
+		for (;;) {
+			if (pause > 0)
+				concurrencyProvider->sleepMs(pause);
+			if (env->MonitorEnter(_lock) != JNI_OK) {
+				CRLog::error("Cache writer: cannot take engine lock");
+				return;
+			}
+			// _view is valid while generation is not changed
+			bool cancelled = _generation != _cacheWriterGeneration;
+			bool suspended = false;
+			ContinuousOperationResult res = CR_DONE;
+			if (!cancelled) {
+				CRTimerUtil slice(CACHE_WRITER_SLICE_MS);
+				_timeoutControl = slice;
+				res = _view->_docview->updateCache(_timeoutControl);
+				// cancelled by Engine.suspendLongOperation()
+				suspended = _timeoutControl.interval() == 0;
+			}
+			env->MonitorExit(_lock);
+			if (cancelled) {
+				CRLog::debug("Cache writer: document is changed, writing is stopped");
+				return;
+			}
+			if (res != CR_TIMEOUT) {
+				CRLog::info("Cache writer: finished with result %d in %d ms", (int)res, (int)total.elapsed());
+				return;
+			}
+			pause = suspended ? CACHE_WRITER_SUSPEND_PAUSE_MS : CACHE_WRITER_PAUSE_MS;
+		}
+	}
+};
+
 #if USE_LIMITED_FONT_SIZES_SET
 #define DECL_DEF_CR_FONT_SIZES static int cr_font_sizes[] = \
  { 9, 10, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, \
@@ -859,6 +931,7 @@ DocViewNative::DocViewNative()
 
 DocViewNative::~DocViewNative()
 {
+	cancelCacheWriting();
 	delete _docview;
 }
 
@@ -884,6 +957,7 @@ void DocViewNative::createDefaultDocument( const lString32& title, const lString
 
 bool DocViewNative::loadDocument( const lString32& filename )
 {
+	cancelCacheWriting();
 	CRLog::info("Loading document %s", LCSTR(filename));
 	bool res = _docview->LoadDocument(filename.c_str());
 	if (res)
@@ -903,6 +977,7 @@ bool DocViewNative::loadDocument( const lString32& filename )
 
 bool DocViewNative::loadDocument( LVStreamRef stream, const lString32& contentPath )
 {
+	cancelCacheWriting();
 	CRLog::info("Loading document from memory stream, content path: %s", LCSTR(contentPath));
 	bool res = _docview->LoadDocument(stream, contentPath.c_str(), false);
 	if (res)
@@ -959,6 +1034,7 @@ bool DocViewNative::openRecentBook()
 
 bool DocViewNative::closeBook()
 {
+	cancelCacheWriting();
 	closeImage();
 	if ( _docview->isDocumentOpened() ) {
 	    _docview->savePosition();
@@ -2079,6 +2155,54 @@ JNIEXPORT jint JNICALL Java_org_coolreader_crengine_DocView_swapToCacheInternal
     return p->_docview->updateCache(_timeoutControl);
 }
 
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    getCacheFilePathInternal
+ * Signature: ()Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_org_coolreader_crengine_DocView_getCacheFilePathInternal
+(JNIEnv * _env, jobject _this)
+{
+    CRJNIEnv env(_env);
+    DocViewNative * p = getNative(_env, _this);
+    if (!p) {
+    	CRLog::error("Cannot get native view");
+    	return NULL;
+    }
+    if (!p->_docview->isDocumentOpened() || p->_docview->getDocument() == NULL)
+        return NULL;
+    lString32 path = p->_docview->getDocument()->getCacheFileTargetPath();
+    if (path.empty())
+        return NULL;
+    return env.toJavaString(path);
+}
+
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    startCacheWritingInternal
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_startCacheWritingInternal
+(JNIEnv * _env, jobject _this)
+{
+    DocViewNative * p = getNative(_env, _this);
+    if (!p) {
+    	CRLog::error("Cannot get native view");
+    	return JNI_FALSE;
+    }
+    if (!concurrencyProvider)
+        return JNI_FALSE;
+    if (!_cacheWriter)
+        _cacheWriter = new CRThreadExecutor();
+    jclass rvClass = _env->GetObjectClass(_this);
+    jfieldID mutexID = _env->GetFieldID(rvClass, "mutex", "Ljava/lang/Object;");
+    jobject lock = _env->GetObjectField(_this, mutexID);
+    cancelCacheWriting();
+    _cacheWriter->execute(new CacheWriterTask(_env, p, lock, _cacheWriterGeneration));
+    _env->DeleteLocalRef(lock);
+    return JNI_TRUE;
+}
+
 
 /*
  * Class:     org_coolreader_crengine_DocView
@@ -2255,6 +2379,108 @@ JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_moveSelectionInt
     return JNI_FALSE;
 }
 
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    getNextSentencesInternal
+ * Signature: (Ljava/lang/String;[Lorg/coolreader/crengine/Selection;)I
+ */
+JNIEXPORT jint JNICALL Java_org_coolreader_crengine_DocView_getNextSentencesInternal
+  (JNIEnv * _env, jobject _this, jstring _startPos, jobjectArray _sentences)
+{
+    CRJNIEnv env(_env);
+    DocViewNative * p = getNative(_env, _this);
+    if (!p) {
+    	CRLog::error("Cannot get native view");
+    	return 0;
+    }
+	if (!p->_docview->isDocumentOpened()) {
+		CRLog::debug("getNextSentencesInternal: document is not opened");
+		return 0;
+	}
+    p->_docview->checkRender();
+    lString32 startPos = env.fromJavaString(_startPos);
+    ldomXPointerEx pos( p->_docview->getDocument()->createXPointer(startPos) );
+    if ( pos.isNull() )
+        return 0;
+    if ( !pos.isSentenceStart() )
+        pos.thisSentenceStart();
+    int pages = p->_docview->getPageCount();
+    int len = _env->GetArrayLength(_sentences);
+    int count = 0;
+    // the same sentence bounds as DCMD_SELECT_NEXT_SENTENCE gives
+    for ( ; count<len; count++ ) {
+        if ( !pos.nextSentenceStart() )
+            break;
+        ldomXPointerEx end( pos );
+        end.thisSentenceEnd();
+        ldomXRange range( pos, end );
+        jobject obj = _env->GetObjectArrayElement(_sentences, count);
+        CRObjectAccessor sel(_env, obj);
+        CRStringField sel_startPos(sel, "startPos");
+        CRStringField sel_endPos(sel, "endPos");
+        CRStringField sel_text(sel, "text");
+        CRStringField sel_chapter(sel, "chapter");
+        CRIntField sel_startX(sel, "startX");
+        CRIntField sel_startY(sel, "startY");
+        CRIntField sel_endX(sel, "endX");
+        CRIntField sel_endY(sel, "endY");
+        CRIntField sel_percent(sel, "percent");
+        sel_startPos.set( range.getStart().toString() );
+        sel_endPos.set( range.getEnd().toString() );
+        lvPoint startpt ( range.getStart().toPoint() );
+        lvPoint endpt ( range.getEnd().toPoint() );
+        sel_startX.set( startpt.x );
+        sel_startY.set( startpt.y );
+        sel_endX.set( endpt.x );
+        sel_endY.set( endpt.y );
+        int page = p->_docview->getBookmarkPage(range.getStart());
+        lString32 titleText;
+        lString32 posText;
+        p->_docview->getBookmarkPosText(range.getStart(), titleText, posText);
+        int percent = 0;
+        if ( pages>1 )
+            percent = 10000 * page/(pages-1);
+        sel_percent.set(percent);
+        sel_text.set( range.getRangeText( '\n', 8192 ) );
+        sel_chapter.set(titleText);
+        env->DeleteLocalRef(obj);
+    }
+    return count;
+}
+
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    selectSentenceInternal
+ * Signature: (Ljava/lang/String;Ljava/lang/String;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_selectSentenceInternal
+  (JNIEnv * _env, jobject _this, jstring _startPos, jstring _endPos)
+{
+    CRJNIEnv env(_env);
+    DocViewNative * p = getNative(_env, _this);
+    if (!p) {
+    	CRLog::error("Cannot get native view");
+    	return JNI_FALSE;
+    }
+	if (!p->_docview->isDocumentOpened()) {
+		CRLog::debug("selectSentenceInternal: document is not opened");
+		return JNI_FALSE;
+	}
+    p->_docview->checkRender();
+    ldomDocument * doc = p->_docview->getDocument();
+    ldomXPointerEx start( doc->createXPointer(env.fromJavaString(_startPos)) );
+    ldomXPointerEx end( doc->createXPointer(env.fromJavaString(_endPos)) );
+    if ( start.isNull() || end.isNull() )
+        return JNI_FALSE;
+    ldomXRange range( start, end, 1 );
+    p->_docview->selectRange( range );
+    // make start of selection visible, as DCMD_SELECT_NEXT_SENTENCE does
+    LVRef<ldomXRange> pageRange = p->_docview->getPageDocumentRange();
+    if ( pageRange.isNull() || !pageRange->isInside(start) )
+        p->_docview->goToBookmark( start );
+    return JNI_TRUE;
+}
+
 /*
  * Class:     org_coolreader_crengine_DocView
  * Method:    checkLinkInternal
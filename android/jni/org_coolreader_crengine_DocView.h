@@ -205,6 +205,22 @@ JNIEXPORT void JNICALL Java_org_coolreader_crengine_DocView_updateSelectionInter
 JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_moveSelectionInternal
   (JNIEnv *, jobject, jobject, jint, jint);
 
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    getNextSentencesInternal
+ * Signature: (Ljava/lang/String;[Lorg/coolreader/crengine/Selection;)I
+ */
+JNIEXPORT jint JNICALL Java_org_coolreader_crengine_DocView_getNextSentencesInternal
+  (JNIEnv *, jobject, jstring, jobjectArray);
+
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    selectSentenceInternal
+ * Signature: (Ljava/lang/String;Ljava/lang/String;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_selectSentenceInternal
+  (JNIEnv *, jobject, jstring, jstring);
+
 /*
  * Class:     org_coolreader_crengine_DocView
  * Method:    checkLinkInternal
@@ -277,6 +293,22 @@ JNIEXPORT void JNICALL Java_org_coolreader_crengine_DocView_hilightBookmarksInte
 JNIEXPORT jint JNICALL Java_org_coolreader_crengine_DocView_swapToCacheInternal
   (JNIEnv *, jobject);
 
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    getCacheFilePathInternal
+ * Signature: ()Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_org_coolreader_crengine_DocView_getCacheFilePathInternal
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    startCacheWritingInternal
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_startCacheWritingInternal
+  (JNIEnv *, jobject);
+
 /*
  * Class:     org_coolreader_crengine_DocView
  * Method:    isTimeChangedInternal
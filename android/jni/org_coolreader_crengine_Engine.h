@@ -59,6 +59,22 @@ JNIEXPORT void JNICALL Java_org_coolreader_crengine_Engine_uninitInternal
 JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_Engine_getFontFaceListInternal
   (JNIEnv *, jclass);
 
+/*
+ * Class:     org_coolreader_crengine_Engine
+ * Method:    getFontFacePropsListInternal
+ * Signature: ()[Ljava/lang/String;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_Engine_getFontFacePropsListInternal
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     org_coolreader_crengine_Engine
+ * Method:    getDuplicateFontFileListInternal
+ * Signature: ()[Ljava/lang/String;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_Engine_getDuplicateFontFileListInternal
+  (JNIEnv *, jclass);
+
 /*
  * Class:     org_coolreader_crengine_Engine
  * Method:    getFontFileNameListInternal
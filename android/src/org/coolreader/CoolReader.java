@@ -34,6 +34,7 @@ import org.coolreader.crengine.CRRootView;
 import org.coolreader.crengine.CRToolBar;
 import org.coolreader.crengine.DeviceInfo;
 import org.coolreader.crengine.DocumentsContractWrapper;
+import org.coolreader.crengine.DownloadManager;
 import org.coolreader.crengine.Engine;
 import org.coolreader.crengine.ErrorDialog;
 import org.coolreader.crengine.FileBrowser;
@@ -41,6 +42,7 @@ import org.coolreader.crengine.FileInfo;
 import org.coolreader.crengine.FileInfoOperationListener;
 import org.coolreader.crengine.InterfaceTheme;
 import org.coolreader.crengine.L;
+import org.coolreader.crengine.LastBookPrefetcher;
 import org.coolreader.crengine.LogcatSaver;
 import org.coolreader.crengine.Logger;
 import org.coolreader.crengine.N2EpdController;
@@ -53,6 +55,7 @@ import org.coolreader.crengine.ReaderCommand;
 import org.coolreader.crengine.ReaderView;
 import org.coolreader.crengine.ReaderViewLayout;
 import org.coolreader.crengine.Services;
+import org.coolreader.crengine.StartupTrace;
 import org.coolreader.crengine.Utils;
 import org.coolreader.donations.CRDonationService;
 import org.coolreader.tts.OnTTSCreatedListener;
@@ -188,7 +191,13 @@ public class CoolReader extends BaseActivity {
 	 */
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
+		if (LOAD_LAST_DOCUMENT_ON_START && null == savedInstanceState) {
+			// cold start: measure time to first page of last book
+			StartupTrace.start();
+			prefetchLastBook();
+		}
 		startServices();
+		StartupTrace.mark("servicesStarted");
 
 		log.i("CoolReader.onCreate() entered");
 		super.onCreate(savedInstanceState);
@@ -757,6 +766,7 @@ public class CoolReader extends BaseActivity {
 			log.d("FILE_TO_OPEN = " + fileToOpen);
 			final String finalFileToOpen = fileToOpen;
 			loadDocument(fileToOpen, null, () -> BackgroundThread.instance().postGUI(() -> {
+				StartupTrace.finish("loadFailed");
 				// if document not loaded show error & then root window
 				ErrorDialog errDialog = new ErrorDialog(CoolReader.this, CoolReader.this.getString(R.string.error), CoolReader.this.getString(R.string.cant_open_file, finalFileToOpen));
 				errDialog.setOnDismissListener(dialog -> showRootWindow());
@@ -768,6 +778,7 @@ public class CoolReader extends BaseActivity {
 			final String uriString = uri.toString();
 			mFileToOpenFromExt = uriString;
 			loadDocumentFromUri(uri, null, () -> BackgroundThread.instance().postGUI(() -> {
+				StartupTrace.finish("loadFailed");
 				// if document not loaded show error & then root window
 				ErrorDialog errDialog = new ErrorDialog(CoolReader.this, CoolReader.this.getString(R.string.error), CoolReader.this.getString(R.string.cant_open_file, uriString));
 				errDialog.setOnDismissListener(dialog -> showRootWindow());
@@ -1008,7 +1019,10 @@ public class CoolReader extends BaseActivity {
 
 		if (mHomeFrame == null) {
 			waitForCRDBService(() -> {
+				StartupTrace.mark("dbReady");
 				Services.getHistory().loadFromDB(getDB(), 200);
+				// continue downloads interrupted on previous run
+				DownloadManager.getInstance().restore(getDB());
 
 				mHomeFrame = new CRRootView(CoolReader.this);
 				Services.getCoverpageManager().addCoverpageReadyListener(mHomeFrame);
@@ -1063,6 +1077,8 @@ public class CoolReader extends BaseActivity {
 		// Donations support code
 		super.onStop();
 		stopped = true;
+		// startup is interrupted if first page is not shown yet
+		StartupTrace.finish("stopped");
 		// will close book at onDestroy()
 		if (CLOSE_BOOK_ON_STOP)
 			mReaderView.close();
@@ -2127,7 +2143,22 @@ public class CoolReader extends BaseActivity {
 	}
 
 	public void setLastBook(String path) {
+		setLastBook(path, null);
+	}
+
+	/**
+	 * Store last book and its cache file, to prefetch them on next start before engine is initialized.
+	 * @param cacheFilePath is path of engine cache file of book, null if not known
+	 */
+	public void setLastBook(String path, String cacheFilePath) {
 		setLastLocation(BOOK_LOCATION_PREFIX + path);
+		try {
+			String lastCacheFile = getPrefs().getString(PREF_LAST_CACHE_FILE, null);
+			if (cacheFilePath == null ? lastCacheFile != null : !cacheFilePath.equals(lastCacheFile))
+				getPrefs().edit().putString(PREF_LAST_CACHE_FILE, cacheFilePath).commit();
+		} catch (Exception e) {
+			// ignore
+		}
 	}
 
 	public void setLastDirectory(String path) {
@@ -2242,6 +2273,22 @@ public class CoolReader extends BaseActivity {
 		return res;
 	}
 
+	/**
+	 * Start reading last book and its cache files in background on cold start,
+	 * while engine and DB are initialized, to open it faster then.
+	 */
+	private void prefetchLastBook() {
+		Intent intent = getIntent();
+		if (null != intent && null != intent.getData())
+			return; // will open another document
+		String location = getLastLocation();
+		if (location == null || !location.startsWith(BOOK_LOCATION_PREFIX)) {
+			StartupTrace.finish("noLastBook");
+			return;
+		}
+		LastBookPrefetcher.start(location.substring(BOOK_LOCATION_PREFIX.length()), getPrefs().getString(PREF_LAST_CACHE_FILE, null));
+	}
+
 	/**
 	 * Open location - book, root view, folder...
 	 */
@@ -2252,6 +2299,7 @@ public class CoolReader extends BaseActivity {
 		if (location.startsWith(BOOK_LOCATION_PREFIX)) {
 			location = location.substring(BOOK_LOCATION_PREFIX.length());
 			loadDocument(location, null, () -> BackgroundThread.instance().postGUI(() -> {
+				StartupTrace.finish("loadFailed");
 				// if document not loaded show error & then root window
 				ErrorDialog errDialog = new ErrorDialog(CoolReader.this, "Error", "Can't open file!");
 				errDialog.setOnDismissListener(dialog -> showRootWindow());
@@ -2259,6 +2307,7 @@ public class CoolReader extends BaseActivity {
 			}, 1000), false);
 			return;
 		}
+		StartupTrace.finish("noLastBook");
 		if (location.startsWith(DIRECTORY_LOCATION_PREFIX)) {
 			location = location.substring(DIRECTORY_LOCATION_PREFIX.length());
 			showBrowser(location);
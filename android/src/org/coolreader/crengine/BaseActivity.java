@@ -272,6 +272,7 @@ public class BaseActivity extends Activity implements Settings {
 	protected static String PREF_LAST_NOTIFICATION_MASK = "LastNoticeMask";
 	protected static String PREF_EXT_DATADIR_CREATETIME = "ExtDataDirCreateTime";
 	protected static String PREF_LAST_LOGCAT = "LastLogcat";
+	protected static String PREF_LAST_CACHE_FILE = "LastCacheFile";
 
 	@Override
 	protected void onResume() {
@@ -0,0 +1,184 @@
+package org.coolreader.crengine;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Shared pool of reusable bitmaps.
+ * <p>
+ * Released bitmaps are kept in free lists grouped by size class (power of two of allocation size).
+ * Bitmap of exactly the same size is reused first; on KitKat and later, a free bitmap
+ * of the same or next size class is reconfigured to requested size.
+ * Total size of free bitmaps is limited by byte cap, oldest free bitmaps are dropped first.
+ * <p>
+ * Used for page bitmaps of reader view. Cover bitmaps are not pooled: evicted cover may still be
+ * referenced by views, so it must not be reused for another cover.
+ * <p>
+ * Thread-safe.
+ */
+public class BitmapPool {
+
+	public static final Logger log = L.create("bp");
+
+	// hack for heap size limit
+	private static final VMRuntimeHack runtime = new VMRuntimeHack();
+
+	private static BitmapPool instance;
+
+	public static synchronized BitmapPool getInstance() {
+		if (instance == null)
+			instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+		return instance;
+	}
+
+	private final long maxFreeBytes;
+	private long freeBytes;
+	// size class -> free bitmaps
+	private final HashMap<Integer, ArrayList<Bitmap>> freeLists = new HashMap<>();
+	// all free bitmaps, from oldest to newest
+	private final ArrayList<Bitmap> freeOrder = new ArrayList<>();
+
+	private int allocated;
+	private int reused;
+	private int reconfigured;
+	private int dropped;
+
+	public BitmapPool(long maxFreeBytes) {
+		this.maxFreeBytes = maxFreeBytes;
+	}
+
+	/**
+	 * Get bitmap of specified size, reuse free one if possible.
+	 * Bitmap content is undefined.
+	 */
+	public synchronized Bitmap get(int dx, int dy, Bitmap.Config config) {
+		int bytes = dx * dy * getBytesPerPixel(config);
+		int sizeClass = getSizeClass(bytes);
+		// exact size match
+		Bitmap bmp = takeFree(sizeClass, dx, dy, config, false);
+		if (bmp != null) {
+			reused++;
+			return bmp;
+		}
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			// reconfigure bitmap of the same or next size class
+			for (int cls = sizeClass; cls <= sizeClass + 1; cls++) {
+				bmp = takeFree(cls, dx, dy, config, true);
+				if (bmp != null) {
+					try {
+						bmp.reconfigure(dx, dy, config);
+						reconfigured++;
+						return bmp;
+					} catch (IllegalArgumentException e) {
+						log.w("cannot reconfigure bitmap: " + e.getMessage());
+						drop(bmp);
+					}
+				}
+			}
+		}
+		bmp = Bitmap.createBitmap(dx, dy, config);
+		runtime.trackFree(bytes);
+		allocated++;
+		return bmp;
+	}
+
+	/**
+	 * Return bitmap to pool. Bitmap must not be used by caller after this call.
+	 */
+	public synchronized void release(Bitmap bmp) {
+		if (bmp == null || bmp.isRecycled() || !bmp.isMutable())
+			return;
+		if (freeOrder.contains(bmp)) {
+			log.w("bitmap is already released");
+			return;
+		}
+		int bytes = getAllocationSize(bmp);
+		if (bytes > maxFreeBytes) {
+			drop(bmp);
+			return;
+		}
+		trim(maxFreeBytes - bytes);
+		int sizeClass = getSizeClass(bytes);
+		ArrayList<Bitmap> list = freeLists.get(sizeClass);
+		if (list == null) {
+			list = new ArrayList<>();
+			freeLists.put(sizeClass, list);
+		}
+		list.add(bmp);
+		freeOrder.add(bmp);
+		freeBytes += bytes;
+	}
+
+	/**
+	 * Drop all free bitmaps.
+	 */
+	public synchronized void compact() {
+		trim(0);
+		log.d("compact: " + this);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "BitmapPool[free=" + freeOrder.size() + " (" + freeBytes + "/" + maxFreeBytes + " bytes), allocated=" + allocated +
+				", reused=" + reused + ", reconfigured=" + reconfigured + ", dropped=" + dropped + "]";
+	}
+
+	private Bitmap takeFree(int sizeClass, int dx, int dy, Bitmap.Config config, boolean anySize) {
+		ArrayList<Bitmap> list = freeLists.get(sizeClass);
+		if (list == null)
+			return null;
+		int needBytes = dx * dy * getBytesPerPixel(config);
+		for (int i = list.size() - 1; i >= 0; i--) {
+			Bitmap bmp = list.get(i);
+			boolean matches = anySize ? getAllocationSize(bmp) >= needBytes
+					: bmp.getWidth() == dx && bmp.getHeight() == dy && bmp.getConfig() == config;
+			if (matches) {
+				list.remove(i);
+				freeOrder.remove(bmp);
+				freeBytes -= getAllocationSize(bmp);
+				return bmp;
+			}
+		}
+		return null;
+	}
+
+	private void trim(long maxBytes) {
+		while (freeBytes > maxBytes && freeOrder.size() > 0) {
+			Bitmap bmp = freeOrder.remove(0);
+			int bytes = getAllocationSize(bmp);
+			ArrayList<Bitmap> list = freeLists.get(getSizeClass(bytes));
+			if (list != null)
+				list.remove(bmp);
+			freeBytes -= bytes;
+			drop(bmp);
+		}
+	}
+
+	private void drop(Bitmap bmp) {
+		// don't recycle: bitmap still may be referenced by drawing code, leave it to GC
+		runtime.trackAlloc(getAllocationSize(bmp));
+		dropped++;
+	}
+
+	private static int getAllocationSize(Bitmap bmp) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+			return bmp.getAllocationByteCount();
+		return bmp.getRowBytes() * bmp.getHeight();
+	}
+
+	private static int getBytesPerPixel(Bitmap.Config config) {
+		if (config == Bitmap.Config.ARGB_8888)
+			return 4;
+		if (config == Bitmap.Config.ALPHA_8)
+			return 1;
+		return 2;
+	}
+
+	private static int getSizeClass(int bytes) {
+		// index of highest bit of (bytes - 1), i.e. log2 rounded up
+		return 32 - Integer.numberOfLeadingZeros(Math.max(bytes - 1, 0));
+	}
+}
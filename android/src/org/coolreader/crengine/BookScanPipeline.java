@@ -0,0 +1,238 @@
+package org.coolreader.crengine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-worker book metadata scanner.
+ * <p>
+ * Extracts book properties, CRC32 and content hash (SHA-512) for a set of files using bounded number of workers
+ * running in {@link TaskScheduler.Lane#SCAN} lane, collects results into batches and streams each batch
+ * to listener (usually, to save into DB). Batches are passed to listener by workers, there is no separate collector task.
+ * <p>
+ * CRC32 and content hash are calculated in Java and don't take Engine.lock, so it runs really parallel
+ * and doesn't block page rendering. Native property parsing is still serialized on Engine.lock
+ * (crengine is not thread-safe), but workers overlap it with file I/O of other items.
+ */
+public class BookScanPipeline {
+
+	public static final Logger log = L.create("bsp");
+
+	// SCAN lane is sized for workers
+	static final int MAX_WORKERS = 4;
+	private static final int DEF_BATCH_SIZE = 64;
+	private static final long BATCH_FLUSH_INTERVAL = 1000; // 1 second
+
+	public interface BatchListener {
+		/**
+		 * Called in pipeline thread with next portion of scanned files.
+		 * @param batch is list of successfully scanned files
+		 */
+		void onBatchReady(ArrayList<FileInfo> batch);
+	}
+
+	public interface CompleteListener {
+		/**
+		 * Called in GUI thread when all files are processed or scan is stopped.
+		 * @param scanned is list of all successfully scanned files
+		 * @param stats is scan statistics
+		 */
+		void onComplete(ArrayList<FileInfo> scanned, ScanStats stats);
+	}
+
+	public static class ScanStats {
+		public int total;
+		public int parsed;
+		public int crcUpdated;
+		public int failed;
+		public int batches;
+		public long elapsed;
+		public boolean stopped;
+
+		public int processed() {
+			return parsed + crcUpdated + failed;
+		}
+
+		public double booksPerSecond() {
+			if (elapsed <= 0)
+				return 0;
+			return processed() * 1000.0 / elapsed;
+		}
+
+		@Override
+		public String toString() {
+			return "ScanStats[total=" + total + ", parsed=" + parsed + ", crc32=" + crcUpdated +
+					", failed=" + failed + ", batches=" + batches + ", elapsed=" + elapsed + " ms, " +
+					String.format("%.1f", booksPerSecond()) + " books/sec" + (stopped ? ", stopped" : "") + "]";
+		}
+	}
+
+	private static class WorkItem {
+		final FileInfo file;
+		final boolean parseProperties;
+		WorkItem(FileInfo file, boolean parseProperties) {
+			this.file = file;
+			this.parseProperties = parseProperties;
+		}
+	}
+
+	private static BookScanPipeline instance;
+
+	public static BookScanPipeline getInstance(Engine engine) {
+		if (instance == null)
+			instance = new BookScanPipeline(engine, getDefaultWorkerCount(), DEF_BATCH_SIZE);
+		return instance;
+	}
+
+	private static int getDefaultWorkerCount() {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		return Math.max(2, Math.min(MAX_WORKERS, cpus));
+	}
+
+	private final Engine engine;
+	private final int workerCount;
+	private final int batchSize;
+
+	public BookScanPipeline(Engine engine, int workerCount, int batchSize) {
+		this.engine = engine;
+		this.workerCount = workerCount;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Start scanning of files. Returns immediately.
+	 * @param filesForParsing is list of files to parse properties for (also sets crc32 and content hash)
+	 * @param filesForCRC32Update is list of files to calculate crc32 and content hash only
+	 * @param control allows to stop long operation
+	 * @param progress is progress to update, can be null
+	 * @param batchListener receives batches of scanned files in scan worker thread, can be null
+	 * @param completeListener is called in GUI thread when scan is finished
+	 */
+	public void scan(Collection<FileInfo> filesForParsing, Collection<FileInfo> filesForCRC32Update,
+					 final Scanner.ScanControl control, final Engine.ProgressControl progress,
+					 final BatchListener batchListener, final CompleteListener completeListener) {
+		final ConcurrentLinkedQueue<WorkItem> queue = new ConcurrentLinkedQueue<>();
+		for (FileInfo item : filesForParsing)
+			queue.add(new WorkItem(item, true));
+		for (FileInfo item : filesForCRC32Update)
+			queue.add(new WorkItem(item, false));
+		final ScanStats stats = new ScanStats();
+		stats.total = queue.size();
+		final Collector collector = new Collector(stats.total, batchListener);
+		final AtomicInteger activeWorkers = new AtomicInteger();
+		final AtomicInteger parsed = new AtomicInteger();
+		final AtomicInteger crcUpdated = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final long startTime = Utils.timeStamp();
+		int workers = Math.min(workerCount, Math.max(1, stats.total));
+		activeWorkers.set(workers);
+		log.i("scan started: " + stats.total + " files, " + workers + " workers");
+		final TaskScheduler scheduler = TaskScheduler.instance();
+		for (int i = 0; i < workers; i++) {
+			scheduler.post(TaskScheduler.Lane.SCAN, () -> {
+				try {
+					WorkItem item;
+					while (!control.isStopped() && (item = queue.poll()) != null) {
+						boolean res;
+						try {
+							if (item.parseProperties) {
+								res = engine.scanBookProperties(item.file);
+								if (res)
+									Engine.updateFileFingerprintsUnlocked(item.file);
+							} else {
+								res = Engine.updateFileFingerprintsUnlocked(item.file);
+							}
+						} catch (Exception e) {
+							log.e("Exception while scanning " + item.file.getPathName(), e);
+							res = false;
+						}
+						if (res) {
+							if (item.parseProperties)
+								parsed.incrementAndGet();
+							else
+								crcUpdated.incrementAndGet();
+							collector.add(item.file);
+						} else {
+							failed.incrementAndGet();
+						}
+						if (null != progress && stats.total > 0)
+							progress.setProgress((parsed.get() + crcUpdated.get() + failed.get() + stats.total) * 10000 / (2 * stats.total));
+					}
+				} finally {
+					if (activeWorkers.decrementAndGet() == 0) {
+						// last worker: flush the rest and report
+						collector.flush();
+						stats.parsed = parsed.get();
+						stats.crcUpdated = crcUpdated.get();
+						stats.failed = failed.get();
+						stats.batches = collector.batches;
+						stats.stopped = control.isStopped();
+						stats.elapsed = Utils.timeInterval(startTime);
+						log.i("scan finished: " + stats);
+						if (null != progress)
+							progress.hide();
+						final ArrayList<FileInfo> scanned = collector.scanned;
+						BackgroundThread.instance().postGUI(() -> completeListener.onComplete(scanned, stats));
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Collects results of workers into batches, batch is passed to listener by worker which fills it.
+	 */
+	private class Collector {
+		private final BatchListener listener;
+		private final ArrayList<FileInfo> scanned;
+		private ArrayList<FileInfo> batch = new ArrayList<>(batchSize);
+		private long lastFlush = Utils.timeStamp();
+		private int batches;
+
+		Collector(int total, BatchListener listener) {
+			this.listener = listener;
+			this.scanned = new ArrayList<>(total);
+		}
+
+		void add(FileInfo item) {
+			ArrayList<FileInfo> ready = null;
+			synchronized (this) {
+				batch.add(item);
+				scanned.add(item);
+				if (batch.size() >= batchSize || Utils.timeInterval(lastFlush) >= BATCH_FLUSH_INTERVAL)
+					ready = takeBatch();
+			}
+			if (null != ready)
+				notifyListener(ready);
+		}
+
+		void flush() {
+			ArrayList<FileInfo> ready;
+			synchronized (this) {
+				ready = batch.size() > 0 ? takeBatch() : null;
+			}
+			if (null != ready)
+				notifyListener(ready);
+		}
+
+		private ArrayList<FileInfo> takeBatch() {
+			ArrayList<FileInfo> ready = batch;
+			batch = new ArrayList<>(batchSize);
+			lastFlush = Utils.timeStamp();
+			batches++;
+			return ready;
+		}
+
+		private void notifyListener(ArrayList<FileInfo> ready) {
+			if (null == listener)
+				return;
+			try {
+				listener.onBatchReady(ready);
+			} catch (Exception e) {
+				log.e("Exception in batch listener", e);
+			}
+		}
+	}
+}
@@ -1,8 +1,11 @@
 package org.coolreader.crengine;
 
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 
 import org.coolreader.db.CRDBService;
 
@@ -26,6 +29,8 @@ public class CoverpageManager {
 		public FileInfo file;
 		public int maxWidth;
 		public int maxHeight;
+		// drawable requested image, request is dropped when it's not shown anymore
+		private WeakReference<Drawable> requester;
 		public ImageItem(FileInfo file, int maxWidth, int maxHeight) {
 			this.file = file;
 			this.maxWidth = maxWidth;
@@ -42,6 +47,13 @@ public class CoverpageManager {
 		public boolean matches(ImageItem item) {
 			return fileMatches(item) && sizeMatches(item);
 		}
+		private boolean isStale() {
+			if (requester == null)
+				return false;
+			// drawable is detached from view when view is reused for another item
+			Drawable drawable = requester.get();
+			return drawable == null || drawable.getCallback() == null;
+		}
 		@Override
 		public String toString() {
 			return "[" + file + " " + maxWidth
@@ -116,7 +128,7 @@ public class CoverpageManager {
 			unqueue(Collections.singleton(item));
 			mCache.remove(item);
 			db.saveBookCoverpage(item.file, data);
-			coverpageLoaded(item, data);
+			coverpageLoaded(db, item, data);
 		}
 	}
 	
@@ -202,6 +214,7 @@ public class CoverpageManager {
 		}
 		private void removed() {
 			if (bitmap != null) {
+				// views and display lists may still reference evicted bitmap, so it's not returned to pool
 				int bytes = bitmap.getRowBytes() * bitmap.getHeight();
 				runtime.trackAlloc(bytes); // hack for heap size limit
 				bitmap.recycle();
@@ -341,6 +354,8 @@ public class CoverpageManager {
 		public boolean addOnTop(ImageItem file) {
 			int index = indexOf(file);
 			if (index >= 0) {
+				// keep the latest request, its requester is shown now
+				list.set(index, file);
 				if (index > 0)
 					moveOnTop(index);
 				return false;
@@ -373,21 +388,22 @@ public class CoverpageManager {
 
 	private final static int COVERPAGE_UPDATE_DELAY = DeviceInfo.EINK_SCREEN ? 1000 : 100;
 	private final static int COVERPAGE_MAX_UPDATE_DELAY = DeviceInfo.EINK_SCREEN ? 3000 : 300;
-	private Runnable lastReadyNotifyTask;
+	private boolean readyNotifyScheduled;
 	private long firstReadyTimestamp;
 	private void notifyBitmapIsReady(final ImageItem file) {
 		synchronized(LOCK) {
 			if (mReadyQueue.empty())
 				firstReadyTimestamp = Utils.timeStamp();
 			mReadyQueue.add(file);
+			// all coverpages ready before notification are delivered by single call
+			if (readyNotifyScheduled)
+				return;
+			readyNotifyScheduled = true;
 		}
 		Runnable task = () -> {
-//				if (lastReadyNotifyTask != this && Utils.timeInterval(firstReadyTimestamp) < COVERPAGE_MAX_UPDATE_DELAY) {
-//					log.v("skipping update, " + Utils.timeInterval(firstReadyTimestamp));
-//					return;
-//				}
 			ArrayList<ImageItem> list = new ArrayList<>();
 			synchronized(LOCK) {
+				readyNotifyScheduled = false;
 				for (;;) {
 					ImageItem f = mReadyQueue.next();
 					if (f == null)
@@ -404,11 +420,10 @@ public class CoverpageManager {
 				firstReadyTimestamp = Utils.timeStamp();
 			}
 		};
-		lastReadyNotifyTask = task;
 		BackgroundThread.instance().postGUI(task, COVERPAGE_UPDATE_DELAY);
 	}
 
-	private void draw(ImageItem file, byte[] data) {
+	private void draw(final CRDBService.LocalBinder db, ImageItem file, byte[] data) {
 		BitmapCacheItem item;
 		synchronized(LOCK) {
 			item = mCache.getItem(file);
@@ -422,45 +437,171 @@ public class CoverpageManager {
 		if (bmp != null) {
 			// successfully decoded
 			log.v("coverpage is decoded for " + file);
+			// placeholder covers depend on font and book properties, save only real images
+			if (data != null && data.length > 0 && file.maxWidth > 0 && file.maxHeight > 0)
+				saveThumbnail(db, file, bmp);
 			item.setBitmap(bmp);
 			item.state = State.READY;
 			notifyBitmapIsReady(file);
 		}
 	}
 
-	private void coverpageLoaded(final ImageItem file, final byte[] data) {
+	private void coverpageLoaded(final CRDBService.LocalBinder db, final ImageItem file, final byte[] data) {
 		log.v("coverpage data is loaded for " + file);
 		setItemState(file, State.IMAGE_DRAW_SCHEDULED);
-		BackgroundThread.instance().postBackground(() -> draw(file, data));
+		TaskScheduler.instance().post(TaskScheduler.Lane.PREFETCH, () -> draw(db, file, data));
+	}
+
+	/**
+	 * Save decoded coverpage pixels, to show it next time w/o decoding and scaling of image.
+	 */
+	private void saveThumbnail(final CRDBService.LocalBinder db, ImageItem file, Bitmap bmp) {
+		try {
+			byte[] pixels = new byte[bmp.getRowBytes() * bmp.getHeight()];
+			bmp.copyPixelsToBuffer(ByteBuffer.wrap(pixels));
+			db.saveThumbnail(file.file, file.maxWidth, file.maxHeight, bmp.getConfig().name(), pixels);
+		} catch (Exception e) {
+			log.e("cannot save thumbnail for " + file, e);
+		}
+	}
+
+	/**
+	 * Show coverpage thumbnail loaded from DB: only copy of pixels is needed.
+	 * Falls back to coverpage decoding if thumbnail cannot be used.
+	 */
+	private void thumbnailLoaded(final CRDBService.LocalBinder db, final ImageItem file, final byte[] pixels) {
+		BitmapCacheItem item;
+		synchronized(LOCK) {
+			item = mCache.getItem(file);
+			if (item == null)
+				return;
+			if (item.state == State.DRAWING || item.state == State.READY)
+				return;
+			item.state = State.DRAWING;
+		}
+		Bitmap bmp = Bitmap.createBitmap(file.maxWidth, file.maxHeight, DeviceInfo.BUFFER_COLOR_FORMAT);
+		if (pixels.length == bmp.getRowBytes() * bmp.getHeight()) {
+			bmp.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+			log.v("coverpage thumbnail is loaded for " + file);
+			item.setBitmap(bmp);
+			item.state = State.READY;
+			notifyBitmapIsReady(file);
+		} else {
+			log.w("thumbnail size mismatch for " + file + ", decoding coverpage");
+			bmp.recycle();
+			item.state = State.FILE_CACHE_LOOKUP;
+			BackgroundThread.instance().postGUI(() -> loadCoverpage(db, file));
+		}
+	}
+
+	/**
+	 * Get coverpage data from DB or book file, when there is no thumbnail.
+	 */
+	private void loadCoverpage(final CRDBService.LocalBinder db, final ImageItem request) {
+		if (request.file.format.needCoverPageCaching()) {
+			db.loadBookCoverpage(request.file, (fileInfo, data) -> {
+				if (data == null) {
+					log.v("cover not found in DB for " + fileInfo + ", scheduling scan");
+					mScanFileQueue.addOnTop(request);
+					scheduleScanFile(db);
+				} else {
+					coverpageLoaded(db, request, data);
+				}
+			});
+		} else {
+			mScanFileQueue.addOnTop(request);
+			scheduleScanFile(db);
+		}
+	}
+	// max number of coverpages requested from DB at once
+	private final static int COVERPAGE_BATCH_SIZE = 32;
+
+	/**
+	 * Take next batch of DB lookup requests: requests for the same image size, w/o stale ones.
+	 */
+	private ArrayList<ImageItem> nextCheckCacheBatch() {
+		ArrayList<ImageItem> batch = new ArrayList<>();
+		synchronized(LOCK) {
+			ArrayList<ImageItem> skipped = new ArrayList<>();
+			for (;;) {
+				ImageItem file = mCheckFileCacheQueue.next();
+				if (file == null)
+					break;
+				if (file.isStale()) {
+					log.v("dropping stale coverpage request " + file);
+					continue;
+				}
+				if (batch.size() > 0 && (batch.size() >= COVERPAGE_BATCH_SIZE
+						|| file.maxWidth != batch.get(0).maxWidth || file.maxHeight != batch.get(0).maxHeight)) {
+					skipped.add(file);
+					continue;
+				}
+				batch.add(file);
+			}
+			for (ImageItem file : skipped)
+				mCheckFileCacheQueue.add(file);
+		}
+		return batch;
 	}
+
 	private void scheduleCheckCache(final CRDBService.LocalBinder db) {
-		// cache lookup
+		// cache lookup: all requests made before task is run are coalesced
 		lastCheckCacheTask = new Runnable() {
 			@Override
 			public void run() {
-				ImageItem file = null;
+				final ArrayList<ImageItem> batch;
 				synchronized(LOCK) {
-					if (lastCheckCacheTask == this) {
-						file = mCheckFileCacheQueue.next();
-					}
-				}
-				if (file != null) {
-					final ImageItem request = file;
-					db.loadBookCoverpage(file.file, (fileInfo, data) -> {
-						if (data == null) {
-							log.v("cover not found in DB for " + fileInfo + ", scheduling scan");
-							mScanFileQueue.addOnTop(request);
-							scheduleScanFile(db);
-						} else {
-							coverpageLoaded(request, data);
-						}
-					});
-					scheduleCheckCache(db);
+					if (lastCheckCacheTask != this)
+						return;
+					batch = nextCheckCacheBatch();
 				}
+				if (batch.size() == 0)
+					return;
+				ArrayList<FileInfo> files = new ArrayList<>(batch.size());
+				for (ImageItem item : batch)
+					files.add(item.file);
+				final ImageItem first = batch.get(0);
+				db.loadCoverpageBatch(files, first.maxWidth, first.maxHeight, DeviceInfo.BUFFER_COLOR_FORMAT.name(),
+						(thumbnails, coverpages) -> {
+							coverpageBatchLoaded(db, batch, thumbnails, coverpages);
+							boolean hasMore;
+							synchronized(LOCK) {
+								hasMore = !mCheckFileCacheQueue.empty();
+							}
+							if (hasMore)
+								scheduleCheckCache(db);
+						});
 			}
 		};
 		BackgroundThread.instance().postGUI(lastCheckCacheTask);
 	}
+
+	private void coverpageBatchLoaded(final CRDBService.LocalBinder db, ArrayList<ImageItem> batch, Map<String, byte[]> thumbnails, Map<String, byte[]> coverpages) {
+		boolean scanScheduled = false;
+		for (final ImageItem request : batch) {
+			if (request.isStale()) {
+				log.v("dropping stale coverpage request " + request);
+				continue;
+			}
+			String path = request.file.getPathName();
+			final byte[] pixels = thumbnails.get(path);
+			byte[] data = coverpages.get(path);
+			if (pixels != null) {
+				// thumbnails are copied in parallel
+				setItemState(request, State.IMAGE_DRAW_SCHEDULED);
+				TaskScheduler.instance().post(TaskScheduler.Lane.PREFETCH, () -> thumbnailLoaded(db, request, pixels));
+			} else if (data != null) {
+				coverpageLoaded(db, request, data);
+			} else {
+				log.v("cover not found in DB for " + request + ", scheduling scan");
+				mScanFileQueue.addOnTop(request);
+				scanScheduled = true;
+			}
+		}
+		if (scanScheduled)
+			scheduleScanFile(db);
+	}
+
 	private void scheduleScanFile(final CRDBService.LocalBinder db) {
 		// file scan
 		lastScanFileTask = new Runnable() {
@@ -474,17 +615,19 @@ public class CoverpageManager {
 				}
 				if (file != null) {
 					final ImageItem fileInfo = file;
-					if (fileInfo.file.format.canParseCoverpages) {
-						BackgroundThread.instance().postBackground(() -> {
+					if (fileInfo.isStale()) {
+						log.v("dropping stale coverpage request " + fileInfo);
+					} else if (fileInfo.file.format.canParseCoverpages) {
+						TaskScheduler.instance().post(TaskScheduler.Lane.PREFETCH, () -> {
 							byte[] data = Services.getEngine().scanBookCover(fileInfo.file.getPathName());
 							if (data == null)
 								data = new byte[] {};
 							if (fileInfo.file.format.needCoverPageCaching())
 								db.saveBookCoverpage(fileInfo.file, data);
-							coverpageLoaded(fileInfo, data);
+							coverpageLoaded(db, fileInfo, data);
 						});
 					} else {
-						coverpageLoaded(fileInfo, new byte[] {});
+						coverpageLoaded(db, fileInfo, new byte[] {});
 					}
 					scheduleScanFile(db);
 				}
@@ -493,23 +636,18 @@ public class CoverpageManager {
 		BackgroundThread.instance().postGUI(lastScanFileTask);
 	}
 
-	private void queueForDrawing(final CRDBService.LocalBinder db, ImageItem file) {
+	private void queueForDrawing(final CRDBService.LocalBinder db, ImageItem file, Drawable requester) {
 		synchronized (LOCK) {
 			if (file == null || file.file == null || file.file.format == null)
 				return;
+			file.requester = new WeakReference<>(requester);
 			BitmapCacheItem item = mCache.getItem(file);
 			if (item != null && (item.state == State.READY || item.state == State.DRAWING))
 				return;
-			if (file.file.format.needCoverPageCaching()) {
-				if (mCheckFileCacheQueue.addOnTop(file)) {
-					log.v("Scheduled coverpage DB lookup for " + file);
-					scheduleCheckCache(db);
-				}
-			} else {
-				if (mScanFileQueue.addOnTop(file)) {
-					log.v("Scheduled coverpage filescan for " + file);
-					scheduleScanFile(db);
-				}
+			// thumbnail lookup first, then coverpage DB lookup or file scan
+			if (mCheckFileCacheQueue.addOnTop(file)) {
+				log.v("Scheduled coverpage DB lookup for " + file);
+				scheduleCheckCache(db);
 			}
 		}
 	}
@@ -622,7 +760,7 @@ public class CoverpageManager {
 					}
 				}
 				log.d("Image for " + book + " is not found in cache, scheduling generation...");
-				queueForDrawing(db, book);
+				queueForDrawing(db, book, this);
 				//if (h * bestWidth / bestHeight > w)
 				//canvas.drawRect(rc, defPaint);
 			} catch (Exception e) {
@@ -657,7 +795,7 @@ public class CoverpageManager {
 	}
 
 	public void drawCoverpageFor(final CRDBService.LocalBinder db, final FileInfo file, final Bitmap buffer, boolean respectAspectRatio, final CoverpageBitmapReadyListener callback) {
-		db.loadBookCoverpage(file, (fileInfo, data) -> BackgroundThread.instance().postBackground(() -> {
+		db.loadBookCoverpage(file, (fileInfo, data) -> TaskScheduler.instance().post(TaskScheduler.Lane.PREFETCH, () -> {
 			byte[] imageData = data;
 			if (data == null && file.format != null && file.format.canParseCoverpages) {
 				imageData = Services.getEngine().scanBookCover(file.getPathName());
@@ -110,6 +110,15 @@ public class DeviceInfo {
 	public static boolean supportsActionBar() {
 		return getSDKLevel() >= HONEYCOMB;
 	}
+
+	/**
+	 * Get max amount of memory to use for cached page images.
+	 * @return memory budget, in bytes
+	 */
+	public static long getPageImageCacheBudget() {
+		// e-ink screens have slow page flipping, no need to keep many pages
+		return Runtime.getRuntime().maxMemory() / (EINK_SCREEN ? 16 : 8);
+	}
 	
 	static {
 		MANUFACTURER = getBuildField("MANUFACTURER");
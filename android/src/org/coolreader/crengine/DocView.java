@@ -59,6 +59,27 @@ public class DocView {
 		}
 	}
 
+	/**
+	 * Get path of cache file of opened document: file in use, or file to be created when document is swapped to cache.
+	 * @return full path of cache file, null if no document is opened or cache is disabled
+	 */
+	public String getCacheFilePath() {
+		synchronized(mutex) {
+			return getCacheFilePathInternal();
+		}
+	}
+
+	/**
+	 * If document uses cache file, start writing of all unsaved data to it in engine worker thread.
+	 * Data is written in short slices under document mutex, so document operations are not blocked for long.
+	 * @return true if writing is started, false if engine cannot run worker threads: use swapToCache() instead
+	 */
+	public boolean startCacheWriting() {
+		synchronized(mutex) {
+			return startCacheWritingInternal();
+		}
+	}
+
 	/**
 	 * Follow link.
 	 * @param link
@@ -107,6 +128,39 @@ public class DocView {
 		}
 	}
 
+	/**
+	 * Get sentences following specified sentence, with the same bounds as DCMD_SELECT_NEXT_SENTENCE selects.
+	 * Selection is not changed.
+	 * @param startPos is start position of sentence
+	 * @param count is max number of sentences to get
+	 * @return sentences, less than count at the end of document
+	 */
+	public Selection[] getNextSentences(String startPos, int count) {
+		Selection[] sentences = new Selection[count];
+		for (int i = 0; i < count; i++)
+			sentences[i] = new Selection();
+		int found;
+		synchronized(mutex) {
+			found = getNextSentencesInternal(startPos, sentences);
+		}
+		if (found == count)
+			return sentences;
+		Selection[] res = new Selection[found];
+		System.arraycopy(sentences, 0, res, 0, found);
+		return res;
+	}
+
+	/**
+	 * Select sentence got by getNextSentences(), moving to page of its start if it's not visible.
+	 * @param sentence is sentence to select, startPos and endPos are used
+	 * @return false if positions are not found in document
+	 */
+	public boolean selectSentence(Selection sentence) {
+		synchronized(mutex) {
+			return selectSentenceInternal(sentence.startPos, sentence.endPos);
+		}
+	}
+
 	/**
 	 * Send battery state to native object.
 	 * @param state
@@ -475,6 +529,10 @@ public class DocView {
 	private native boolean moveSelectionInternal(Selection sel,
 			int moveCmd, int params);
 
+	private native int getNextSentencesInternal(String startPos, Selection[] sentences);
+
+	private native boolean selectSentenceInternal(String startPos, String endPos);
+
 	private native String checkLinkInternal(int x, int y, int delta);
 
 	private native boolean checkImageInternal(int x, int y, ImageInfo dstImage);
@@ -494,6 +552,10 @@ public class DocView {
 	// / returns either SWAP_DONE, SWAP_TIMEOUT or SWAP_ERROR
 	private native int swapToCacheInternal();
 
+	private native String getCacheFilePathInternal();
+
+	private native boolean startCacheWritingInternal();
+
 	private native boolean isTimeChangedInternal();
 
 	private long mNativeObject; // used from JNI
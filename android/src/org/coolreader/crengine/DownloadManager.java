@@ -0,0 +1,549 @@
+package org.coolreader.crengine;
+
+import org.coolreader.db.CRDBService;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads books in parallel.
+ * <p>
+ * Number of simultaneous connections is limited both in total and per host.
+ * Data is written to hidden temporary ".part" file, so it's not visible to scanner until download is finished;
+ * interrupted download is resumed using HTTP Range request. Redirects are followed manually,
+ * since HttpURLConnection doesn't follow redirects between HTTP and HTTPS.
+ * Queue is persisted in DB (w/o passwords), so unfinished downloads are continued after restart.
+ * <p>
+ * Methods are called in GUI thread, listeners are notified in GUI thread.
+ */
+public class DownloadManager {
+
+	public static final Logger log = L.create("dm");
+
+	private static final int MAX_CONNECTIONS = 4;
+	private static final int MAX_CONNECTIONS_PER_HOST = 2;
+	private static final int MAX_RETRIES = 3;
+	private static final int MAX_REDIRECTS = 5;
+	private static final long RETRY_DELAY = 2000;
+	private static final long PROGRESS_INTERVAL = 500;
+	private static final int CONNECT_TIMEOUT = 60000;
+	private static final int READ_TIMEOUT = 60000;
+	private static final String PART_EXT = ".part";
+
+	public static final int STATE_QUEUED = 0;
+	public static final int STATE_ACTIVE = 1;
+	public static final int STATE_DONE = 2;
+	public static final int STATE_FAILED = 3;
+
+	/**
+	 * Single download.
+	 */
+	public static class Download {
+		public String url;
+		public String referer;
+		public String username;
+		public String password;
+		// expected mime type
+		public String mimeType;
+		// file name to use if server doesn't provide it
+		public String defaultFileName;
+		// directory to save file to
+		public String outDir;
+		// path of resulting file, assigned on first response
+		public String filePath;
+		// ETag of file, to check that resumed download is the same file
+		public String etag;
+		public long totalSize = -1;
+		public long bytesDone;
+		public int state = STATE_QUEUED;
+		public long createTime;
+
+		private int retries;
+		private volatile boolean cancelled;
+		private DownloadListener listener;
+
+		public Download() {
+		}
+
+		public Download(String url, String mimeType, String defaultFileName, String outDir) {
+			this.url = url;
+			this.mimeType = mimeType;
+			this.defaultFileName = defaultFileName;
+			this.outDir = outDir;
+		}
+
+		public Download(Download v) {
+			url = v.url;
+			referer = v.referer;
+			username = v.username;
+			password = v.password;
+			mimeType = v.mimeType;
+			defaultFileName = v.defaultFileName;
+			outDir = v.outDir;
+			filePath = v.filePath;
+			etag = v.etag;
+			totalSize = v.totalSize;
+			bytesDone = v.bytesDone;
+			state = v.state;
+			createTime = v.createTime;
+		}
+
+		public String getHost() {
+			try {
+				return new URL(url).getHost();
+			} catch (MalformedURLException e) {
+				return "";
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Download[" + url + ", " + bytesDone + "/" + totalSize + ", state=" + state + "]";
+		}
+	}
+
+	public interface DownloadListener {
+		/**
+		 * Download is finished successfully.
+		 */
+		void onDownloadComplete(Download download, File file);
+
+		/**
+		 * Download is failed after all retries. Partially downloaded data is kept to resume later.
+		 */
+		void onDownloadError(Download download, String message);
+	}
+
+	public interface ProgressListener {
+		/**
+		 * Total progress of all downloads.
+		 * @param percent is total progress, 0..100
+		 * @param activeCount is number of running and queued downloads, 0 when all are finished
+		 */
+		void onProgress(int percent, int activeCount);
+	}
+
+	private static DownloadManager instance;
+
+	public static DownloadManager getInstance() {
+		if (instance == null)
+			instance = new DownloadManager();
+		return instance;
+	}
+
+	private final ThreadPoolExecutor executor;
+	// all not finished downloads, in queue order
+	private final ArrayList<Download> downloads = new ArrayList<>();
+	// host -> number of active connections
+	private final HashMap<String, Integer> hostConnections = new HashMap<>();
+	private int activeCount;
+	private CRDBService.LocalBinder db;
+	private ProgressListener progressListener;
+
+	private DownloadManager() {
+		executor = new ThreadPoolExecutor(MAX_CONNECTIONS, MAX_CONNECTIONS, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), new ThreadFactory() {
+					private final AtomicInteger counter = new AtomicInteger();
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Download-" + counter.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public void setProgressListener(ProgressListener listener) {
+		progressListener = listener;
+	}
+
+	/**
+	 * Load unfinished downloads from DB and continue them.
+	 */
+	public void restore(CRDBService.LocalBinder db) {
+		this.db = db;
+		db.loadDownloads(list -> {
+			for (Download d : list) {
+				if (findDownload(d.url) == null) {
+					log.i("resuming download " + d);
+					d.state = STATE_QUEUED;
+					if (d.filePath != null)
+						d.bytesDone = getPartFile(new File(d.filePath)).length();
+					synchronized (this) {
+						downloads.add(d);
+					}
+				}
+			}
+			schedule();
+		});
+	}
+
+	/**
+	 * Add download to queue.
+	 * @param listener is listener to notify when download is finished, can be null
+	 * @return false if download of the same URL is already queued
+	 */
+	public boolean enqueue(CRDBService.LocalBinder db, Download download, DownloadListener listener) {
+		this.db = db;
+		Download existing = findDownload(download.url);
+		if (existing != null) {
+			synchronized (this) {
+				if (existing.state != STATE_FAILED) {
+					log.d("already downloading " + download.url);
+					return false;
+				}
+				// retry failed download, resuming from downloaded data
+				existing.state = STATE_QUEUED;
+				existing.retries = 0;
+				existing.listener = listener;
+				// password is not persisted, so download restored after restart gets it here
+				existing.username = download.username;
+				existing.password = download.password;
+			}
+			schedule();
+			notifyProgress();
+			return true;
+		}
+		download.state = STATE_QUEUED;
+		download.listener = listener;
+		download.createTime = System.currentTimeMillis();
+		synchronized (this) {
+			downloads.add(download);
+		}
+		db.saveDownload(download);
+		schedule();
+		notifyProgress();
+		return true;
+	}
+
+	/**
+	 * Cancel download, remove it from queue and delete partially downloaded data.
+	 */
+	public void cancel(String url) {
+		Download d = findDownload(url);
+		if (d == null)
+			return;
+		d.cancelled = true;
+		synchronized (this) {
+			if (d.state == STATE_QUEUED || d.state == STATE_FAILED)
+				downloads.remove(d);
+		}
+		if (d.state != STATE_ACTIVE)
+			deletePartFile(d);
+		if (db != null)
+			db.deleteDownload(d.url);
+		notifyProgress();
+	}
+
+	/**
+	 * @return number of running and queued downloads
+	 */
+	public synchronized int getPendingCount() {
+		int count = 0;
+		for (Download d : downloads)
+			if (d.state == STATE_QUEUED || d.state == STATE_ACTIVE)
+				count++;
+		return count;
+	}
+
+	/**
+	 * @return total progress of running and queued downloads, 0..100
+	 */
+	public synchronized int getTotalProgress() {
+		long done = 0;
+		long total = 0;
+		int unknown = 0;
+		for (Download d : downloads) {
+			if (d.state != STATE_QUEUED && d.state != STATE_ACTIVE)
+				continue;
+			if (d.totalSize > 0) {
+				done += Math.min(d.bytesDone, d.totalSize);
+				total += d.totalSize;
+			} else {
+				unknown++;
+			}
+		}
+		if (total == 0)
+			return 0;
+		// downloads with unknown size are counted as average not started ones
+		int known = getPendingCount() - unknown;
+		total += known > 0 ? total / known * unknown : 0;
+		return (int)(done * 100 / total);
+	}
+
+	private synchronized Download findDownload(String url) {
+		for (Download d : downloads)
+			if (d.url.equals(url))
+				return d;
+		return null;
+	}
+
+	/**
+	 * Start queued downloads while connection limits allow.
+	 */
+	private synchronized void schedule() {
+		for (Download d : downloads) {
+			if (activeCount >= MAX_CONNECTIONS)
+				break;
+			if (d.state != STATE_QUEUED)
+				continue;
+			String host = d.getHost();
+			Integer hostCount = hostConnections.get(host);
+			if (hostCount != null && hostCount >= MAX_CONNECTIONS_PER_HOST)
+				continue;
+			hostConnections.put(host, hostCount == null ? 1 : hostCount + 1);
+			activeCount++;
+			d.state = STATE_ACTIVE;
+			executor.execute(() -> run(d));
+		}
+	}
+
+	/**
+	 * Download with retries. Called in download thread.
+	 */
+	private void run(Download d) {
+		String error = null;
+		File file = null;
+		try {
+			for (;;) {
+				try {
+					file = transfer(d);
+					break;
+				} catch (IOException e) {
+					if (d.cancelled)
+						break;
+					d.retries++;
+					log.w("download failed (" + d.retries + "): " + d.url + ": " + e.getMessage());
+					if (d.retries >= MAX_RETRIES) {
+						error = e.getMessage();
+						break;
+					}
+					try {
+						Thread.sleep(RETRY_DELAY * d.retries);
+					} catch (InterruptedException ie) {
+						error = "interrupted";
+						break;
+					}
+				}
+			}
+		} catch (Exception e) {
+			log.e("exception while downloading " + d.url, e);
+			error = e.getMessage();
+		}
+		final File resultFile = file;
+		final String resultError = error != null ? error : "Download failed";
+		synchronized (this) {
+			activeCount--;
+			String host = d.getHost();
+			Integer hostCount = hostConnections.get(host);
+			if (hostCount != null && hostCount > 1)
+				hostConnections.put(host, hostCount - 1);
+			else
+				hostConnections.remove(host);
+			if (d.cancelled || resultFile != null)
+				downloads.remove(d);
+			d.state = d.cancelled || resultFile != null ? STATE_DONE : STATE_FAILED;
+		}
+		if (d.cancelled) {
+			deletePartFile(d);
+		} else if (resultFile != null) {
+			log.i("download finished: " + d);
+			if (db != null)
+				db.deleteDownload(d.url);
+		} else {
+			if (db != null)
+				db.saveDownload(d);
+		}
+		schedule();
+		BackgroundThread.instance().postGUI(() -> {
+			notifyProgress();
+			if (d.listener == null || d.cancelled)
+				return;
+			if (resultFile != null)
+				d.listener.onDownloadComplete(d, resultFile);
+			else
+				d.listener.onDownloadError(d, resultError);
+		});
+	}
+
+	/**
+	 * Single attempt to download file, resuming from partially downloaded data if possible.
+	 * @return downloaded file, null if cancelled
+	 */
+	private File transfer(Download d) throws IOException {
+		File partFile = d.filePath != null ? getPartFile(new File(d.filePath)) : null;
+		long offset = partFile != null && partFile.isFile() ? partFile.length() : 0;
+		HttpURLConnection connection = connect(d, offset);
+		try {
+			int response = connection.getResponseCode();
+			if (response == 416 && offset > 0) {
+				// requested range is not available: start from scratch
+				deletePartFile(d);
+				throw new IOException("Range is not satisfiable");
+			}
+			if (response != 200 && response != 206)
+				throw new IOException("Error " + response);
+			boolean append = response == 206 && offset > 0;
+			if (!append)
+				offset = 0;
+			long contentLen = connection.getContentLength();
+			d.totalSize = contentLen >= 0 ? offset + contentLen : -1;
+			d.bytesDone = offset;
+			String etag = connection.getHeaderField("ETag");
+			if (etag != null)
+				d.etag = etag;
+			if (d.filePath == null) {
+				String contentType = connection.getContentType();
+				String type = d.mimeType != null ? d.mimeType : contentType;
+				boolean isZip = "application/zip".equals(contentType);
+				File outFile;
+				synchronized (DownloadManager.class) {
+					// empty hidden part file reserves name for this download
+					outFile = OPDSUtil.DownloadTask.generateFileName(new File(d.outDir), getFileName(connection, d.defaultFileName), type, isZip);
+					if (outFile == null || !getPartFile(outFile).createNewFile())
+						throw new IOException("Cannot generate file name");
+				}
+				d.filePath = outFile.getAbsolutePath();
+				partFile = getPartFile(outFile);
+				if (db != null)
+					db.saveDownload(d);
+			}
+			log.d("downloading " + d.url + (append ? " from offset " + offset : ""));
+			long startTime = Utils.timeStamp();
+			long lastProgress = startTime;
+			try (InputStream is = connection.getInputStream();
+				 OutputStream os = new FileOutputStream(partFile, append)) {
+				byte[] buf = new byte[0x10000];
+				for (;;) {
+					if (d.cancelled)
+						return null;
+					int bytesRead = is.read(buf);
+					if (bytesRead <= 0)
+						break;
+					os.write(buf, 0, bytesRead);
+					d.bytesDone += bytesRead;
+					if (Utils.timeInterval(lastProgress) >= PROGRESS_INTERVAL) {
+						lastProgress = Utils.timeStamp();
+						BackgroundThread.instance().postGUI(this::notifyProgress);
+					}
+				}
+			}
+			if (d.totalSize > 0 && d.bytesDone < d.totalSize)
+				throw new IOException("Connection closed at " + d.bytesDone + " of " + d.totalSize + " bytes");
+			long elapsed = Math.max(Utils.timeInterval(startTime), 1);
+			log.i("downloaded " + (d.bytesDone - offset) + " bytes in " + elapsed + " ms, " + ((d.bytesDone - offset) * 1000 / elapsed / 1024) + " KB/s: " + d.url);
+			File outFile = new File(d.filePath);
+			if (outFile.exists() || !partFile.renameTo(outFile))
+				throw new IOException("Cannot create file " + outFile);
+			return outFile;
+		} finally {
+			try {
+				connection.disconnect();
+			} catch (Exception e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Open connection and get response, following redirects.
+	 * @param offset is offset to resume download from, 0 to download whole file
+	 */
+	private static HttpURLConnection connect(Download d, long offset) throws IOException {
+		URL url = new URL(d.url);
+		HashSet<String> visited = new HashSet<>();
+		for (int redirects = 0; ; redirects++) {
+			visited.add(url.toString());
+			HttpURLConnection connection = openConnection(url, d, offset);
+			int response = connection.getResponseCode();
+			if (response != 301 && response != 302 && response != 303 && response != 307 && response != 308)
+				return connection;
+			String location = connection.getHeaderField("Location");
+			connection.disconnect();
+			if (location == null)
+				throw new IOException("Invalid redirect " + response);
+			if (redirects >= MAX_REDIRECTS)
+				throw new IOException("Too many redirects");
+			url = new URL(url, location);
+			if (visited.contains(url.toString()))
+				throw new IOException("Duplicate redirect " + url);
+			log.d("Response " + response + ": redirect to " + url);
+		}
+	}
+
+	private static HttpURLConnection openConnection(URL url, Download d, long offset) throws IOException {
+		URLConnection conn;
+		try {
+			conn = OPDSUtil.DownloadTask.openConnection(url);
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Cannot set up secure connection: " + e.getMessage());
+		}
+		if (!(conn instanceof HttpURLConnection))
+			throw new IOException("Only HTTP supported");
+		HttpURLConnection connection = (HttpURLConnection) conn;
+		connection.setRequestProperty("User-Agent", "CoolReader/3(Android)");
+		if (d.referer != null)
+			connection.setRequestProperty("Referer", d.referer);
+		OPDSUtil.DownloadTask.setAuthorization(connection, d.username, d.password);
+		if (offset > 0) {
+			connection.setRequestProperty("Range", "bytes=" + offset + "-");
+			if (d.etag != null)
+				connection.setRequestProperty("If-Range", d.etag);
+		}
+		connection.setInstanceFollowRedirects(false);
+		connection.setUseCaches(false);
+		connection.setAllowUserInteraction(false);
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		connection.setDoInput(true);
+		return connection;
+	}
+
+	/**
+	 * Temporary file for data of unfinished download: hidden file in the same directory.
+	 * @param file is resulting file
+	 */
+	public static File getPartFile(File file) {
+		return new File(file.getParentFile(), "." + file.getName() + PART_EXT);
+	}
+
+	private static String getFileName(HttpURLConnection connection, String defaultFileName) {
+		String disp = connection.getHeaderField("Content-Disposition");
+		if (disp != null) {
+			int p = disp.indexOf("filename=");
+			if (p > 0)
+				return disp.substring(p + 9);
+		}
+		return defaultFileName;
+	}
+
+	private static void deletePartFile(Download d) {
+		if (d.filePath == null)
+			return;
+		File partFile = getPartFile(new File(d.filePath));
+		if (partFile.isFile() && !partFile.delete())
+			log.w("cannot delete " + partFile);
+	}
+
+	private void notifyProgress() {
+		if (progressListener != null)
+			progressListener.onProgress(getTotalProgress(), getPendingCount());
+	}
+}
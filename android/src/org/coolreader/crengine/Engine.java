@@ -13,6 +13,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -23,7 +25,9 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * CoolReader Engine class.
@@ -253,7 +257,7 @@ public class Engine {
 		if (LOG_ENGINE_TASKS)
 			log.d("executing task " + task.getClass().getSimpleName());
 		TaskHandler taskHandler = new TaskHandler(task);
-		BackgroundThread.instance().postBackground(taskHandler);
+		TaskScheduler.instance().post(TaskScheduler.Lane.RENDER, taskHandler);
 	}
 
 	/**
@@ -609,18 +613,14 @@ public class Engine {
 		} else {
 			log.i("Engine.initAgain() : DataDir NOT exist at start.");
 		}
-		mFonts = findFonts();
 		findExternalHyphDictionaries();
-		if (!initInternal(mFonts, DeviceInfo.getSDKLevel())) {
-			log.i("Engine.initInternal failed!");
-			throw new RuntimeException("Cannot initialize CREngine JNI");
-		}
+		initFonts();
 		initCacheDirectory();
 		log.i("Engine() : initialization done");
 	}
 
 	// Native functions
-	private native static boolean initInternal(String[] fontList, int sdk_int);
+	private native static boolean initInternal(String[] fontList, int sdk_int); // font file paths or properties of indexed font faces
 
 	private native static boolean initDictionaries(HyphDict[] dicts);
 
@@ -628,6 +628,10 @@ public class Engine {
 
 	private native static String[] getFontFaceListInternal();
 
+	private native static String[] getFontFacePropsListInternal();
+
+	private native static String[] getDuplicateFontFileListInternal();
+
 	private native static String[] getFontFileNameListInternal();
 
 	private native static int[] getAvailableFontWeightInternal(String fontFace);
@@ -955,6 +959,67 @@ public class Engine {
 		}
 	}
 
+	/**
+	 * Calculate file CRC32 and content hash without taking engine lock.
+	 * (thread-safe)
+	 * CRC32 is the same as of native updateFileCRC32Internal(): crc32 of whole (unpacked) file contents,
+	 * content hash is SHA-512 of the same data; both are calculated in single pass.
+	 * Falls back to locked native implementation (CRC32 only) if archive cannot be read by java.util.zip,
+	 * content hash is set to FileInfo.CONTENT_HASH_UNAVAILABLE then, so file is not read again to calculate it.
+	 *
+	 * @param info is file to update crc32 and contentHash fields for
+	 * @return true if crc32 is calculated
+	 */
+	public static boolean updateFileFingerprintsUnlocked(FileInfo info) {
+		if (info.pathname == null)
+			return false;
+		if (info.arcname == null) {
+			try (InputStream is = new FileInputStream(info.pathname)) {
+				calcFingerprints(info, is);
+				return true;
+			} catch (IOException e) {
+				log.e("cannot calculate crc32 for " + info.pathname + ": " + e.getMessage());
+				return false;
+			}
+		}
+		try (ZipFile zip = new ZipFile(info.arcname)) {
+			ZipEntry entry = zip.getEntry(info.pathname);
+			if (entry == null) {
+				log.e("cannot find archive item " + info.getPathName());
+				return false;
+			}
+			try (InputStream is = zip.getInputStream(entry)) {
+				calcFingerprints(info, is);
+			}
+			return true;
+		} catch (IOException e) {
+			log.w("cannot read archive " + info.arcname + " using java.util.zip, trying native implementation");
+		}
+		if (!updateFileCRC32(info))
+			return false;
+		info.contentHash = FileInfo.CONTENT_HASH_UNAVAILABLE;
+		return true;
+	}
+
+	private static void calcFingerprints(FileInfo info, InputStream is) throws IOException {
+		CRC32 crc = new CRC32();
+		MessageDigest digest = null;
+		try {
+			digest = MessageDigest.getInstance("SHA-512");
+		} catch (NoSuchAlgorithmException e) {
+			log.w("SHA-512 is not available: " + e.getMessage());
+		}
+		byte[] buf = new byte[16384];
+		int bytesRead;
+		while ((bytesRead = is.read(buf)) > 0) {
+			crc.update(buf, 0, bytesRead);
+			if (null != digest)
+				digest.update(buf, 0, bytesRead);
+		}
+		info.crc32 = crc.getValue();
+		info.contentHash = null != digest ? Utils.toHexString(digest.digest()) : FileInfo.CONTENT_HASH_UNAVAILABLE;
+	}
+
 	/**
 	 * Draw book coverpage into bitmap buffer.
 	 * If cover image specified, this image will be drawn (resized to buffer size).
@@ -1561,6 +1626,29 @@ public class Engine {
 		// }
 	}
 
+	/**
+	 * Find font files and initialize engine with them.
+	 * Faces of font files which are not changed since last run are registered from font index,
+	 * only new and changed files are parsed.
+	 */
+	private static void initFonts() {
+		long startTime = Utils.timeStamp();
+		mFonts = findFonts();
+		File[] dataDirs = getDataDirectories(null, false, true);
+		FontIndex fontIndex = FontIndex.load(dataDirs.length > 0 ? dataDirs[0] : null);
+		ArrayList<String> changedFonts = new ArrayList<>();
+		String[] fontList = fontIndex.getFontList(mFonts, changedFonts);
+		if (!initInternal(fontList, DeviceInfo.getSDKLevel())) {
+			log.i("Engine.initInternal failed!");
+			throw new RuntimeException("Cannot initialize CREngine JNI");
+		}
+		if (!changedFonts.isEmpty())
+			fontIndex.update(changedFonts, getFontFacePropsListInternal(), getDuplicateFontFileListInternal());
+		fontIndex.save();
+		log.i("fonts initialized in " + Utils.timeInterval(startTime) + "ms: " + mFonts.length + " files, "
+				+ changedFonts.size() + " parsed");
+	}
+
 	private static String[] findFonts() {
 		ArrayList<File> dirs = new ArrayList<File>();
 		File[] dataDirs = getDataDirectories("fonts", false, false);
@@ -1968,12 +2056,8 @@ public class Engine {
 		} else {
 			log.i("Engine() : DataDir NOT exist at start.");
 		}
-		mFonts = findFonts();
 		findExternalHyphDictionaries();
-		if (!initInternal(mFonts, DeviceInfo.getSDKLevel())) {
-			log.i("Engine.initInternal failed!");
-			throw new RuntimeException("Cannot initialize CREngine JNI");
-		}
+		initFonts();
 		initDictionaries(HyphDict.values());
 		initCacheDirectory();
 		DOM_VERSION_CURRENT = getDomVersionCurrent();
@@ -205,6 +205,12 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 				invalidateAdapter(currentListAdapter);
 		};
 		this.mCoverpageManager.addCoverpageReadyListener(coverpageListener);
+		DownloadManager.getInstance().setProgressListener((percent, activeCount) -> {
+			if (activeCount > 0)
+				mEngine.showProgress(percent * 100, "Downloading" + (activeCount > 1 ? " (" + activeCount + ")" : ""));
+			else
+				mEngine.hideProgress();
+		});
 		super.onAttachedToWindow();
 		
 		setLayoutParams(new LayoutParams(LayoutParams.FILL_PARENT, LayoutParams.FILL_PARENT));
@@ -334,6 +340,10 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 			log.d("catalog_open menu item selected");
 			showOPDSDir(selectedItem, null);
 			return true;
+		case R.id.catalog_refresh:
+			log.d("catalog_refresh menu item selected");
+			refreshOPDSDir(selectedItem);
+			return true;
         case R.id.folder_open:
             log.d("folder_open menu item selected");
             showDirectory(selectedItem, null);
@@ -589,6 +599,17 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 		dlg.onSelect();
 	}
 	
+	/**
+	 * Load catalog page again, w/o using of items loaded before and recently parsed feed.
+	 */
+	private void refreshOPDSDir(final FileInfo dir) {
+		String url = dir.getOPDSUrl();
+		if (url != null)
+			OPDSCache.getInstance(mActivity).invalidateParsedFeed(OPDSCache.getCatalogKey(dir.username, dir.password), url);
+		dir.clear();
+		showOPDSDir(dir, null);
+	}
+
 	private void showOPDSDir( final FileInfo fileOrDir, final FileInfo itemToSelect ) {
 		
 		if ( fileOrDir.fileCount()>0 || fileOrDir.dirCount()>0 ) {
@@ -607,6 +628,11 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 		
 		String url = fileOrDir.getOPDSUrl();
 		final FileInfo myCurrDirectory = currDirectory;
+		if ( url!=null && !fileOrDir.isDirectory && fileOrDir.format!=null ) {
+			// book of known type: download in background, several books may be downloaded at once
+			downloadOPDSBook(fileOrDir, url, myCurrDirectory.getOPDSUrl());
+			return;
+		}
 		if ( url!=null ) {
 			try {
 				final URL uri = new URL(url);
@@ -706,7 +732,7 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 					}
 
 					@Override
-					public void onDownloadEnd(String type, String url, File file) {
+					public void onDownloadEnd(String type, String url, File file, long crc32, String contentHash) {
                         if (DeviceInfo.EINK_SONY) {
                             SonyBookSelector selector = new SonyBookSelector(mActivity);
                             selector.notifyScanner(file.getAbsolutePath());
@@ -719,10 +745,14 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 							dir = downloadDir;
 						mScanner.listDirectory(dir);
 						FileInfo item = dir.findItemByPathName(file.getAbsolutePath());
-						if ( item!=null )
-							mActivity.loadDocument(item, true);
-						else
-							mActivity.loadDocument(fi, true);
+						if ( item==null )
+							item = fi;
+						if ( contentHash!=null ) {
+							// calculated while downloading: saved to DB with the book, so scanner doesn't read file again
+							item.crc32 = crc32;
+							item.contentHash = contentHash;
+						}
+						mActivity.loadDocument(item, true);
 					}
 
 					@Override
@@ -746,6 +776,57 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 		}
 	}
 	
+	private void downloadOPDSBook(final FileInfo book, String url, String referer) {
+		final FileInfo downloadDir = Services.getScanner().getDownloadDirectory();
+		if ( downloadDir==null ) {
+			mActivity.showToast("Cannot save file " + url);
+			return;
+		}
+		String subdir;
+		if ( book.authors!=null ) {
+			subdir = Utils.transcribeFileName(book.authors);
+			if ( subdir.length()>MAX_SUBDIR_LEN )
+				subdir = subdir.substring(0, MAX_SUBDIR_LEN);
+		} else {
+			subdir = "NoAuthor";
+		}
+		File outDir = new File(downloadDir.getPathName(), subdir);
+		outDir.mkdirs();
+		String defFileName = Utils.transcribeFileName( book.title!=null ? book.title : book.filename ) + book.format.getExtensions()[0];
+		DownloadManager.Download download = new DownloadManager.Download(url, book.format.getMimeFormat(), defFileName, outDir.getAbsolutePath());
+		download.referer = referer;
+		download.username = book.username;
+		download.password = book.password;
+		boolean queued = DownloadManager.getInstance().enqueue(mActivity.getDB(), download, new DownloadManager.DownloadListener() {
+			@Override
+			public void onDownloadComplete(DownloadManager.Download d, File file) {
+				if (DeviceInfo.EINK_SONY) {
+					SonyBookSelector selector = new SonyBookSelector(mActivity);
+					selector.notifyScanner(file.getAbsolutePath());
+				}
+				FileInfo fi = new FileInfo(file);
+				FileInfo dir = mScanner.findParent(fi, downloadDir);
+				if ( dir==null )
+					dir = downloadDir;
+				mScanner.listDirectory(dir);
+				if (DownloadManager.getInstance().getPendingCount() > 0) {
+					// don't interrupt other downloads by opening book
+					mActivity.showToast("Downloaded: " + file.getName());
+					return;
+				}
+				FileInfo item = dir.findItemByPathName(file.getAbsolutePath());
+				mActivity.loadDocument(item != null ? item : fi, true);
+			}
+
+			@Override
+			public void onDownloadError(DownloadManager.Download d, String message) {
+				mActivity.showToast("Error while downloading " + d.url + ": " + message);
+			}
+		});
+		if (!queued)
+			mActivity.showToast("Already downloading " + url);
+	}
+
 	private class ItemGroupsLoadingCallback implements CRDBService.ItemGroupsLoadingCallback {
 		private final FileInfo baseDir;
 		private final FileInfo itemToSelect;
@@ -13,11 +13,14 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.zip.ZipEntry;
 
 public class FileInfo implements Parcelable {
 
 	public final static String RECENT_DIR_TAG = "@recent";
+	// contentHash value for file which contents cannot be read to calculate hash, to not try it again
+	public final static String CONTENT_HASH_UNAVAILABLE = "";
 	public final static String SEARCH_RESULT_DIR_TAG = "@searchResults";
 	public final static String ROOT_DIR_TAG = "@root";
 	public final static String OPDS_LIST_TAG = "@opds";
@@ -67,6 +70,7 @@ public class FileInfo implements Parcelable {
 	public boolean isListed;
 	public boolean isScanned;
 	public long crc32;
+	public String contentHash; // SHA-512 of (unpacked) file contents as hex string, null if not calculated yet, CONTENT_HASH_UNAVAILABLE if cannot be calculated
 	public int domVersion;
 	public int blockRenderingFlags;
 	public FileInfo parent; // parent item
@@ -74,6 +78,17 @@ public class FileInfo implements Parcelable {
 	
 	private ArrayList<FileInfo> files;// files
 	private ArrayList<FileInfo> dirs; // directories
+	private ChildIndex childIndex; // lookup index for large directory, built on first lookup
+
+	// min number of items to use index for lookup
+	private static final int CHILD_INDEX_MIN_ITEMS = 32;
+
+	// sort keys, computed on first use, recomputed when source field is changed
+	private SortKey fileNameSortKey;
+	private SortKey displayNameSortKey;
+	private SortKey authorsSortKey;
+	private SortKey seriesSortKey;
+	private SortKey titleSortKey;
 
 	// 16 lower bits reserved for document flags
 	public static final int DONT_USE_DOCUMENT_STYLES_FLAG = 1;
@@ -264,6 +279,7 @@ public class FileInfo implements Parcelable {
 		isListed = in.readByte() != 0;
 		isScanned = in.readByte() != 0;
 		crc32 = in.readLong();
+		contentHash = in.readString();
 		domVersion = in.readInt();
 		blockRenderingFlags = in.readInt();
 		parent = in.readParcelable(FileInfo.class.getClassLoader());
@@ -320,6 +336,57 @@ public class FileInfo implements Parcelable {
 		return isSingleFileArchive
 			? new File(arcname).getName() : filename;
 	}
+
+	/**
+	 * Sort key with source string it's made of; immutable, so it can be replaced atomically.
+	 */
+	private static class SortKey {
+		private final String source;
+		private final String key;
+		private SortKey(String source, String key) {
+			this.source = source;
+			this.key = key;
+		}
+		private boolean isMadeOf(String str) {
+			return str == source || (str != null && str.equals(source));
+		}
+	}
+
+	public String getFileNameSortKey() {
+		SortKey k = fileNameSortKey;
+		if (k == null || !k.isMadeOf(filename))
+			fileNameSortKey = k = new SortKey(filename, Utils.sortKey(filename));
+		return k.key;
+	}
+
+	public String getDisplayNameSortKey() {
+		String name = getFileNameToDisplay();
+		SortKey k = displayNameSortKey;
+		if (k == null || !k.isMadeOf(name))
+			displayNameSortKey = k = new SortKey(name, Utils.sortKey(name));
+		return k.key;
+	}
+
+	public String getAuthorsSortKey() {
+		SortKey k = authorsSortKey;
+		if (k == null || !k.isMadeOf(authors))
+			authorsSortKey = k = new SortKey(authors, Utils.sortKey(Utils.formatAuthors(authors)));
+		return k.key;
+	}
+
+	public String getSeriesSortKey() {
+		SortKey k = seriesSortKey;
+		if (k == null || !k.isMadeOf(series))
+			seriesSortKey = k = new SortKey(series, Utils.sortKey(series));
+		return k.key;
+	}
+
+	public String getTitleSortKey() {
+		SortKey k = titleSortKey;
+		if (k == null || !k.isMadeOf(title))
+			titleSortKey = k = new SortKey(title, Utils.sortKey(title));
+		return k.key;
+	}
 	
 	private void fromFile( File f )
 	{
@@ -385,6 +452,7 @@ public class FileInfo implements Parcelable {
 		username = v.username;
 		password = v.password;
 		crc32 = v.crc32;
+		contentHash = v.contentHash;
 		domVersion = v.domVersion;
 		blockRenderingFlags = v.blockRenderingFlags;
 		id = v.id;
@@ -408,6 +476,11 @@ public class FileInfo implements Parcelable {
 		return null;
 	}
 	
+	public boolean hasContentHash()
+	{
+		return contentHash != null && !CONTENT_HASH_UNAVAILABLE.equals(contentHash);
+	}
+	
 	public boolean isRecentDir()
 	{
 		return RECENT_DIR_TAG.equals(pathname);
@@ -645,6 +718,10 @@ public class FileInfo implements Parcelable {
 		if ( dirs==null )
 			dirs = new ArrayList<FileInfo>();
 		dirs.add(dir);
+		synchronized (this) {
+			if (childIndex != null)
+				childIndex.addDir(dir, dirs.size() - 1);
+		}
 		if (dir.parent == null)
 			dir.parent = this;
 	}
@@ -653,6 +730,10 @@ public class FileInfo implements Parcelable {
 		if ( files==null )
 			files = new ArrayList<FileInfo>();
 		files.add(file);
+		synchronized (this) {
+			if (childIndex != null)
+				childIndex.addFile(file, files.size() - 1);
+		}
 	}
 	public void addItems( Collection<FileInfo> items )
 	{
@@ -668,6 +749,7 @@ public class FileInfo implements Parcelable {
 	{
 		files = null;
 		dirs = null;
+		childIndex = null;
 		addItems( items );
 	}
 	public boolean updateItem( FileInfo item ) {
@@ -709,20 +791,134 @@ public class FileInfo implements Parcelable {
 	}
 	public FileInfo findItemByPathName( String pathName )
 	{
+		boolean onSDCard = isOnSDCard();
+		synchronized (this) {
+			ChildIndex index = getChildIndex(onSDCard);
+			if ( index!=null ) {
+				FileInfo item = index.findItemByPathName(pathName);
+				if ( item!=null || !index.outdated )
+					return item;
+				// lists are changed w/o updating index: rebuild it on next lookup
+				childIndex = null;
+			}
+		}
 		if ( dirs!=null )
 			for ( FileInfo dir : dirs )
-				if ( isOnSDCard() && pathName.compareToIgnoreCase(dir.getPathName()) == 0 || pathName.equals(dir.getPathName()) )
+				if ( matchesDirPathName(dir, pathName, onSDCard) )
 					return dir;
 		if ( files!=null )
 			for ( FileInfo file : files ) {
-				if ( isOnSDCard() && pathName.compareToIgnoreCase(file.getPathName()) == 0 || pathName.equals(file.getPathName()) )
-					return file;
-				if ( isOnSDCard() && file.getPathName().toLowerCase().startsWith(pathName.toLowerCase()+"@/") || file.getPathName().startsWith(pathName+"@/" ))
+				if ( matchesFilePathName(file, pathName, onSDCard) )
 					return file;
 			}
 		return null;
 	}
 
+	private static boolean matchesDirPathName(FileInfo dir, String pathName, boolean ignoreCase) {
+		return ignoreCase && pathName.compareToIgnoreCase(dir.getPathName()) == 0 || pathName.equals(dir.getPathName());
+	}
+
+	private static boolean matchesFilePathName(FileInfo file, String pathName, boolean ignoreCase) {
+		if ( ignoreCase && pathName.compareToIgnoreCase(file.getPathName()) == 0 || pathName.equals(file.getPathName()) )
+			return true;
+		return ignoreCase && file.getPathName().toLowerCase().startsWith(pathName.toLowerCase()+"@/") || file.getPathName().startsWith(pathName+"@/" );
+	}
+
+	/**
+	 * Index of child items by path, to avoid linear search in large directory.
+	 * Keeps positions of items in dirs and files lists. It's updated when items are appended,
+	 * and dropped when items are removed, reordered or replaced.
+	 * Built and accessed under lock of owner directory. Since lists still may be changed w/o updating it,
+	 * item found by position is checked, and callers fall back to linear search on mismatch.
+	 */
+	private static class ChildIndex {
+		private final FileInfo dir;
+		private final boolean ignoreCase;
+		// pathname and arcname -> position of first item with them, as in pathNameEquals()
+		private final HashMap<String, Integer> dirPositions = new HashMap<>();
+		private final HashMap<String, Integer> filePositions = new HashMap<>();
+		// path name -> position of first item found by it, as in findItemByPathName()
+		private final HashMap<String, Integer> dirNames = new HashMap<>();
+		private final HashMap<String, Integer> fileNames = new HashMap<>();
+		// set when found position doesn't point to item with requested path
+		private boolean outdated;
+
+		private ChildIndex(FileInfo dir, boolean ignoreCase) {
+			this.dir = dir;
+			this.ignoreCase = ignoreCase;
+			for (int i = 0; i < dir.dirCount(); i++)
+				addDir(dir.dirs.get(i), i);
+			for (int i = 0; i < dir.fileCount(); i++)
+				addFile(dir.files.get(i), i);
+		}
+
+		private static String key(FileInfo item) {
+			return item.arcname == null ? item.pathname : item.pathname + '\u0000' + item.arcname;
+		}
+
+		private String name(String pathName) {
+			return ignoreCase && pathName != null ? pathName.toLowerCase() : pathName;
+		}
+
+		private static void putFirst(HashMap<String, Integer> map, String key, int position) {
+			if (!map.containsKey(key))
+				map.put(key, position);
+		}
+
+		private void addDir(FileInfo item, int position) {
+			putFirst(dirPositions, key(item), position);
+			putFirst(dirNames, name(item.getPathName()), position);
+		}
+
+		private void addFile(FileInfo item, int position) {
+			putFirst(filePositions, key(item), position);
+			String name = name(item.getPathName());
+			putFirst(fileNames, name, position);
+			// archive is also found by path of its item
+			for (int p = name != null ? name.indexOf("@/") : -1; p >= 0; p = name.indexOf("@/", p + 1))
+				putFirst(fileNames, name.substring(0, p), position);
+		}
+
+		/**
+		 * @return found item, null if not found or index is outdated
+		 */
+		private FileInfo findItemByPathName(String pathName) {
+			String name = name(pathName);
+			Integer position = dirNames.get(name);
+			if (position != null) {
+				FileInfo item = position < dir.dirCount() ? dir.dirs.get(position) : null;
+				if (item != null && matchesDirPathName(item, pathName, ignoreCase))
+					return item;
+				outdated = true;
+				return null;
+			}
+			position = fileNames.get(name);
+			if (position != null) {
+				FileInfo item = position < dir.fileCount() ? dir.files.get(position) : null;
+				if (item != null && matchesFilePathName(item, pathName, ignoreCase))
+					return item;
+				outdated = true;
+			}
+			return null;
+		}
+	}
+
+	private synchronized ChildIndex getChildIndex(boolean onSDCard) {
+		if (itemCount() < CHILD_INDEX_MIN_ITEMS)
+			return null;
+		if (childIndex == null || childIndex.ignoreCase != onSDCard)
+			childIndex = new ChildIndex(this, onSDCard);
+		return childIndex;
+	}
+
+	private synchronized ChildIndex getChildIndex() {
+		if (itemCount() < CHILD_INDEX_MIN_ITEMS)
+			return null;
+		if (childIndex == null)
+			childIndex = new ChildIndex(this, isOnSDCard());
+		return childIndex;
+	}
+
 	public static boolean eq(String s1, String s2) {
 		if (s1 == null)
 			return s2 == null;
@@ -741,6 +937,23 @@ public class FileInfo implements Parcelable {
 	{
 		if ( item==null )
 			return -1;
+		Integer dirPosition = null;
+		Integer filePosition = null;
+		synchronized (this) {
+			ChildIndex index = getChildIndex();
+			if ( index!=null ) {
+				String key = ChildIndex.key(item);
+				dirPosition = index.dirPositions.get(key);
+				filePosition = index.filePositions.get(key);
+				if ( dirPosition==null && filePosition==null )
+					return -1;
+			}
+		}
+		if ( dirPosition!=null && dirPosition<dirCount() && item.pathNameEquals(dirs.get(dirPosition)) )
+			return dirPosition;
+		if ( dirPosition==null && filePosition!=null && filePosition<fileCount() && item.pathNameEquals(files.get(filePosition)) )
+			return filePosition + dirCount();
+		// item type differs from indexed one, or index is outdated: check all items
 		for ( int i=0; i<dirCount(); i++ ) {
 			if ( item.pathNameEquals(getDir(i)) )
 				return i;
@@ -756,6 +969,18 @@ public class FileInfo implements Parcelable {
 	{
 		if ( item==null )
 			return -1;
+		Integer position = null;
+		synchronized (this) {
+			ChildIndex index = getChildIndex();
+			if ( index!=null ) {
+				position = index.filePositions.get(ChildIndex.key(item));
+				if ( position==null )
+					return -1;
+			}
+		}
+		if ( position!=null && position<fileCount() && item.pathNameEquals(files.get(position)) )
+			return position;
+		// item type differs from indexed one, or index is outdated: check all items
 		for ( int i=0; i<fileCount(); i++ ) {
 			if (item.pathNameEquals(getFile(i)))
 				return i;
@@ -798,7 +1023,9 @@ public class FileInfo implements Parcelable {
         if ( index<0 )
 			throw new IndexOutOfBoundsException();
 		if (index < fileCount()) {
-			files.set(index, file);
+			FileInfo old = files.set(index, file);
+			if (childIndex != null && (!eq(ChildIndex.key(old), ChildIndex.key(file)) || !eq(old.getPathName(), file.getPathName())))
+				childIndex = null;
 			file.parent = this;
 			return;
 		}
@@ -859,6 +1086,8 @@ public class FileInfo implements Parcelable {
 				removed = true;
 			}
 		}
+		if ( removed )
+			childIndex = null;
 		return removed;
 	}
 	
@@ -870,6 +1099,7 @@ public class FileInfo implements Parcelable {
 			int n = files.indexOf(item);
 			if ( n>=0 && n<files.size() ) {
 				files.remove(n);
+				childIndex = null;
 				return;
 			}
 		}
@@ -877,6 +1107,7 @@ public class FileInfo implements Parcelable {
 			int n = dirs.indexOf(item);
 			if ( n>=0 && n<dirs.size() ) {
 				dirs.remove(n);
+				childIndex = null;
 			}
 		}
 	}
@@ -1032,6 +1263,7 @@ public class FileInfo implements Parcelable {
 	{
 		dirs = null;
 		files = null;
+		childIndex = null;
 	}
 
 	@Override
@@ -1070,6 +1302,7 @@ public class FileInfo implements Parcelable {
 		dest.writeByte((byte) (isListed ? 1 : 0));
 		dest.writeByte((byte) (isScanned ? 1 : 0));
 		dest.writeLong(crc32);
+		dest.writeString(contentHash);
 		dest.writeInt(domVersion);
 		dest.writeInt(blockRenderingFlags);
 		dest.writeParcelable(parent, flags);
@@ -1083,7 +1316,7 @@ public class FileInfo implements Parcelable {
 			{
 				if ( f1==null || f2==null )
 					return 0;
-				return Utils.cmp(f1.getFileNameToDisplay(), f2.getFileNameToDisplay());
+				return cmpNullFirst(f1.getDisplayNameSortKey(), f2.getDisplayNameSortKey());
 			}
 		}),
 		FILENAME_DESC(R.string.mi_book_sort_order_filename_desc, new Comparator<FileInfo>() {
@@ -1091,7 +1324,7 @@ public class FileInfo implements Parcelable {
 			{
 				if ( f1==null || f2==null )
 					return 0;
-				return Utils.cmp(f2.getFileNameToDisplay(), f1.getFileNameToDisplay());
+				return cmpNullFirst(f2.getDisplayNameSortKey(), f1.getDisplayNameSortKey());
 			}
 		}),
 		TIMESTAMP(R.string.mi_book_sort_order_timestamp, new Comparator<FileInfo>() {
@@ -1099,7 +1332,7 @@ public class FileInfo implements Parcelable {
 			{
 				if ( f1==null || f2==null )
 					return 0;
-				return firstNz( cmp(f1.createTime, f2.createTime), Utils.cmp(f1.filename, f2.filename) );
+				return firstNz( cmp(f1.createTime, f2.createTime), cmpNullFirst(f1.getFileNameSortKey(), f2.getFileNameSortKey()) );
 			}
 		}),
 		TIMESTAMP_DESC(R.string.mi_book_sort_order_timestamp_desc, new Comparator<FileInfo>() {
@@ -1107,7 +1340,7 @@ public class FileInfo implements Parcelable {
 			{
 				if ( f1==null || f2==null )
 					return 0;
-				return firstNz( cmp(f2.createTime, f1.createTime), Utils.cmp(f2.filename, f1.filename) );
+				return firstNz( cmp(f2.createTime, f1.createTime), cmpNullFirst(f2.getFileNameSortKey(), f1.getFileNameSortKey()) );
 			}
 		}),
 		AUTHOR_TITLE(R.string.mi_book_sort_order_author, new Comparator<FileInfo>() {
@@ -1116,11 +1349,11 @@ public class FileInfo implements Parcelable {
 				if ( f1==null || f2==null )
 					return 0;
 				return firstNz(
-						cmpNotNullFirst(Utils.formatAuthors(f1.authors), Utils.formatAuthors(f2.authors))
-						,cmpNotNullFirst(f1.series, f2.series)
+						cmpNotNullFirst(f1.getAuthorsSortKey(), f2.getAuthorsSortKey())
+						,cmpNotNullFirst(f1.getSeriesSortKey(), f2.getSeriesSortKey())
 						,cmp(f1.getSeriesNumber(), f2.getSeriesNumber())
-						,cmpNotNullFirst(f1.title, f2.title)
-						,Utils.cmp(f1.filename, f2.filename) 
+						,cmpNotNullFirst(f1.getTitleSortKey(), f2.getTitleSortKey())
+						,cmpNullFirst(f1.getFileNameSortKey(), f2.getFileNameSortKey()) 
 						);
 			}
 		}),
@@ -1130,11 +1363,11 @@ public class FileInfo implements Parcelable {
 				if ( f1==null || f2==null )
 					return 0;
 				return firstNz(
-						cmpNotNullFirst(Utils.formatAuthors(f2.authors), Utils.formatAuthors(f1.authors))
-						,cmpNotNullFirst(f2.series, f1.series)
+						cmpNotNullFirst(f2.getAuthorsSortKey(), f1.getAuthorsSortKey())
+						,cmpNotNullFirst(f2.getSeriesSortKey(), f1.getSeriesSortKey())
 						,cmp(f2.getSeriesNumber(), f1.getSeriesNumber())
-						,cmpNotNullFirst(f2.title, f1.title)
-						,Utils.cmp(f2.filename, f1.filename)
+						,cmpNotNullFirst(f2.getTitleSortKey(), f1.getTitleSortKey())
+						,cmpNullFirst(f2.getFileNameSortKey(), f1.getFileNameSortKey())
 				);
 			}
 		}),
@@ -1144,11 +1377,11 @@ public class FileInfo implements Parcelable {
 				if ( f1==null || f2==null )
 					return 0;
 				return firstNz(
-						cmpNotNullFirst(f1.series, f2.series)
+						cmpNotNullFirst(f1.getSeriesSortKey(), f2.getSeriesSortKey())
 						,cmp(f1.getSeriesNumber(), f2.getSeriesNumber())
-						,cmpNotNullFirst(f1.title, f2.title)
-						,cmpNotNullFirst(Utils.formatAuthors(f1.authors), Utils.formatAuthors(f2.authors))
-						,Utils.cmp(f1.filename, f2.filename) 
+						,cmpNotNullFirst(f1.getTitleSortKey(), f2.getTitleSortKey())
+						,cmpNotNullFirst(f1.getAuthorsSortKey(), f2.getAuthorsSortKey())
+						,cmpNullFirst(f1.getFileNameSortKey(), f2.getFileNameSortKey()) 
 						);
 			}
 		}),
@@ -1158,11 +1391,11 @@ public class FileInfo implements Parcelable {
 				if ( f1==null || f2==null )
 					return 0;
 				return firstNz(
-						cmpNotNullFirst(f2.series, f1.series)
+						cmpNotNullFirst(f2.getSeriesSortKey(), f1.getSeriesSortKey())
 						,cmp(f2.getSeriesNumber(), f1.getSeriesNumber())
-						,cmpNotNullFirst(f2.title, f1.title)
-						,cmpNotNullFirst(Utils.formatAuthors(f2.authors), Utils.formatAuthors(f1.authors))
-						,Utils.cmp(f2.filename, f1.filename)
+						,cmpNotNullFirst(f2.getTitleSortKey(), f1.getTitleSortKey())
+						,cmpNotNullFirst(f2.getAuthorsSortKey(), f1.getAuthorsSortKey())
+						,cmpNullFirst(f2.getFileNameSortKey(), f1.getFileNameSortKey())
 				);
 			}
 		});
@@ -1181,20 +1414,37 @@ public class FileInfo implements Parcelable {
 		}
 		
 		/**
-		 * Same as cmp, but not-null comes first
-		 * @param str1
-		 * @param str2
+		 * Compares sort keys, null comes first
+		 * @param key1
+		 * @param key2
+		 * @return
+		 */
+		private static int cmpNullFirst( String key1, String key2 )
+		{
+			if ( key1==null && key2==null )
+				return 0;
+			if ( key1==null )
+				return -1;
+			if ( key2==null )
+				return 1;
+			return key1.compareTo(key2);
+		}
+
+		/**
+		 * Compares sort keys, not-null comes first
+		 * @param key1
+		 * @param key2
 		 * @return
 		 */
-		private static int cmpNotNullFirst( String str1, String str2 )
+		private static int cmpNotNullFirst( String key1, String key2 )
 		{
-			if ( str1==null && str2==null )
+			if ( key1==null && key2==null )
 				return 0;
-			if ( str1==null )
+			if ( key1==null )
 				return 1;
-			if ( str2==null )
+			if ( key2==null )
 				return -1;
-			return Utils.cmp(str1, str2);
+			return key1.compareTo(key2);
 		}
 		
 		static int cmp( long n1, long n2 )
@@ -1236,6 +1486,7 @@ public class FileInfo implements Parcelable {
 			Collections.sort( newFiles, SortOrder.getComparator() );
 			files = newFiles;
 		}
+		childIndex = null;
 	}
 	
 	
@@ -0,0 +1,202 @@
+package org.coolreader.crengine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Persistent index of font files: size and modification time of each file and properties
+ * of its faces (file index, weight, italic, family, typeface), as crengine font manager registered them.
+ * <p>
+ * Faces of unchanged files are registered from index w/o opening of font files,
+ * only new and changed files are parsed by font manager; both are registered in order of font files,
+ * as font manager keeps the first of duplicate faces.
+ * Files which cannot be registered are kept in index with empty face list, so they are not parsed again.
+ * <p>
+ * Face properties are stored in form returned by Engine.getFontFacePropsListInternal():
+ * "fileName\tindex\tweight\titalic\tscalable\tfamily\ttypeface".
+ */
+public class FontIndex {
+
+	public static final Logger log = L.create("fi");
+
+	private static final String FILE_NAME = "fontindex";
+	private static final String HEADER = "cr3fontindex 1";
+
+	private static class Entry {
+		final long size;
+		final long lastModified;
+		final ArrayList<String> faces = new ArrayList<>();
+
+		Entry(long size, long lastModified) {
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		boolean isUpToDate(File f) {
+			return f.length() == size && f.lastModified() == lastModified;
+		}
+	}
+
+	private final File file;
+	private final HashMap<String, Entry> entries = new HashMap<>();
+	private boolean modified;
+
+	/**
+	 * Load index.
+	 * @param dir is directory to keep index file in, null if there is no writable directory: nothing is persisted
+	 */
+	public static FontIndex load(File dir) {
+		FontIndex index = new FontIndex(dir != null ? new File(dir, FILE_NAME) : null);
+		if (index.file != null && index.file.isFile())
+			index.read();
+		return index;
+	}
+
+	private FontIndex(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Make list of fonts to register: faces of indexed files and new or changed files to parse.
+	 * Order of font files is kept, since it decides which of duplicate faces is registered.
+	 * Files which are not found are dropped from index.
+	 * @param fontPaths is list of all font files found
+	 * @param changedPaths is list to add new and changed files to, they should be parsed
+	 * @return list of font file paths and properties of indexed faces, in order of fontPaths
+	 */
+	public synchronized String[] getFontList(String[] fontPaths, ArrayList<String> changedPaths) {
+		ArrayList<String> fonts = new ArrayList<>();
+		HashSet<String> found = new HashSet<>();
+		int faceCount = 0;
+		for (String path : fontPaths) {
+			found.add(path);
+			Entry entry = entries.get(path);
+			if (entry != null && entry.isUpToDate(new File(path))) {
+				fonts.addAll(entry.faces);
+				faceCount += entry.faces.size();
+			} else {
+				fonts.add(path);
+				changedPaths.add(path);
+			}
+		}
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			if (!found.contains(it.next().getKey())) {
+				it.remove();
+				modified = true;
+			}
+		}
+		log.i("font index: " + (fontPaths.length - changedPaths.size()) + " indexed files, " + faceCount + " faces; "
+				+ changedPaths.size() + " new or changed files");
+		return fonts.toArray(new String[0]);
+	}
+
+	/**
+	 * Update index after parsing of font files.
+	 * Files with faces skipped as duplicates are not indexed: they are parsed again next time,
+	 * since their faces should be registered when the other file is removed.
+	 * @param parsedPaths is list of parsed files
+	 * @param registeredFaces is properties of all faces registered by font manager
+	 * @param duplicatePaths is list of files with faces skipped as duplicates of already registered faces
+	 */
+	public synchronized void update(Collection<String> parsedPaths, String[] registeredFaces, String[] duplicatePaths) {
+		HashSet<String> duplicates = new HashSet<>(Arrays.asList(duplicatePaths));
+		HashMap<String, Entry> parsed = new HashMap<>();
+		for (String path : parsedPaths) {
+			if (duplicates.contains(path)) {
+				if (entries.remove(path) != null)
+					modified = true;
+				continue;
+			}
+			File f = new File(path);
+			parsed.put(path, new Entry(f.length(), f.lastModified()));
+		}
+		for (String face : registeredFaces) {
+			Entry entry = parsed.get(getFileName(face));
+			if (entry != null)
+				entry.faces.add(face);
+		}
+		entries.putAll(parsed);
+		if (!parsed.isEmpty())
+			modified = true;
+	}
+
+	/**
+	 * Save index if it's changed.
+	 */
+	public synchronized void save() {
+		if (file == null || !modified)
+			return;
+		File tmp = new File(file.getAbsolutePath() + ".tmp");
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"))) {
+			writer.write(HEADER);
+			writer.write('\n');
+			for (Map.Entry<String, Entry> item : entries.entrySet()) {
+				Entry entry = item.getValue();
+				writer.write(item.getKey() + "\t" + entry.size + "\t" + entry.lastModified + "\t" + entry.faces.size());
+				writer.write('\n');
+				for (String face : entry.faces) {
+					writer.write(face);
+					writer.write('\n');
+				}
+			}
+		} catch (IOException e) {
+			log.e("cannot write font index " + tmp, e);
+			tmp.delete();
+			return;
+		}
+		if (!tmp.renameTo(file)) {
+			log.e("cannot rename " + tmp + " to " + file);
+			tmp.delete();
+			return;
+		}
+		modified = false;
+		log.i("font index saved: " + entries.size() + " files");
+	}
+
+	private void read() {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+			if (!HEADER.equals(reader.readLine())) {
+				log.w("unknown font index format, ignoring " + file);
+				return;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 4)
+					throw new IOException("invalid entry: " + line);
+				Entry entry = new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+				int faceCount = Integer.parseInt(fields[3]);
+				for (int i = 0; i < faceCount; i++) {
+					String face = reader.readLine();
+					if (face == null || !fields[0].equals(getFileName(face)))
+						throw new IOException("invalid face of " + fields[0] + ": " + face);
+					entry.faces.add(face);
+				}
+				entries.put(fields[0], entry);
+			}
+		} catch (IOException | NumberFormatException e) {
+			log.e("cannot read font index " + file + ", all font files will be parsed", e);
+			entries.clear();
+			modified = true;
+		}
+	}
+
+	private static String getFileName(String face) {
+		int p = face.indexOf('\t');
+		return p >= 0 ? face.substring(0, p) : face;
+	}
+}
@@ -0,0 +1,73 @@
+package org.coolreader.crengine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Speculative warm-up of last read book at cold start.
+ * <p>
+ * Path of last book and of its crengine cache file are known from preferences before engine and DB
+ * are initialized, so cache file and head of book file are read in PREFETCH lane while fonts are
+ * discovered and DB is opened. When book is opened later, native loading and rendering of first page
+ * from cache file hit OS page cache.
+ * <p>
+ * Amount of data is limited, so prefetch doesn't compete for storage with font discovery and DB opening
+ * for long. Doesn't use Engine: its static initialization (font discovery) runs at the same time.
+ */
+public class LastBookPrefetcher {
+
+	public static final Logger log = L.create("lbp");
+
+	// max number of bytes to read from cache file
+	private static final long MAX_CACHE_FILE_PREFETCH_SIZE = 16 * 1024 * 1024;
+	// number of bytes to read from beginning of book file
+	private static final long BOOK_HEAD_PREFETCH_SIZE = 512 * 1024;
+
+	/**
+	 * Start prefetch. Returns immediately.
+	 * @param pathName is path name of book, as passed to ReaderView.loadDocument()
+	 * @param cacheFilePath is crengine cache file of book, as returned by DocView.getCacheFilePath(), null if unknown
+	 */
+	public static void start(final String pathName, final String cacheFilePath) {
+		if (pathName == null)
+			return;
+		TaskScheduler.instance().post(TaskScheduler.Lane.PREFETCH, () -> prefetch(pathName, cacheFilePath));
+	}
+
+	private static void prefetch(String pathName, String cacheFilePath) {
+		long startTime = Utils.timeStamp();
+		StartupTrace.beginSection("cr3:prefetchLastBook");
+		try {
+			String bookPath = pathName;
+			int p = pathName.indexOf(FileInfo.ARC_SEPARATOR);
+			if (p >= 0) {
+				// book in archive: read archive
+				bookPath = pathName.substring(0, p);
+			}
+			long total = 0;
+			if (cacheFilePath != null)
+				total += readFile(new File(cacheFilePath), MAX_CACHE_FILE_PREFETCH_SIZE);
+			total += readFile(new File(bookPath), BOOK_HEAD_PREFETCH_SIZE);
+			log.i("prefetched " + pathName + ", " + total + " bytes in " + Utils.timeInterval(startTime) + "ms");
+		} finally {
+			StartupTrace.endSection();
+		}
+	}
+
+	private static long readFile(File f, long maxSize) {
+		long total = 0;
+		if (!f.isFile())
+			return total;
+		try (InputStream is = new FileInputStream(f)) {
+			byte[] buf = new byte[65536];
+			int bytesRead;
+			while (total < maxSize && (bytesRead = is.read(buf, 0, (int) Math.min(buf.length, maxSize - total))) > 0)
+				total += bytesRead;
+		} catch (IOException e) {
+			log.w("cannot prefetch " + f + ": " + e.getMessage());
+		}
+		return total;
+	}
+}
@@ -0,0 +1,260 @@
+package org.coolreader.crengine;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+
+/**
+ * Cache of OPDS catalog responses.
+ * <p>
+ * Feed bodies are kept on disk with their ETag / Last-Modified validators, keyed by catalog credentials and URL,
+ * so feed can be revalidated with conditional request instead of downloading it again.
+ * Recently parsed feeds are kept in memory to show them w/o parsing when user returns to catalog page
+ * and server confirms that feed is not modified, until they are too old or invalidated by user's refresh.
+ * <p>
+ * Thread-safe.
+ */
+public class OPDSCache {
+
+	public static final Logger log = L.create("oc");
+
+	// max total size of cached responses on disk
+	private static final long MAX_DISK_SIZE = 4 * 1024 * 1024;
+	// max number of parsed feeds in memory
+	private static final int MAX_PARSED_FEEDS = 16;
+	// parsed feed older than this is dropped, to not keep it in memory for long
+	private static final long PARSED_FEED_MAX_AGE = 5 * 60 * 1000;
+
+	private static final String BODY_EXT = ".body";
+	private static final String META_EXT = ".meta";
+
+	/**
+	 * Cached response.
+	 */
+	public static class Response {
+		public final String url;
+		public final String etag;
+		public final String lastModified;
+		public final String contentType;
+		public final File bodyFile;
+
+		private Response(String url, String etag, String lastModified, String contentType, File bodyFile) {
+			this.url = url;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.contentType = contentType;
+			this.bodyFile = bodyFile;
+		}
+	}
+
+	/**
+	 * Parsed feed: catalog document info and all its entries, including next pages.
+	 */
+	public static class ParsedFeed {
+		public final OPDSUtil.DocInfo docInfo;
+		public final ArrayList<OPDSUtil.EntryInfo> entries;
+		private final long timestamp;
+
+		private ParsedFeed(OPDSUtil.DocInfo docInfo, Collection<OPDSUtil.EntryInfo> entries) {
+			this.docInfo = docInfo;
+			this.entries = new ArrayList<>(entries);
+			this.timestamp = Utils.timeStamp();
+		}
+	}
+
+	private static OPDSCache instance;
+
+	public static synchronized OPDSCache getInstance(Context context) {
+		if (instance == null)
+			instance = new OPDSCache(new File(context.getCacheDir(), "opds"), MAX_DISK_SIZE);
+		return instance;
+	}
+
+	private final File dir;
+	private final long maxDiskSize;
+	// iteration order is from least to most recently used
+	private final LinkedHashMap<String, ParsedFeed> parsedFeeds = new LinkedHashMap<>(MAX_PARSED_FEEDS, 0.75f, true);
+
+	private int hits;
+	private int notModified;
+	private int misses;
+
+	public OPDSCache(File dir, long maxDiskSize) {
+		this.dir = dir;
+		this.maxDiskSize = maxDiskSize;
+	}
+
+	/**
+	 * Find cached response for URL.
+	 * @return cached response, null if not found
+	 */
+	public synchronized Response get(String catalogKey, String url) {
+		String key = getKey(catalogKey + "\n" + url);
+		File metaFile = new File(dir, key + META_EXT);
+		File bodyFile = new File(dir, key + BODY_EXT);
+		if (!metaFile.isFile() || !bodyFile.isFile())
+			return null;
+		Properties props = new Properties();
+		try (InputStream is = new FileInputStream(metaFile)) {
+			props.load(is);
+		} catch (IOException e) {
+			log.w("cannot read cache entry for " + url + ": " + e.getMessage());
+			return null;
+		}
+		if (!url.equals(props.getProperty("url")))
+			return null;
+		return new Response(url, props.getProperty("etag"), props.getProperty("lastModified"), props.getProperty("contentType"), bodyFile);
+	}
+
+	/**
+	 * Save response body to cache. Response w/o validators is not saved, since it cannot be revalidated.
+	 */
+	public synchronized void put(String catalogKey, String url, String etag, String lastModified, String contentType, byte[] body) {
+		if (etag == null && lastModified == null)
+			return;
+		if (body.length > maxDiskSize / 4)
+			return;
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			log.w("cannot create cache directory " + dir);
+			return;
+		}
+		String key = getKey(catalogKey + "\n" + url);
+		File metaFile = new File(dir, key + META_EXT);
+		File bodyFile = new File(dir, key + BODY_EXT);
+		Properties props = new Properties();
+		props.setProperty("url", url);
+		if (etag != null)
+			props.setProperty("etag", etag);
+		if (lastModified != null)
+			props.setProperty("lastModified", lastModified);
+		if (contentType != null)
+			props.setProperty("contentType", contentType);
+		try (OutputStream os = new FileOutputStream(bodyFile)) {
+			os.write(body);
+		} catch (IOException e) {
+			log.w("cannot write cache entry for " + url + ": " + e.getMessage());
+			bodyFile.delete();
+			return;
+		}
+		try (OutputStream os = new FileOutputStream(metaFile)) {
+			props.store(os, null);
+		} catch (IOException e) {
+			log.w("cannot write cache entry for " + url + ": " + e.getMessage());
+			bodyFile.delete();
+			metaFile.delete();
+			return;
+		}
+		trim();
+	}
+
+	/**
+	 * Mark cached response as used: response was revalidated by server.
+	 */
+	public synchronized void touch(Response response) {
+		notModified++;
+		long ts = System.currentTimeMillis();
+		response.bodyFile.setLastModified(ts);
+	}
+
+	/**
+	 * Find recently parsed feed. Feed should be revalidated by conditional request before it's used.
+	 * @return parsed feed, null if not found or too old
+	 */
+	public synchronized ParsedFeed getParsedFeed(String catalogKey, String url) {
+		String key = catalogKey + "\n" + url;
+		ParsedFeed feed = parsedFeeds.get(key);
+		if (feed != null && Utils.timeInterval(feed.timestamp) > PARSED_FEED_MAX_AGE) {
+			parsedFeeds.remove(key);
+			feed = null;
+		}
+		if (feed != null)
+			hits++;
+		else
+			misses++;
+		return feed;
+	}
+
+	public synchronized void putParsedFeed(String catalogKey, String url, OPDSUtil.DocInfo docInfo, Collection<OPDSUtil.EntryInfo> entries) {
+		parsedFeeds.put(catalogKey + "\n" + url, new ParsedFeed(docInfo, entries));
+		Iterator<String> it = parsedFeeds.keySet().iterator();
+		while (parsedFeeds.size() > MAX_PARSED_FEEDS && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Forget parsed feed, to load it again: feed is revalidated by server if its response is cached on disk.
+	 */
+	public synchronized void invalidateParsedFeed(String catalogKey, String url) {
+		parsedFeeds.remove(catalogKey + "\n" + url);
+	}
+
+	public synchronized void clearParsedFeeds() {
+		parsedFeeds.clear();
+	}
+
+	/**
+	 * Get key of catalog credentials, to not share cached feeds between catalogs with different credentials.
+	 * @return empty string for catalog w/o credentials
+	 */
+	public static String getCatalogKey(String username, String password) {
+		if ((username == null || username.length() == 0) && (password == null || password.length() == 0))
+			return "";
+		return getKey(username + "\n" + password);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "OPDSCache[parsedFeeds=" + parsedFeeds.size() + ", hits=" + hits + ", notModified=" + notModified + ", misses=" + misses + "]";
+	}
+
+	/**
+	 * Remove least recently used responses to fit disk size limit.
+	 */
+	private void trim() {
+		File[] bodies = dir.listFiles((d, name) -> name.endsWith(BODY_EXT));
+		if (bodies == null)
+			return;
+		long total = 0;
+		for (File f : bodies)
+			total += f.length();
+		if (total <= maxDiskSize)
+			return;
+		Arrays.sort(bodies, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+		for (File f : bodies) {
+			if (total <= maxDiskSize)
+				break;
+			total -= f.length();
+			String name = f.getName();
+			new File(dir, name.substring(0, name.length() - BODY_EXT.length()) + META_EXT).delete();
+			f.delete();
+		}
+	}
+
+	private static String getKey(String url) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] digest = md.digest(url.getBytes("UTF-8"));
+			StringBuilder buf = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				buf.append(String.format("%02x", b & 0xFF));
+			return buf.toString();
+		} catch (NoSuchAlgorithmException | IOException e) {
+			return Integer.toHexString(url.hashCode());
+		}
+	}
+}
@@ -8,8 +8,12 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -20,6 +24,9 @@ import java.net.PasswordAuthentication;
 import java.net.Proxy;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -28,6 +35,8 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Stack;
 import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -93,8 +102,10 @@ xml:base="http://lib.ololo.cc/opds/">
 		public void onDownloadProgress( String type, String url, int percent );
 		/**
 		 * Book is downloaded.
+		 * @param crc32 is CRC32 of file contents calculated while downloading, 0 for archive
+		 * @param contentHash is SHA-512 of file contents calculated while downloading, null for archive
 		 */
-		public void onDownloadEnd( String type, String url, File file );
+		public void onDownloadEnd( String type, String url, File file, long crc32, String contentHash );
 		/**
 		 * Error occured
 		 */
@@ -587,7 +598,68 @@ xml:base="http://lib.ololo.cc/opds/">
 			}
 		}
 		
-		private File generateFileName( File outDir, String fileName, String type, boolean isZip ) {
+		/**
+		 * Open connection to URL: orobot:// URLs and .onion hosts are opened through ORobot proxy,
+		 * certificates and host names of HTTPS connections are not checked.
+		 */
+		static URLConnection openConnection(URL url) throws IOException, GeneralSecurityException {
+			URL newURL = url;
+			boolean useOrobotProxy = false;
+			String host = url.getHost();
+			if (host.endsWith(".onion"))
+				useOrobotProxy = true;
+			String oldAddress = url.toString();
+			if (oldAddress.startsWith("orobot://")) {
+				newURL = new URL("http://" + oldAddress.substring(9)); // skip orobot://
+				useOrobotProxy = true;
+				L.d("Converting url - " + oldAddress + " to " + newURL + " for using ORobot proxy");
+			} else if (oldAddress.startsWith("orobots://")) {
+				newURL = new URL("https://" + oldAddress.substring(10)); // skip orobots://
+				useOrobotProxy = true;
+				L.d("Converting url - " + oldAddress + " to " + newURL + " for using ORobot proxy");
+			}
+			Proxy proxy = null;
+			System.setProperty("http.keepAlive", "false");
+			if (useOrobotProxy) {
+				proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", 8118)); // ORobot proxy running on this device
+				L.d("Using ORobot proxy: " + proxy);
+			}
+			URLConnection conn = proxy == null ? newURL.openConnection() : newURL.openConnection(proxy);
+			if ( conn instanceof HttpsURLConnection ) {
+				HttpsURLConnection https = (HttpsURLConnection)conn;
+				// Create a trust manager that does not validate certificate chains
+				TrustManager[] trustAllCerts = new TrustManager[] { new X509TrustManager() {
+					public java.security.cert.X509Certificate[] getAcceptedIssuers() {
+						return null;
+					}
+					public void checkClientTrusted(X509Certificate[] certs, String authType) {
+					}
+					public void checkServerTrusted(X509Certificate[] certs, String authType) {
+					}
+				} };
+				// Install the all-trusting trust manager
+				final SSLContext sc = SSLContext.getInstance("SSL");
+				sc.init(null, trustAllCerts, new java.security.SecureRandom());
+				HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+				https.setHostnameVerifier((arg0, arg1) -> true);
+			}
+			return conn;
+		}
+
+		/**
+		 * Set up HTTP basic authorization of connection.
+		 */
+		static void setAuthorization(HttpURLConnection connection, final String username, final String password) {
+			if (username != null && username.length() > 0 && password != null && password.length() > 0) {
+				connection.setRequestProperty("Authorization", encodePassword(username, password));
+				Authenticator.setDefault(new Authenticator() {
+					protected PasswordAuthentication getPasswordAuthentication() {
+						return new PasswordAuthentication(username, password.toCharArray());
+					}});
+			}
+		}
+
+		static File generateFileName( File outDir, String fileName, String type, boolean isZip ) {
 			DocumentFormat fmt = type!=null ? DocumentFormat.byMimeType(type) : null;
 			//DocumentFormat fmtext = fileName!=null ? DocumentFormat.byExtension(fileName) : null;
 			if ( fileName==null )
@@ -607,7 +679,8 @@ xml:base="http://lib.ololo.cc/opds/">
 			for (int i=0; i<1000; i++ ) {
 				String fn = fileName + (i==0 ? "" : "(" + i + ")") + "." + ext; 
 				File f = new File(outDir, fn);
-				if ( !f.exists() && !f.isDirectory() )
+				// name may be reserved by unfinished download
+				if ( !f.exists() && !f.isDirectory() && !DownloadManager.getPartFile(f).exists() )
 					return f;
 			}
 			return null;
@@ -641,29 +714,34 @@ xml:base="http://lib.ololo.cc/opds/">
 			}
 			
 			L.d("Download started: " + outFile.getAbsolutePath());
-//			long lastTs = System.currentTimeMillis(); 
-//			int lastPercent = -1;
 			boolean success = false;
+			long startTime = Utils.timeStamp();
+			long totalWritten = 0;
+			// fingerprints of plain file are the same as calculated by scanner, so it doesn't need to read file again;
+			// for archive they are calculated for unpacked book, so nothing is calculated here
+			CRC32 crc = null;
+			MessageDigest digest = null;
+			if ( !isZip ) {
+				crc = new CRC32();
+				try {
+					digest = MessageDigest.getInstance("SHA-512");
+				} catch (NoSuchAlgorithmException e) {
+					L.w("SHA-512 is not available: " + e.getMessage());
+				}
+			}
 			try (FileOutputStream os = new FileOutputStream(outFile)) {
-				byte[] buf = new byte[16384];
-				int totalWritten = 0;
+				// write to disk and calculate fingerprints while reading from network, block by block
+				byte[] buf = new byte[DOWNLOAD_BUFFER_SIZE];
 				while (totalWritten<contentLength || contentLength==-1) {
 					int bytesRead = is.read(buf);
 					if ( bytesRead<=0 )
 						break;
 					os.write(buf, 0, bytesRead);
+					if ( crc!=null )
+						crc.update(buf, 0, bytesRead);
+					if ( digest!=null )
+						digest.update(buf, 0, bytesRead);
 					totalWritten += bytesRead;
-//					final int percent = totalWritten * 100 / contentLength;
-//					long ts = System.currentTimeMillis(); 
-//					if ( percent!=lastPercent && ts - lastTs > 1500 ) {
-//						L.d("Download progress: " + percent + "%");
-//						BackgroundThread.instance().postGUI(new Runnable() {
-//							@Override
-//							public void run() {
-//								callback.onDownloadProgress(type, url, percent);
-//							}
-//						});
-//					}
 				}
 				success = true;
 			} finally {
@@ -674,8 +752,11 @@ xml:base="http://lib.ololo.cc/opds/">
 					}
 				}
 			}
-			L.d("Download finished");
-			BackgroundThread.instance().executeGUI(() -> callback.onDownloadEnd(type, url, outFile));
+			long elapsed = Math.max(Utils.timeInterval(startTime), 1);
+			L.d("Download finished: " + totalWritten + " bytes in " + elapsed + " ms, " + (totalWritten * 1000 / elapsed / 1024) + " KB/s");
+			final long crc32 = crc!=null ? crc.getValue() : 0;
+			final String contentHash = crc==null ? null : digest!=null ? Utils.toHexString(digest.digest()) : FileInfo.CONTENT_HASH_UNAVAILABLE;
+			BackgroundThread.instance().executeGUI(() -> callback.onDownloadEnd(type, url, outFile, crc32, contentHash));
 		}
 		public static int findSubstring( byte[]buf, String str ) {
 			for ( int i=0; i<buf.length-str.length(); i++ ) {
@@ -691,6 +772,30 @@ xml:base="http://lib.ololo.cc/opds/">
 			return -1; // not found
 		}
 		
+		/**
+		 * Read from stream until buffer is full or end of stream is reached.
+		 * @return number of bytes read
+		 */
+		private static int readFully(InputStream is, byte[] buf) throws IOException {
+			int total = 0;
+			while (total < buf.length) {
+				int bytesRead = is.read(buf, total, buf.length - total);
+				if (bytesRead <= 0)
+					break;
+				total += bytesRead;
+			}
+			return total;
+		}
+
+		private static byte[] readAll(InputStream is) throws IOException {
+			ByteArrayOutputStream os = new ByteArrayOutputStream(STREAM_BUFFER_SIZE);
+			byte[] buf = new byte[STREAM_BUFFER_SIZE];
+			int bytesRead;
+			while ((bytesRead = is.read(buf)) > 0)
+				os.write(buf, 0, bytesRead);
+			return os.toByteArray();
+		}
+
 		public static String encodePassword(String username, String password) {
 			return Base64.encodeToString((username + ":" + password).getBytes(), Base64.NO_WRAP);
 		}
@@ -700,7 +805,14 @@ xml:base="http://lib.ololo.cc/opds/">
 			
 			boolean itemsLoadedPartially = false;
 			boolean loadNext = false;
+			boolean loadFailed = false;
 			HashSet<String> visited = new HashSet<String>();
+			final boolean expectFeed = expectedType != null && expectedType.startsWith("application/atom+xml");
+			final OPDSCache cache = OPDSCache.getInstance(coolReader);
+			final String startUrl = url.toString();
+			final String catalogKey = OPDSCache.getCatalogKey(username, password);
+			// recently parsed feed is reused if server confirms that feed is not modified
+			final OPDSCache.ParsedFeed parsedFeed = expectFeed ? cache.getParsedFeed(catalogKey, startUrl) : null;
 
 			do {
 				try {
@@ -712,56 +824,7 @@ xml:base="http://lib.ololo.cc/opds/">
 							delayedProgress.cancel();
 						delayedProgress = Services.getEngine().showProgressDelayed(0, progressMessage, PROGRESS_DELAY_MILLIS);
 					}
-					URL newURL = url;
-					boolean useOrobotProxy = false;
-					String host = url.getHost();
-					if (host.endsWith(".onion"))
-					    useOrobotProxy = true;
-					String oldAddress = url.toString();
-					if (oldAddress.startsWith("orobot://")) {
-					    newURL = new URL("http://" + oldAddress.substring(9)); // skip orobot://
-					    useOrobotProxy = true;
-					    L.d("Converting url - " + oldAddress + " to " + newURL + " for using ORobot proxy");
-					} else if (oldAddress.startsWith("orobots://")) {
-					    newURL = new URL("https://" + oldAddress.substring(10)); // skip orobots://
-					    useOrobotProxy = true;
-					    L.d("Converting url - " + oldAddress + " to " + newURL + " for using ORobot proxy");
-					}
-					Proxy proxy = null;
-                    System.setProperty("http.keepAlive", "false");					
-					if (useOrobotProxy) {
-                        // Set-up proxy
-                        //System.setProperty("http.proxyHost", "127.0.0.1");
-                        //System.setProperty("http.proxyPort", "8118");
-					    //L.d("Using ORobot proxy: " + proxy);
-					    proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", 8118)); // ORobot proxy running on this device
-					    L.d("Using ORobot proxy: " + proxy);
-					} else {
-                        //System.clearProperty("http.proxyHost");
-                        //System.clearProperty("http.proxyPort");
-					}
-				    
-					URLConnection conn = proxy == null ? newURL.openConnection() : newURL.openConnection(proxy);
-					if ( conn instanceof HttpsURLConnection ) {
-	                	HttpsURLConnection https = (HttpsURLConnection)conn;
-
-	                    // Create a trust manager that does not validate certificate chains
-	                    TrustManager[] trustAllCerts = new TrustManager[] { new X509TrustManager() {
-	                        public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-	                            return null;
-	                        }
-	                        public void checkClientTrusted(X509Certificate[] certs, String authType) {
-	                        }
-	                        public void checkServerTrusted(X509Certificate[] certs, String authType) {
-	                        }
-	                    } };
-	                    // Install the all-trusting trust manager
-	                    final SSLContext sc = SSLContext.getInstance("SSL");
-	                    sc.init(null, trustAllCerts, new java.security.SecureRandom());
-	                    HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-	                    
-	                	https.setHostnameVerifier((arg0, arg1) -> true);
-					}
+					URLConnection conn = openConnection(url);
 					if ( !(conn instanceof HttpURLConnection) ) {
 						onError("Only HTTP supported");
 						return;
@@ -773,18 +836,24 @@ xml:base="http://lib.ololo.cc/opds/">
 		            connection.setInstanceFollowRedirects(true);
 	                connection.setUseCaches(false);
 		            
-	                if (username != null && username.length() > 0 && password != null && password.length() > 0) {
-	                	connection.setRequestProperty("Authorization", encodePassword(username, password));
-	                	Authenticator.setDefault(new Authenticator() {
-	                	    protected PasswordAuthentication getPasswordAuthentication() {
-	                	        return new PasswordAuthentication(username, password.toCharArray());
-	                	    }});	            	
-	                }
+	                setAuthorization(connection, username, password);
 		            
 		            connection.setAllowUserInteraction(false);
 		            connection.setConnectTimeout(CONNECT_TIMEOUT);
 		            connection.setReadTimeout(READ_TIMEOUT);
 		            connection.setDoInput(true);
+		            OPDSCache.Response cachedResponse = null;
+		            if (expectFeed) {
+		            	// we decode gzip ourselves, so Content-Length is size of transferred data
+		            	connection.setRequestProperty("Accept-Encoding", "gzip");
+		            	cachedResponse = cache.get(catalogKey, url.toString());
+		            	if (cachedResponse != null) {
+		            		if (cachedResponse.etag != null)
+		            			connection.setRequestProperty("If-None-Match", cachedResponse.etag);
+		            		if (cachedResponse.lastModified != null)
+		            			connection.setRequestProperty("If-Modified-Since", cachedResponse.lastModified);
+		            	}
+		            }
 		            String fileName = null;
 		            String disp = connection.getHeaderField("Content-Disposition");
 		            if ( disp!=null ) {
@@ -817,33 +886,72 @@ xml:base="http://lib.ololo.cc/opds/">
 						L.d("Response " + response + ": redirect to " + url);
 						continue;
 					}
-					if ( response != 200 ) {
+					final boolean notModified = response == 304 && cachedResponse != null;
+					if ( response != 200 && !notModified ) {
 						onError("Error " + response);
 						return;
 					}
 					
 					if (cancelled)
 						break;
+
+					if (notModified && parsedFeed != null && !itemsLoadedPartially) {
+						// first page is not modified: show entries parsed last time instead of parsing it and next pages again
+						L.d("Feed is not modified, using recently parsed feed for " + startUrl + ": " + parsedFeed.entries.size() + " entries");
+						cache.touch(cachedResponse);
+						if (delayedProgress != null)
+							delayedProgress.cancel();
+						hideProgress();
+						BackgroundThread.instance().executeGUI(() -> {
+							if (!callback.onFinish(parsedFeed.docInfo, parsedFeed.entries))
+								cancel();
+						});
+						return;
+					}
 					
-					String contentType = connection.getContentType();
-					String contentEncoding = connection.getContentEncoding();
-					int contentLen = connection.getContentLength();
-					//connection.getC
-					if (EXTENDED_LOG) L.d("Entity content length: " + contentLen);
-					if (EXTENDED_LOG) L.d("Entity content type: " + contentType);
-					if (EXTENDED_LOG) L.d("Entity content encoding: " + contentEncoding);
-					setProgressMessage( url.toString(), contentLen );
-					InputStream is = connection.getInputStream();
-					if (delayedProgress != null)
-						delayedProgress.cancel();
-					is = new ProgressInputStream(is, startTimeStamp, progressMessage, contentLen, 80);
+					String contentType;
+					String contentEncoding;
+					int contentLen;
+					InputStream is;
+					ProgressInputStream progressStream = null;
+					if (notModified) {
+						L.d("Feed is not modified, using cached copy of " + url);
+						cache.touch(cachedResponse);
+						contentType = cachedResponse.contentType;
+						contentEncoding = null;
+						contentLen = (int)cachedResponse.bodyFile.length();
+						if (delayedProgress != null)
+							delayedProgress.cancel();
+						is = new BufferedInputStream(new FileInputStream(cachedResponse.bodyFile), STREAM_BUFFER_SIZE);
+					} else {
+						contentType = connection.getContentType();
+						contentEncoding = connection.getContentEncoding();
+						contentLen = connection.getContentLength();
+						//connection.getC
+						if (EXTENDED_LOG) L.d("Entity content length: " + contentLen);
+						if (EXTENDED_LOG) L.d("Entity content type: " + contentType);
+						if (EXTENDED_LOG) L.d("Entity content encoding: " + contentEncoding);
+						setProgressMessage( url.toString(), contentLen );
+						is = connection.getInputStream();
+						if (delayedProgress != null)
+							delayedProgress.cancel();
+						// progress is checked once per block, parser reads single bytes from buffer
+						progressStream = new ProgressInputStream(is, startTimeStamp, progressMessage, contentLen, 80);
+						is = progressStream;
+						if ("gzip".equalsIgnoreCase(contentEncoding)) {
+							is = new GZIPInputStream(is, STREAM_BUFFER_SIZE);
+							// decoded size is unknown
+							contentLen = -1;
+						}
+						is = new BufferedInputStream(is, STREAM_BUFFER_SIZE);
+					}
 					final int MAX_CONTENT_LEN_TO_BUFFER = 256*1024;
 					boolean isZip = contentType!=null && contentType.equals("application/zip");
 					if ( expectedType!=null )
 						contentType = expectedType;
 					else if ( contentLen>0 && contentLen<MAX_CONTENT_LEN_TO_BUFFER) { // autodetect type
 						byte[] buf = new byte[contentLen];
-						if ( is.read(buf)!=contentLen ) {
+						if ( readFully(is, buf)!=contentLen ) {
 							onError("Wrong content length");
 							return;
 						}
@@ -855,7 +963,15 @@ xml:base="http://lib.ololo.cc/opds/">
 					}
 					if ( contentType.startsWith("application/atom+xml") ) {
 						if (EXTENDED_LOG) L.d("Parsing feed");
+						if (expectFeed && !notModified) {
+							// keep copy of feed to revalidate it next time
+							byte[] body = readAll(is);
+							cache.put(catalogKey, url.toString(), connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), contentType, body);
+							is = new ByteArrayInputStream(body);
+						}
 						parseFeed( is );
+						if (progressStream != null)
+							L.d("Feed is loaded: " + progressStream.getBytesRead() + " bytes, " + progressStream.getBytesPerSecond() / 1024 + " KB/s");
 						itemsLoadedPartially = true;
 						if (handler.docInfo.nextLink!=null && handler.docInfo.nextLink.type.startsWith("application/atom+xml;profile=opds-catalog")) {
 							if (handler.entries.size() < MAX_OPDS_ITEMS) {
@@ -884,6 +1000,7 @@ xml:base="http://lib.ololo.cc/opds/">
 					if ( progressShown )
 						Services.getEngine().hideProgress();
 					onError("Error occured while reading OPDS catalog");
+					loadFailed = true;
 					break;
 				} finally {
 					if ( connection!=null )
@@ -912,6 +1029,8 @@ xml:base="http://lib.ololo.cc/opds/">
 				delayedProgress.cancel();
 			hideProgress();
 			if (itemsLoadedPartially && !cancelled) {
+				if (expectFeed && !loadFailed)
+					cache.putParsedFeed(catalogKey, startUrl, handler.docInfo, handler.entries);
 				BackgroundThread.instance().executeGUI(() -> {
 					L.d("Parsing is finished successfully. " + handler.entries.size() + " entries found");
 					hideProgress();
@@ -922,49 +1041,71 @@ xml:base="http://lib.ololo.cc/opds/">
 		}
 
 		public void run() {
-			BackgroundThread.instance().postBackground(() -> {
+			// network I/O should not delay rendering
+			TaskScheduler.instance().post(TaskScheduler.Lane.IO, () -> {
 				try {
 					runInternal();
 				} catch ( Exception e ) {
 					L.e("exception while opening OPDS", e);
 				}
-			});
+			}, cancellationToken);
 		}
 
 		public void cancel() {
 			if (!cancelled) {
 				L.d("cancelling current download task");
 				cancelled = true;
+				cancellationToken.cancel();
 			}
 		}
 
+		private final TaskScheduler.CancellationToken cancellationToken = new TaskScheduler.CancellationToken();
+
 		volatile private boolean cancelled = false;
 		
 		private boolean progressShown = false;
 		
 		private boolean partialDownloadCompleted = false;
 	
-		public class ProgressInputStream extends InputStream {
+		/**
+		 * Counts bytes read from source stream and shows progress.
+		 * Progress is checked once per read call, so stream should be read by blocks:
+		 * wrap it into BufferedInputStream for byte-by-byte consumers.
+		 */
+		public class ProgressInputStream extends FilterInputStream {
 
 			private static final int TIMEOUT = 1500;  
 			
-			private final InputStream sourceStream;
-			private final int totalSize;
+			private final long totalSize;
 			private final String progressMessage;
+			private final long startTimeStamp;
 			private long lastUpdate;
 			private int lastPercent;
 			private int maxPercentToStartShowingProgress;
-			private int bytesRead;
+			private long bytesRead;
 			
 			public ProgressInputStream( InputStream sourceStream, long startTimeStamp, String progressMessage, int totalSize, int maxPercentToStartShowingProgress ) {
-				this.sourceStream = sourceStream;
+				super(sourceStream);
 				this.totalSize = totalSize;
 				this.maxPercentToStartShowingProgress = maxPercentToStartShowingProgress * 100;
 				this.progressMessage = progressMessage;
+				this.startTimeStamp = startTimeStamp;
 				this.lastUpdate = startTimeStamp;
 				this.bytesRead = 0;
 			}
 
+			public long getBytesRead() {
+				return bytesRead;
+			}
+
+			/**
+			 * @return average read speed since start, bytes per second
+			 */
+			public long getBytesPerSecond() {
+				long elapsed = Math.max(System.currentTimeMillis() - startTimeStamp, 1);
+				return bytesRead * 1000 / elapsed;
+			}
+
 			private void updateProgress() {
 				long ts = System.currentTimeMillis();
 				long delay = ts - lastUpdate;
@@ -972,7 +1113,7 @@ xml:base="http://lib.ololo.cc/opds/">
 					lastUpdate = ts;
 					int percent = 0;
 					if ( totalSize>0 ) {
-						percent = bytesRead * 100 / totalSize * 100;
+						percent = (int)(bytesRead * 100 / totalSize * 100);
 					}
 					if ( !partialDownloadCompleted && (!progressShown || percent!=lastPercent) && (progressShown || percent<maxPercentToStartShowingProgress || delay > TIMEOUT*2 ) ) {
 						Services.getEngine().showProgress(percent, progressMessage);
@@ -985,14 +1126,37 @@ xml:base="http://lib.ololo.cc/opds/">
 			
 			@Override
 			public int read() throws IOException {
-				bytesRead++;
-				updateProgress();
-				return sourceStream.read();
+				int res = in.read();
+				if (res >= 0) {
+					bytesRead++;
+					updateProgress();
+				}
+				return res;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int res = in.read(b, off, len);
+				if (res > 0) {
+					bytesRead += res;
+					updateProgress();
+				}
+				return res;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				long res = in.skip(n);
+				if (res > 0) {
+					bytesRead += res;
+					updateProgress();
+				}
+				return res;
 			}
 
 			@Override
-			public void close() throws IOException {
-				super.close();
+			public boolean markSupported() {
+				return false;
 			}
 		}
 		
@@ -1022,5 +1186,7 @@ xml:base="http://lib.ololo.cc/opds/">
 	}
 	
 	public static final int PROGRESS_DELAY_MILLIS = 2000;
+	public static final int STREAM_BUFFER_SIZE = 16384;
+	public static final int DOWNLOAD_BUFFER_SIZE = 65536;
 	public static final int MAX_OPDS_ITEMS = 1000;
 }
@@ -932,8 +932,6 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			if (mCurrentPageInfo != null) {
 				if (img.equals(mCurrentPageInfo.imageInfo))
 					return mCurrentPageInfo;
-				mCurrentPageInfo.recycle();
-				mCurrentPageInfo = null;
 			}
 			PositionProperties currpos = doc.getPositionProps(null, false);
 			BitmapInfo bi = new BitmapInfo();
@@ -941,7 +939,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			bi.bitmap = factory.get(internalDX, internalDY);
 			bi.position = currpos;
 			doc.drawImage(bi.bitmap, bi.imageInfo);
-			mCurrentPageInfo = bi;
+			setCurrentPageImage(bi);
 			return mCurrentPageInfo;
 		}
 
@@ -3275,70 +3273,28 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 	private static final VMRuntimeHack runtime = new VMRuntimeHack();
 
 	private static class BitmapFactory {
-		public static final int MAX_FREE_LIST_SIZE = 2;
-		ArrayList<Bitmap> freeList = new ArrayList<Bitmap>();
-		ArrayList<Bitmap> usedList = new ArrayList<Bitmap>();
-
-		public synchronized Bitmap get(int dx, int dy) {
-			for (int i = 0; i < freeList.size(); i++) {
-				Bitmap bmp = freeList.get(i);
-				if (bmp.getWidth() == dx && bmp.getHeight() == dy) {
-					// found bitmap of proper size
-					freeList.remove(i);
-					usedList.add(bmp);
-					//log.d("BitmapFactory: reused free bitmap, used list = " + usedList.size() + ", free list=" + freeList.size());
-					return bmp;
-				}
-			}
-			for (int i = freeList.size() - 1; i >= 0; i--) {
-				Bitmap bmp = freeList.remove(i);
-				runtime.trackAlloc(bmp.getWidth() * bmp.getHeight() * 2);
-				//log.d("Recycling free bitmap "+bmp.getWidth()+"x"+bmp.getHeight());
-				//bmp.recycle(); //20110109
-			}
-			Bitmap bmp = Bitmap.createBitmap(dx, dy, DeviceInfo.BUFFER_COLOR_FORMAT);
-			runtime.trackFree(dx * dy * 2);
-			//bmp.setDensity(0);
-			usedList.add(bmp);
-			//log.d("Created new bitmap "+dx+"x"+dy+". New bitmap list size = " + usedList.size());
-			return bmp;
-		}
-
-		public synchronized void compact() {
-			while (freeList.size() > 0) {
-				//freeList.get(0).recycle();//20110109
-				Bitmap bmp = freeList.remove(0);
-				runtime.trackAlloc(bmp.getWidth() * bmp.getHeight() * 2);
-			}
-		}
-
-		public synchronized void release(Bitmap bmp) {
-			for (int i = 0; i < usedList.size(); i++) {
-				if (usedList.get(i) == bmp) {
-					freeList.add(bmp);
-					usedList.remove(i);
-					while (freeList.size() > MAX_FREE_LIST_SIZE) {
-						//freeList.get(0).recycle(); //20110109
-						Bitmap b = freeList.remove(0);
-						runtime.trackAlloc(b.getWidth() * b.getHeight() * 2);
-						//b.recycle();
-					}
-					log.d("BitmapFactory: bitmap released, used size = " + usedList.size() + ", free size=" + freeList.size());
-					return;
-				}
-			}
-			// unknown bitmap, just recycle
-			//bmp.recycle();//20110109
+		private final BitmapPool pool = BitmapPool.getInstance();
+
+		public Bitmap get(int dx, int dy) {
+			return pool.get(dx, dy, DeviceInfo.BUFFER_COLOR_FORMAT);
+		}
+
+		public void compact() {
+			pool.compact();
+		}
+
+		public void release(Bitmap bmp) {
+			pool.release(bmp);
 		}
 	}
 
-	;
 	BitmapFactory factory = new BitmapFactory();
 
 	class BitmapInfo {
 		Bitmap bitmap;
 		PositionProperties position;
 		ImageInfo imageInfo;
+		long renderTime;
 
 		void recycle() {
 			factory.release(bitmap);
@@ -3359,19 +3315,139 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 	}
 
 	private BitmapInfo mCurrentPageInfo;
-	private BitmapInfo mNextPageInfo;
+
+	/**
+	 * Page image cache, ordered from least to most recently used.
+	 * Contains mCurrentPageInfo (unless it's image viewer image), which is never evicted.
+	 */
+	private final ArrayList<BitmapInfo> mPageImageCache = new ArrayList<>();
+	private static final int PAGE_IMAGE_CACHE_MIN_SIZE = 2;
+	private static final int PAGE_IMAGE_CACHE_MAX_SIZE = 7;
+	// max number of pages to pre-render in each direction
+	private static final int PAGE_IMAGE_PRERENDER_MAX_PAGES = 2;
+	// cached images of non-current pages older than this are re-rendered (page header may contain clock)
+	private static final long PAGE_IMAGE_MAX_AGE = 60000;
+	private static final long PAGE_IMAGE_PRERENDER_DELAY = 300;
+	// cache stats of pages requested for drawing, pre-rendered pages are counted separately
+	private int pageImageCacheHits;
+	private int pageImageCacheMisses;
+	private int pageImagesPrerendered;
+
+	/**
+	 * Number of page images to cache, based on page bitmap size and memory budget.
+	 */
+	private int getPageImageCacheCapacity() {
+		long pageBytes = (long)internalDX * internalDY * (DeviceInfo.BUFFER_COLOR_FORMAT == Bitmap.Config.RGB_565 ? 2 : 4);
+		if (pageBytes <= 0)
+			return PAGE_IMAGE_CACHE_MIN_SIZE;
+		long capacity = DeviceInfo.getPageImageCacheBudget() / pageBytes;
+		if (capacity < PAGE_IMAGE_CACHE_MIN_SIZE)
+			return PAGE_IMAGE_CACHE_MIN_SIZE;
+		if (capacity > PAGE_IMAGE_CACHE_MAX_SIZE)
+			return PAGE_IMAGE_CACHE_MAX_SIZE;
+		return (int)capacity;
+	}
+
+	/**
+	 * Find page image in cache.
+	 * @param prerender is true if page is requested for pre-rendering, it's not counted in hits/misses then
+	 */
+	private BitmapInfo findCachedPageImage(PositionProperties pos, boolean prerender) {
+		if (pos == null)
+			return null;
+		for (int i = mPageImageCache.size() - 1; i >= 0; i--) {
+			BitmapInfo bi = mPageImageCache.get(i);
+			if (bi.imageInfo == null && bi.position != null && bi.position.equals(pos)) {
+				if (bi != mCurrentPageInfo && bi.renderTime + PAGE_IMAGE_MAX_AGE < Utils.timeStamp()) {
+					// outdated image
+					mPageImageCache.remove(i);
+					bi.recycle();
+					break;
+				}
+				// move to most recently used
+				mPageImageCache.remove(i);
+				mPageImageCache.add(bi);
+				if (!prerender)
+					pageImageCacheHits++;
+				return bi;
+			}
+		}
+		if (prerender)
+			pageImagesPrerendered++;
+		else
+			pageImageCacheMisses++;
+		return null;
+	}
+
+	/**
+	 * Render page at current document position and put it into cache.
+	 */
+	private BitmapInfo renderPageImage(PositionProperties pos) {
+		int capacity = getPageImageCacheCapacity();
+		// evict least recently used images, except current page
+		for (int i = 0; i < mPageImageCache.size() && mPageImageCache.size() >= capacity; ) {
+			BitmapInfo bi = mPageImageCache.get(i);
+			if (bi == mCurrentPageInfo) {
+				i++;
+				continue;
+			}
+			mPageImageCache.remove(i);
+			bi.recycle();
+		}
+		BitmapInfo bi = new BitmapInfo();
+		bi.position = pos;
+		bi.bitmap = factory.get(internalDX > 0 ? internalDX : requestedWidth,
+				internalDY > 0 ? internalDY : requestedHeight);
+		doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
+		doc.getPageImage(bi.bitmap);
+		bi.renderTime = Utils.timeStamp();
+		mPageImageCache.add(bi);
+		return bi;
+	}
+
+	/**
+	 * Make page image current. Previous current image is released if it's not in cache.
+	 */
+	private void setCurrentPageImage(BitmapInfo bi) {
+		if (mCurrentPageInfo != null && mCurrentPageInfo != bi && !mPageImageCache.contains(mCurrentPageInfo))
+			mCurrentPageInfo.recycle();
+		mCurrentPageInfo = bi;
+	}
+
+	/**
+	 * Release all cached page images.
+	 */
+	private void clearPageImageCache() {
+		for (BitmapInfo bi : mPageImageCache) {
+			if (bi != mCurrentPageInfo)
+				bi.recycle();
+		}
+		mPageImageCache.clear();
+		if (mCurrentPageInfo != null)
+			mCurrentPageInfo.recycle();
+		mCurrentPageInfo = null;
+	}
 
 	/**
 	 * Prepare and cache page image.
-	 * Cache is represented by two slots: mCurrentPageInfo and mNextPageInfo.
+	 * Cache contains up to getPageImageCacheCapacity() recently used or pre-rendered pages,
+	 * current page image is stored as mCurrentPageInfo.
 	 * If page already exists in cache, returns it (if current page requested,
-	 * ensures that it became stored as mCurrentPageInfo; if another page requested,
-	 * no mCurrentPageInfo/mNextPageInfo reordering made).
+	 * ensures that it became stored as mCurrentPageInfo).
 	 *
 	 * @param offset is kind of page: 0==current, -1=previous, 1=next page
 	 * @return page image and properties, null if requested page is unavailable (e.g. requested next/prev page is out of document range)
 	 */
 	private BitmapInfo preparePageImage(int offset) {
+		return preparePageImage(offset, false);
+	}
+
+	/**
+	 * Prepare and cache page image.
+	 * @param offset is kind of page: 0==current, -1=previous, 1=next page
+	 * @param prerender is true if page is pre-rendered in idle time, to not count it in cache hits/misses
+	 */
+	private BitmapInfo preparePageImage(int offset, boolean prerender) {
 		BackgroundThread.ensureBackground();
 		log.v("preparePageImage( " + offset + ")");
 		//if (offset == 0) {
@@ -3385,12 +3461,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 //			}
 		//}
 		if (invalidImages) {
-			if (mCurrentPageInfo != null)
-				mCurrentPageInfo.recycle();
-			mCurrentPageInfo = null;
-			if (mNextPageInfo != null)
-				mNextPageInfo.recycle();
-			mNextPageInfo = null;
+			clearPageImageCache();
 			invalidImages = false;
 		}
 
@@ -3427,67 +3498,35 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 		boolean isPageView = currpos.pageMode != 0;
 
-		BitmapInfo currposBitmap = null;
-		if (mCurrentPageInfo != null && mCurrentPageInfo.position != null && mCurrentPageInfo.position.equals(currpos) && mCurrentPageInfo.imageInfo == null)
-			currposBitmap = mCurrentPageInfo;
-		else if (mNextPageInfo != null && mNextPageInfo.position != null && mNextPageInfo.position.equals(currpos) && mNextPageInfo.imageInfo == null)
-			currposBitmap = mNextPageInfo;
 		if (offset == 0) {
 			// Current page requested
-			if (currposBitmap != null) {
-				if (mNextPageInfo == currposBitmap) {
-					// reorder pages
-					BitmapInfo tmp = mNextPageInfo;
-					mNextPageInfo = mCurrentPageInfo;
-					mCurrentPageInfo = tmp;
-				}
-				// found ready page image
-				return mCurrentPageInfo;
-			}
-			if (mCurrentPageInfo != null) {
-				mCurrentPageInfo.recycle();
-				mCurrentPageInfo = null;
-			}
-			BitmapInfo bi = new BitmapInfo();
-			bi.position = currpos;
-			bi.bitmap = factory.get(internalDX > 0 ? internalDX : requestedWidth,
-					internalDY > 0 ? internalDY : requestedHeight);
-			doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
-			doc.getPageImage(bi.bitmap);
-			mCurrentPageInfo = bi;
+			BitmapInfo currposBitmap = findCachedPageImage(currpos, prerender);
+			if (currposBitmap == null)
+				currposBitmap = renderPageImage(currpos);
+			setCurrentPageImage(currposBitmap);
 			//log.v("Prepared new current page image " + mCurrentPageInfo);
 			return mCurrentPageInfo;
 		}
 		if (isPageView) {
 			// PAGES: one of next or prev pages requested, offset is specified as param
 			int cmd1 = offset > 0 ? ReaderCommand.DCMD_PAGEDOWN.nativeId : ReaderCommand.DCMD_PAGEUP.nativeId;
-			int cmd2 = offset > 0 ? ReaderCommand.DCMD_PAGEUP.nativeId : ReaderCommand.DCMD_PAGEDOWN.nativeId;
 			if (offset < 0)
 				offset = -offset;
 			if (doc.doCommand(cmd1, offset)) {
 				// can move to next page
 				PositionProperties nextpos = doc.getPositionProps(null, false);
+				// page is not changed at document bounds
+				boolean clamped = nextpos.pageNumber == currpos.pageNumber;
 				BitmapInfo nextposBitmap = null;
-				if (mCurrentPageInfo != null && mCurrentPageInfo.position != null && mCurrentPageInfo.position.equals(nextpos))
-					nextposBitmap = mCurrentPageInfo;
-				else if (mNextPageInfo != null && mNextPageInfo.position != null && mNextPageInfo.position.equals(nextpos))
-					nextposBitmap = mNextPageInfo;
-				if (nextposBitmap == null) {
-					// existing image not found in cache, overriding mNextPageInfo
-					if (mNextPageInfo != null)
-						mNextPageInfo.recycle();
-					mNextPageInfo = null;
-					BitmapInfo bi = new BitmapInfo();
-					bi.position = nextpos;
-					bi.bitmap = factory.get(internalDX, internalDY);
-					doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
-					doc.getPageImage(bi.bitmap);
-					mNextPageInfo = bi;
-					nextposBitmap = bi;
-					//log.v("Prepared new current page image " + mNextPageInfo);
+				if (!clamped) {
+					nextposBitmap = findCachedPageImage(nextpos, prerender);
+					if (nextposBitmap == null) {
+						// existing image not found in cache, render it
+						nextposBitmap = renderPageImage(nextpos);
+					}
 				}
-				// return back to previous page
-				doc.doCommand(cmd2, offset);
+				// return back to previous page: moving back by offset is clamped at document bounds, so go to saved page
+				doc.doCommand(ReaderCommand.DCMD_GO_PAGE_DONT_SAVE_HISTORY.nativeId, currpos.pageNumber);
 				return nextposBitmap;
 			} else {
 				// cannot move to page: out of document range
@@ -3498,24 +3537,9 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			int y = currpos.y + offset;
 			if (doc.doCommand(ReaderCommand.DCMD_GO_POS.nativeId, y)) {
 				PositionProperties nextpos = doc.getPositionProps(null, false);
-				BitmapInfo nextposBitmap = null;
-				if (mCurrentPageInfo != null && mCurrentPageInfo.position != null && mCurrentPageInfo.position.equals(nextpos))
-					nextposBitmap = mCurrentPageInfo;
-				else if (mNextPageInfo != null && mNextPageInfo.position != null && mNextPageInfo.position.equals(nextpos))
-					nextposBitmap = mNextPageInfo;
-				if (nextposBitmap == null) {
-					// existing image not found in cache, overriding mNextPageInfo
-					if (mNextPageInfo != null)
-						mNextPageInfo.recycle();
-					mNextPageInfo = null;
-					BitmapInfo bi = new BitmapInfo();
-					bi.position = nextpos;
-					bi.bitmap = factory.get(internalDX, internalDY);
-					doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
-					doc.getPageImage(bi.bitmap);
-					mNextPageInfo = bi;
-					nextposBitmap = bi;
-				}
+				BitmapInfo nextposBitmap = findCachedPageImage(nextpos, prerender);
+				if (nextposBitmap == null)
+					nextposBitmap = renderPageImage(nextpos);
 				// return back to prev position
 				doc.doCommand(ReaderCommand.DCMD_GO_POS.nativeId, currpos.y);
 				return nextposBitmap;
@@ -3526,6 +3550,43 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 	}
 
+	private int prerenderTaskId = 0;
+	private final DelayedExecutor prerenderTask = DelayedExecutor.createBackground("prerender");
+
+	/**
+	 * Schedule rendering of pages around current one in idle time.
+	 * Pages are rendered one per task, so user commands are not delayed for long.
+	 * Call from background thread.
+	 */
+	private void schedulePageImagesPrerender() {
+		final int taskId = ++prerenderTaskId;
+		final int pages = Math.min(PAGE_IMAGE_PRERENDER_MAX_PAGES, (getPageImageCacheCapacity() - 1) / 2);
+		if (pages <= 0)
+			return;
+		prerenderTask.postDelayed(() -> prerenderPageImage(taskId, 1, pages), PAGE_IMAGE_PRERENDER_DELAY);
+	}
+
+	/**
+	 * Pre-render single page, then schedule next one.
+	 * @param taskId is id of prerender session, to stop it if new page is drawn
+	 * @param step is index of page to render: 1 for +1, 2 for -1, 3 for +2, ...
+	 * @param pages is number of pages to render in each direction
+	 */
+	private void prerenderPageImage(final int taskId, final int step, final int pages) {
+		BackgroundThread.ensureBackground();
+		if (taskId != prerenderTaskId || step > pages * 2 || !mOpened || currentAnimation != null
+				|| currentImageViewer != null || invalidImages || mCurrentPageInfo == null
+				|| mCurrentPageInfo.position == null || mCurrentPageInfo.position.pageMode == 0)
+			return;
+		int offset = (step + 1) / 2;
+		if (step % 2 == 0)
+			offset = -offset;
+		preparePageImage(offset, true);
+		if (step == pages * 2)
+			log.v("page images pre-rendered: cache size=" + mPageImageCache.size() + ", hits=" + pageImageCacheHits + ", misses=" + pageImageCacheMisses + ", prerendered=" + pageImagesPrerendered);
+		BackgroundThread.instance().postBackground(() -> prerenderPageImage(taskId, step + 1, pages));
+	}
+
 	private int lastDrawTaskId = 0;
 
 	private class DrawPageTask extends Task {
@@ -3562,6 +3623,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			bi = preparePageImage(0);
 			if (bi != null) {
 				bookView.draw(isPartially);
+				schedulePageImagesPrerender();
 			}
 		}
 
@@ -5153,6 +5215,14 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		return currentCloudSyncProgressPosition > 0;
 	}
 
+	// document loading which is not finished yet, GUI thread only
+	private LoadDocumentTask mLoadDocumentTask;
+
+	/**
+	 * Book opening pipeline: metadata probe, settings/profile application, native loading, first page rendering.
+	 * All stages run in background thread, GUI thread never waits for engine.
+	 * Task is cancelled when another document loading is started before it's finished.
+	 */
 	private class LoadDocumentTask extends Task {
 		String filename;
 		String path;
@@ -5163,22 +5233,30 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		int profileNumber;
 		boolean disableInternalStyles;
 		boolean disableTextAutoformat;
+		final FileInfo bookFileInfo;
+		final boolean needProbe;
+		// cache file of opened book, to prefetch it on next start
+		String cacheFilePath;
+		final Properties currSettings;
+		volatile boolean cancelled;
+		final long startTime = Utils.timeStamp();
+		long stageStartTime;
+		final StringBuilder stageTimes = new StringBuilder();
 
 		LoadDocumentTask(BookInfo bookInfo, byte[] docBuffer, Runnable doneHandler, Runnable errorHandler) {
 			BackgroundThread.ensureGUI();
+			if (mLoadDocumentTask != null)
+				mLoadDocumentTask.cancel();
+			mLoadDocumentTask = this;
+			StartupTrace.mark("loadStarted");
 			mBookInfo = bookInfo;
 			FileInfo fileInfo = bookInfo.getFileInfo();
+			bookFileInfo = fileInfo;
 			log.v("LoadDocumentTask for " + fileInfo);
-			if (fileInfo.getTitle() == null && docBuffer == null) {
-				// As a book 'should' have a title, no title means we should
-				// retrieve the book metadata from the engine to get the
-				// book language.
-				// Is it OK to do this here???  Should we use isScanned?
-				// Should we use another fileInfo flag or a new flag?
-				mEngine.scanBookProperties(fileInfo);
-			}
-			String language = fileInfo.getLanguage();
-			log.v("update hyphenation language: " + language + " for " + fileInfo.getTitle());
+			// As a book 'should' have a title, no title means we should
+			// retrieve the book metadata from the engine to get the
+			// book language. It's done in background thread: scan in progress may hold engine lock.
+			needProbe = fileInfo.getTitle() == null && docBuffer == null;
 			this.filename = fileInfo.getPathName();
 			this.path = fileInfo.arcname != null ? fileInfo.arcname : fileInfo.pathname;
 			this.docBuffer = docBuffer;
@@ -5208,28 +5286,64 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			// close existing document
 			log.v("LoadDocumentTask : closing current book");
 			close();
-			final Properties currSettings = new Properties(mSettings);
-			//setAppSettings(props, oldSettings);
-			BackgroundThread.instance().postBackground(() -> {
-				log.v("LoadDocumentTask : switching current profile");
-				applySettings(currSettings); //enforce settings reload
-				log.i("Switching done");
-			});
+			currSettings = new Properties(mSettings);
+		}
+
+		/**
+		 * Cancel loading: stages which are not started yet are skipped, done handler is not called.
+		 */
+		void cancel() {
+			cancelled = true;
+		}
+
+		private void stageStarted(String stage) {
+			StartupTrace.beginSection("cr3:open:" + stage);
+			stageStartTime = Utils.timeStamp();
+		}
+
+		private void stageFinished(String stage) {
+			StartupTrace.endSection();
+			if (stageTimes.length() > 0)
+				stageTimes.append(", ");
+			stageTimes.append(stage).append("=").append(Utils.timeInterval(stageStartTime)).append("ms");
+		}
 
+		private boolean checkCancelled(String stage) {
+			if (cancelled)
+				log.i("LoadDocumentTask for " + filename + " is cancelled before " + stage + " stage");
+			return cancelled;
 		}
 
 		@Override
 		public void work() throws IOException {
 			BackgroundThread.ensureBackground();
 			coverPageBytes = null;
+			if (checkCancelled("probe"))
+				return;
+			if (needProbe) {
+				stageStarted("probe");
+				mEngine.scanBookProperties(bookFileInfo);
+				log.v("update hyphenation language: " + bookFileInfo.getLanguage() + " for " + bookFileInfo.getTitle());
+				stageFinished("probe");
+			}
+			if (checkCancelled("settings"))
+				return;
+			stageStarted("settings");
+			log.v("LoadDocumentTask : switching current profile");
+			applySettings(currSettings); //enforce settings reload
+			log.i("Switching done");
+			stageFinished("settings");
+			if (checkCancelled("load"))
+				return;
+			stageStarted("load");
 			log.i("Loading document " + filename);
 			doc.doCommand(ReaderCommand.DCMD_SET_INTERNAL_STYLES.nativeId, disableInternalStyles ? 0 : 1);
 			doc.doCommand(ReaderCommand.DCMD_SET_TEXT_FORMAT.nativeId, disableTextAutoformat ? 0 : 1);
-			doc.doCommand(ReaderCommand.DCMD_SET_REQUESTED_DOM_VERSION.nativeId, mBookInfo.getFileInfo().domVersion);
-			if (0 == mBookInfo.getFileInfo().domVersion) {
+			doc.doCommand(ReaderCommand.DCMD_SET_REQUESTED_DOM_VERSION.nativeId, bookFileInfo.domVersion);
+			if (0 == bookFileInfo.domVersion) {
 				doc.doCommand(ReaderCommand.DCMD_SET_RENDER_BLOCK_RENDERING_FLAGS.nativeId, 0);
 			} else {
-				doc.doCommand(ReaderCommand.DCMD_SET_RENDER_BLOCK_RENDERING_FLAGS.nativeId, mBookInfo.getFileInfo().blockRenderingFlags);
+				doc.doCommand(ReaderCommand.DCMD_SET_RENDER_BLOCK_RENDERING_FLAGS.nativeId, bookFileInfo.blockRenderingFlags);
 			}
 			boolean success;
 			if (null != docBuffer)
@@ -5242,6 +5356,10 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 				doc.requestRender();
 
 				findCoverPage();
+				stageFinished("load");
+				if (checkCancelled("render"))
+					return;
+				stageStarted("render");
 				log.v("requesting page image, to render");
 				if (internalDX == 0 || internalDY == 0) {
 					internalDX = surface.getWidth();
@@ -5250,11 +5368,14 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 					doc.resize(internalDX, internalDY);
 				}
 				preparePageImage(0);
+				stageFinished("render");
+				StartupTrace.mark("firstPageRendered");
 				log.v("updating loaded book info");
 				updateLoadedBookInfo(null != docBuffer);
 				if (null == docBuffer) {
 					// Opened existing file
 					log.i("Document " + filename + " is loaded successfully");
+					cacheFilePath = doc.getCacheFilePath();
 					if (pos != null) {
 						log.i("Restoring position : " + pos);
 						restorePositionBackground(pos);
@@ -5267,8 +5388,10 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 					// receive data from the database through callbacks
 					// and cannot control the completion of the operation.
 				}
+				log.i("Document " + filename + " is opened in " + Utils.timeInterval(startTime) + "ms: " + stageTimes);
 				CoolReader.dumpHeapAllocation();
 			} else {
+				stageFinished("load");
 				log.e("Error occurred while trying to load document " + filename);
 				throw new IOException("Cannot read document");
 			}
@@ -5277,6 +5400,12 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		@Override
 		public void done() {
 			BackgroundThread.ensureGUI();
+			if (mLoadDocumentTask == this)
+				mLoadDocumentTask = null;
+			if (cancelled) {
+				log.d("LoadDocumentTask for " + filename + " is cancelled");
+				return;
+			}
 			log.d("LoadDocumentTask, GUI thread is finished successfully");
 			if (!Services.isStopped()) {
 				if (null == docBuffer) {
@@ -5307,7 +5436,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 							selector.requestBookSelection(l);
 						}
 					}
-					mActivity.setLastBook(filename);
+					mActivity.setLastBook(filename, cacheFilePath);
 				} else {
 					// Opened from memory buffer
 					// After stream successfully opened, find corresponding file it in DB
@@ -5390,7 +5519,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 				}
 				highlightBookmarks();
 				hideProgress();
-				drawPage();
+				drawPage(() -> StartupTrace.finish("firstPageShown"), false);
 				mActivity.showReader();
 				if (null != doneHandler)
 					doneHandler.run();
@@ -5400,6 +5529,13 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 		public void fail(Exception e) {
 			BackgroundThread.ensureGUI();
+			if (mLoadDocumentTask == this)
+				mLoadDocumentTask = null;
+			if (cancelled) {
+				log.d("LoadDocumentTask for " + filename + " is cancelled");
+				return;
+			}
+			StartupTrace.finish("loadFailed");
 			close();
 			log.v("LoadDocumentTask failed for " + mBookInfo, e);
 			final FileInfo finalFileInfo = new FileInfo(mBookInfo.getFileInfo());
@@ -5834,19 +5970,9 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 			public void done() {
 				BackgroundThread.ensureGUI();
-				if (currentAnimation == null) {
-					if (mCurrentPageInfo != null) {
-						mCurrentPageInfo.recycle();
-						mCurrentPageInfo = null;
-					}
-					if (mNextPageInfo != null) {
-						mNextPageInfo.recycle();
-						mNextPageInfo = null;
-					}
-				} else
-					invalidImages = true;
+				// page image cache is owned by background thread: it's cleared there on next preparePageImage()
+				clearImageCache();
 				factory.compact();
-				mCurrentPageInfo = null;
 			}
 		});
 	}
@@ -6045,6 +6171,11 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		public void work() throws Exception {
 			if (this != currentSwapTask)
 				return;
+			if (doc.startCacheWriting()) {
+				// written by engine worker thread w/o occupying this thread
+				log.d("cache file writing is started in engine worker thread");
+				return;
+			}
 			int res = doc.swapToCache();
 			isTimeout = res == DocView.SWAP_TIMEOUT;
 			long duration = System.currentTimeMillis() - startTime;
@@ -6161,6 +6292,72 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		});
 	}
 
+	public interface SentencesCallback {
+		void onSentences(Selection[] sentences);
+	}
+
+	/**
+	 * Select sentence got by getNextSentences() by its positions, moving to its page if needed.
+	 * @param sentence is sentence to select
+	 * @param callback is called in GUI thread
+	 */
+	public void selectSentence(final Selection sentence, final MoveSelectionCallback callback) {
+		post(new Task() {
+			private boolean res;
+
+			@Override
+			public void work() throws Exception {
+				res = doc.selectSentence(sentence);
+			}
+
+			@Override
+			public void done() {
+				clearImageCache();
+				surface.invalidate();
+				drawPage();
+				if (callback != null) {
+					if (res)
+						callback.onNewSelection(sentence);
+					else
+						callback.onFail();
+				}
+			}
+
+			@Override
+			public void fail(Exception e) {
+				if (callback != null)
+					callback.onFail();
+			}
+		});
+	}
+
+	/**
+	 * Get sentences following specified one w/o changing of selection.
+	 * @param sentence is sentence to start after
+	 * @param count is max number of sentences to get
+	 * @param callback is called in GUI thread
+	 */
+	public void getNextSentences(final Selection sentence, final int count, final SentencesCallback callback) {
+		post(new Task() {
+			private Selection[] sentences;
+
+			@Override
+			public void work() throws Exception {
+				sentences = doc.getNextSentences(sentence.startPos, count);
+			}
+
+			@Override
+			public void done() {
+				callback.onSentences(sentences);
+			}
+
+			@Override
+			public void fail(Exception e) {
+				callback.onSentences(new Selection[0]);
+			}
+		});
+	}
+
 	private void showSwitchProfileDialog() {
 		SwitchProfileDialog dlg = new SwitchProfileDialog(mActivity, this);
 		dlg.show();
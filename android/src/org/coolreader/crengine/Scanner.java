@@ -8,18 +8,28 @@ import org.coolreader.plugins.OnlineStorePluginManager;
 import org.coolreader.plugins.OnlineStoreWrapper;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 
 public class Scanner extends FileInfoChangeSource {
 	
 	public static final Logger log = L.create("sc");
 	
-	HashMap<String, FileInfo> mFileList = new HashMap<>();
+	Map<String, FileInfo> mFileList = new ConcurrentHashMap<>();
+	// directory path -> modification time taken before last full listing
+	private final Map<String, Long> mListedDirTimes = new ConcurrentHashMap<>();
+	// directories with empty subdirectories removed on last listing, should be listed again on next walk
+	private final Set<String> mPrunedDirs = Collections.newSetFromMap(new ConcurrentHashMap<>());
 //	ArrayList<FileInfo> mFilesForParsing = new ArrayList<FileInfo>();
 	FileInfo mRoot;
 	
@@ -247,8 +257,10 @@ public class Scanner extends FileInfoChangeSource {
 	 * @param baseDir is directory with files to lookup/scan; file items will be updated with info from file metadata or DB
 	 * @param readyCallback is Runable to call when operation is finished or stopped (will be called in GUI thread)
 	 * @param control allows to stop long operation
+	 * @param updateContentHashes is true to calculate missing content hash of books scanned by older version
+	 *                            (explicit scan), false to use DB values as is (browsing)
 	 */
-	private void scanDirectoryFiles(final CRDBService.LocalBinder db, final FileInfo baseDir, final ScanControl control, final Engine.ProgressControl progress, final Runnable readyCallback) {
+	private void scanDirectoryFiles(final CRDBService.LocalBinder db, final FileInfo baseDir, final ScanControl control, final Engine.ProgressControl progress, final boolean updateContentHashes, final Runnable readyCallback) {
 		// GUI thread
 		BackgroundThread.ensureGUI();
 		log.d("scanDirectoryFiles(" + baseDir.getPathName() + ") ");
@@ -307,6 +319,12 @@ public class Scanner extends FileInfoChangeSource {
 				if (fromDB != null) {
 					// use DB value
 					baseDir.setFile(i, fromDB);
+					if (updateContentHashes && null == fromDB.contentHash) {
+						// scanned by older version: calculate missing content hash in background,
+						// it's not null after that even if it cannot be calculated;
+						// not done while browsing, since it reads whole file (sync still matches such books by crc32)
+						filesForCRC32Update.add(new FileInfo(fromDB));
+					}
 				} else {
 					if (item.format != null && item.format.canParseProperties()) {
 						filesForParsing.add(new FileInfo(item));
@@ -319,51 +337,21 @@ public class Scanner extends FileInfoChangeSource {
 				readyCallback.run();
 				return;
 			}
-			// scan files in Background thread,
-			// update CRC32 in Background thread
-			BackgroundThread.instance().postBackground(() -> {
-				// Background thread
-				final ArrayList<FileInfo> filesForSave1 = new ArrayList<>();
-				try {
-					int count1 = filesForParsing.size();
-					int count2 = filesForCRC32Update.size();
-					int count = count1 + count2;
-					for ( int i=0; i<count1; i++ ) {
-						if (control.isStopped())
-							break;
-						progress.setProgress((i + count) * 10000 / (2*count));
-						FileInfo item = filesForParsing.get(i);
-						if (engine.scanBookProperties(item))
-							filesForSave1.add(item);
-					}
-					for ( int i=0; i<count2; i++ ) {
-						if (control.isStopped())
-							break;
-						progress.setProgress((i + count) * 10000 / (2*count));
-						FileInfo item = filesForCRC32Update.get(i);
-						if (Engine.updateFileCRC32(item))
-							filesForSave1.add(item);
-					}
-				} catch (Exception e) {
-					L.e("Exception while scanning", e);
-				}
-				progress.hide();
-				// jump to GUI thread
-				BackgroundThread.instance().postGUI(() -> {
-					// GUI thread
-					try {
-						if (filesForSave1.size() > 0) {
-							db.saveFileInfos(filesForSave1);
+			// scan files and update CRC32 using pool of worker threads,
+			// scanned files are saved into DB in batches while scan is in progress
+			BookScanPipeline.getInstance(engine).scan(filesForParsing, filesForCRC32Update, control, progress,
+					batch -> db.saveFileInfos(batch),
+					(scanned, stats) -> {
+						// GUI thread
+						try {
+							for (FileInfo file : scanned)
+								baseDir.setFile(file);
+						} catch (Exception e ) {
+							L.e("Exception while scanning", e);
 						}
-						for (FileInfo file : filesForSave1)
-							baseDir.setFile(file);
-					} catch (Exception e ) {
-						L.e("Exception while scanning", e);
-					}
-					// call finish handler
-					readyCallback.run();
-				});
-			});
+						// call finish handler
+						readyCallback.run();
+					});
 		});
 	}
 	
@@ -378,68 +366,125 @@ public class Scanner extends FileInfoChangeSource {
 	public void scanDirectory(final CRDBService.LocalBinder db, final FileInfo baseDir, final Runnable initialUpdateCallback, final ScanCompleteListener readyListener, final boolean recursiveScan, final ScanControl scanControl) {
 		// Call in GUI thread only!
 		BackgroundThread.ensureGUI();
+		if (recursiveScan && !baseDir.isSpecialDir()) {
+			// load saved states of subfolders to skip unchanged ones
+			db.loadFolderStates(baseDir.getPathName(), states -> scanDirectory(db, baseDir, initialUpdateCallback, readyListener, true, scanControl, states));
+		} else {
+			scanDirectory(db, baseDir, initialUpdateCallback, readyListener, recursiveScan, scanControl, null);
+		}
+	}
+
+	/**
+	 * Get state of directory at the moment of last listing: modification time and number of listed children.
+	 * @param dir is directory, should be listed
+	 * @return directory state, null if directory was not listed in background yet
+	 *         or has hidden empty subdirectories (books may appear there w/o changing directory)
+	 */
+	private CRDBService.FolderState getFolderState(FileInfo dir) {
+		Long mtime = dir.isSpecialDir() ? null : mListedDirTimes.get(dir.getPathName());
+		if (mtime == null || mtime == 0 || mPrunedDirs.contains(dir.getPathName()))
+			return null;
+		return new CRDBService.FolderState(mtime, dir.fileCount() + dir.dirCount());
+	}
+
+	/**
+	 * Scan single directory for dir and file properties in background thread.
+	 * @param folderStates is saved states of subfolders for recursive scan:
+	 *                     subfolders with unchanged state are restored from DB instead of listing
+	 *                     and their files are not checked, null to list and check all
+	 */
+	private void scanDirectory(final CRDBService.LocalBinder db, final FileInfo baseDir, final Runnable initialUpdateCallback, final ScanCompleteListener readyListener, final boolean recursiveScan, final ScanControl scanControl, final HashMap<String, CRDBService.FolderState> folderStates) {
+		// Call in GUI thread only!
+		BackgroundThread.ensureGUI();
 
 		log.d("scanDirectory(" + baseDir.getPathName() + ") " + (recursiveScan ? "recursive" : ""));
 		
 		listDirectory(baseDir, true, false);
 		if (null != initialUpdateCallback)
 			initialUpdateCallback.run();
-		listSubtreeBg(baseDir, mHideEmptyDirs ? Integer.MAX_VALUE : 2, scanControl, () -> {
+		// recursive scan needs whole subtree listed
+		int maxDepth = recursiveScan || mHideEmptyDirs ? Integer.MAX_VALUE : 2;
+		listSubtreeBg(baseDir, maxDepth, scanControl, folderStates, () -> {
 			if ( (!getDirScanEnabled() || baseDir.isScanned) && !recursiveScan || scanControl.isStopped() ) {
 				readyListener.onComplete(scanControl);
 				return;
 			}
-			Engine.ProgressControl progress = engine.createProgress(recursiveScan ? 0 : R.string.progress_scanning, scanControl);
-			scanDirectoryFiles(db, baseDir, scanControl, progress, () -> {
+			if (recursiveScan) {
+				// walk subtree breadth-first
+				final ArrayDeque<FileInfo> queue = new ArrayDeque<>();
+				queue.add(baseDir);
+				scanQueuedDirectories(db, baseDir, queue, folderStates, readyListener, scanControl);
+				return;
+			}
+			final CRDBService.FolderState folderState = getFolderState(baseDir);
+			Engine.ProgressControl progress = engine.createProgress(R.string.progress_scanning, scanControl);
+			scanDirectoryFiles(db, baseDir, scanControl, progress, false, () -> {
 				// GUI thread
 				onDirectoryContentChanged(baseDir);
 				try {
-					if (scanControl.isStopped()) {
-						// scan is stopped
-						readyListener.onComplete(scanControl);
-					} else {
+					if (!scanControl.isStopped()) {
 						baseDir.isScanned = true;
-
-						if ( recursiveScan ) {
-							if (scanControl.isStopped()) {
-								// scan is stopped
-								readyListener.onComplete(scanControl);
-								return;
-							}
-							// make list of subdirectories to scan
-							final ArrayList<FileInfo> dirsToScan = new ArrayList<>();
-							for ( int i=baseDir.dirCount()-1; i>=0; i-- ) {
-								File dir = new File(baseDir.getDir(i).getPathName());
-								if (!engine.getPathCorrector().isRecursivePath(dir))
-									dirsToScan.add(baseDir.getDir(i));
-							}
-							final ScanCompleteListener dirIterator = new ScanCompleteListener() {
-								@Override
-								public void onComplete(ScanControl scanControl) {
-									// process next directory from list
-									if (dirsToScan.size() == 0 || scanControl.isStopped()) {
-										readyListener.onComplete(scanControl);
-										return;
-									}
-									final FileInfo dir = dirsToScan.get(0);
-									dirsToScan.remove(0);
-									final ScanCompleteListener listener = this;
-									BackgroundThread.instance().postGUI(() -> scanDirectory(db, dir, null, listener, true, scanControl));
-								}
-							};
-							dirIterator.onComplete(scanControl);
-						} else {
-							readyListener.onComplete(scanControl);
-						}
+						if (null != folderState)
+							db.saveFolderState(baseDir.getPathName(), folderState);
 					}
 				} catch (Exception e) {
-					// treat as finished
-					readyListener.onComplete(scanControl);
+					log.e("Exception while scanning", e);
 				}
+				readyListener.onComplete(scanControl);
 			});
 		});
 	}
-	
+
+	/**
+	 * Scan files of directories from queue one by one, adding subdirectories of each scanned directory to queue.
+	 * Call in GUI thread only!
+	 * @param topDir is top directory of recursive scan: it is always checked, because it's shown to user
+	 * @param queue is queue of directories to scan
+	 * @param folderStates is saved states of subfolders, null to check all
+	 */
+	private void scanQueuedDirectories(final CRDBService.LocalBinder db, final FileInfo topDir, final ArrayDeque<FileInfo> queue, final HashMap<String, CRDBService.FolderState> folderStates, final ScanCompleteListener readyListener, final ScanControl scanControl) {
+		BackgroundThread.ensureGUI();
+		try {
+			while (!scanControl.isStopped() && !queue.isEmpty()) {
+				final FileInfo dir = queue.poll();
+				for (int i = 0; i < dir.dirCount(); i++) {
+					FileInfo subdir = dir.getDir(i);
+					if (!engine.getPathCorrector().isRecursivePath(new File(subdir.getPathName())))
+						queue.add(subdir);
+				}
+				final CRDBService.FolderState folderState = getFolderState(dir);
+				if (dir != topDir && null != folderState && null != folderStates && folderState.equals(folderStates.get(dir.getPathName()))) {
+					log.v("scanDirectory: skipping files of unchanged directory " + dir.getPathName());
+					continue;
+				}
+				if (dir.fileCount() == 0) {
+					// nothing to check, continue without waiting for DB
+					dir.isScanned = true;
+					if (null != folderState)
+						db.saveFolderState(dir.getPathName(), folderState);
+					continue;
+				}
+				Engine.ProgressControl progress = engine.createProgress(0, scanControl);
+				scanDirectoryFiles(db, dir, scanControl, progress, true, () -> {
+					// GUI thread
+					if (!scanControl.isStopped()) {
+						dir.isScanned = true;
+						if (null != folderState)
+							db.saveFolderState(dir.getPathName(), folderState);
+					}
+					postDirectoryContentChanged(dir);
+					scanQueuedDirectories(db, topDir, queue, folderStates, readyListener, scanControl);
+				});
+				return;
+			}
+		} catch (Exception e) {
+			// treat as finished
+			log.e("Exception while scanning", e);
+		}
+		flushDirectoryContentChanges();
+		readyListener.onComplete(scanControl);
+	}
+
 	private boolean addRoot( String pathname, int resourceId, boolean listIt) {
 		return addRoot( pathname, mActivity.getResources().getString(resourceId), listIt);
 	}
@@ -741,68 +786,185 @@ public class Scanner extends FileInfoChangeSource {
 		return item;
 	}
 
+	// interval to deliver coalesced directory content changes to GUI
+	private static final long DIR_CHANGES_INTERVAL = 100;
+
+	private final LinkedHashMap<String, FileInfo> mPendingDirChanges = new LinkedHashMap<>();
+	private boolean mDirChangesScheduled = false;
+
+	/**
+	 * Notify about changed directory content, coalescing notifications: they are delivered
+	 * in GUI thread not more often than each DIR_CHANGES_INTERVAL, once per directory.
+	 * (thread-safe)
+	 */
+	private void postDirectoryContentChanged(FileInfo dir) {
+		synchronized (mPendingDirChanges) {
+			mPendingDirChanges.put(dir.getPathName(), dir);
+			if (mDirChangesScheduled)
+				return;
+			mDirChangesScheduled = true;
+		}
+		BackgroundThread.instance().postGUI(this::flushDirectoryContentChanges, DIR_CHANGES_INTERVAL);
+	}
+
 	/**
-	 * List directories in subtree (in background thread), remove empty branches (w/o books).
+	 * Deliver pending directory content changes. Call in GUI thread only!
+	 */
+	private void flushDirectoryContentChanges() {
+		ArrayList<FileInfo> changes;
+		synchronized (mPendingDirChanges) {
+			changes = new ArrayList<>(mPendingDirChanges.values());
+			mPendingDirChanges.clear();
+			mDirChangesScheduled = false;
+		}
+		for (FileInfo dir : changes)
+			onDirectoryContentChanged(dir);
+	}
+
+	/**
+	 * Make a copy of directory to update in GUI.
+	 */
+	private static FileInfo copyForUpdate(FileInfo dir) {
+		FileInfo cp = new FileInfo(dir);
+		cp.assign(dir);
+		cp.parent = dir.parent;
+		cp.setItems(dir);
+		return cp;
+	}
+
+	/**
+	 * List directories in subtree (in background threads), remove empty branches (w/o books).
+	 * Directories are listed breadth-first in SCAN lane of TaskScheduler.
 	 * @param root is directory to start with
 	 * @param maxDepth is maximum depth
 	 * @param scanControl is to stop long scanning
+	 * @param folderStates is saved states of subfolders to restore unchanged ones w/o listing, can be null
 	 * @param readyCallback ready callback, can be null
 	 */
-	private void listSubtreeBg(FileInfo root, int maxDepth, ScanControl scanControl, Runnable readyCallback) {
-		BackgroundThread.instance().postBackground(() -> {
-			// make a copy to scan in background
-			FileInfo dir = new FileInfo(root);
-			dir.parent = root.parent;
-			dir.setItems(root);
-			listSubtreeBg_impl(dir, maxDepth, scanControl);
+	private void listSubtreeBg(FileInfo root, int maxDepth, ScanControl scanControl, HashMap<String, CRDBService.FolderState> folderStates, Runnable readyCallback) {
+		// make a copy to scan in background
+		final FileInfo dir = new FileInfo(root);
+		dir.parent = root.parent;
+		dir.setItems(root);
+		final long startTime = Utils.timeStamp();
+		// listed directories with listing result
+		final Map<FileInfo, Boolean> listed = Collections.synchronizedMap(new IdentityHashMap<>());
+		final AtomicInteger pending = new AtomicInteger(1);
+		final Runnable onFinished = () -> {
+			pruneSubtree(dir, listed);
+			log.d("listSubtreeBg(" + root.getPathName() + "): " + listed.size() + " directories in " + Utils.timeInterval(startTime) + " ms");
 			BackgroundThread.instance().postGUI(() -> {
 				// transfer scanned items from background copy to update in GUI
 				root.setItems(dir);
+				flushDirectoryContentChanges();
 				if (null != readyCallback) {
 					readyCallback.run();
 				}
 			});
-		});
+		};
+		TaskScheduler.instance().post(TaskScheduler.Lane.SCAN, () -> listSubtreeDir(dir, maxDepth, scanControl, folderStates, listed, pending, onFinished));
 	}
 
-	private boolean listSubtreeBg_impl(FileInfo dir, int maxDepth, ScanControl scanControl) {
-		BackgroundThread.ensureBackground();
-		boolean fullDepthScan = true;
-		if (maxDepth <= 0 || scanControl.isStopped())
-			return false;
-		// full rescan to scan zip-files
-		boolean res = listDirectory(dir, true, true, !dir.isSpecialDir() && !dir.isArchive);
-		if (res) {
-			for (int i = dir.dirCount() - 1; i >= -0; i--) {
-				res = listSubtreeBg_impl(dir.getDir(i), maxDepth - 1, scanControl);
-				if (!res) {
-					fullDepthScan = false;
-				}
+	/**
+	 * List single directory and queue listing of its subdirectories.
+	 */
+	private void listSubtreeDir(FileInfo dir, int maxDepth, ScanControl scanControl, HashMap<String, CRDBService.FolderState> folderStates, Map<FileInfo, Boolean> listed, AtomicInteger pending, Runnable onFinished) {
+		try {
+			if (maxDepth <= 0 || scanControl.isStopped())
+				return;
+			String path = dir.getPathName();
+			boolean canSkip = !dir.isSpecialDir() && !dir.isArchive;
+			long mtime = canSkip ? new File(path).lastModified() : 0;
+			Long listedTime = mListedDirTimes.get(path);
+			// directory entries are not changed since last listing: reuse them
+			boolean unchanged = dir.isListed && mtime != 0 && listedTime != null && listedTime == mtime && !mPrunedDirs.contains(path);
+			// directory is not changed since it was indexed: restore its entries from DB
+			boolean restored = !unchanged && !dir.isListed && mtime != 0 && restoreIndexedDirectory(dir, mtime, folderStates);
+			// full rescan to scan zip-files
+			boolean res = unchanged || restored || listDirectory(dir, true, true, canSkip);
+			listed.put(dir, res);
+			if (!res) {
+				mListedDirTimes.remove(path);
+				return;
+			}
+			if (mtime != 0)
+				mListedDirTimes.put(path, mtime);
+			else
+				mListedDirTimes.remove(path);
+			if (!unchanged)
+				postDirectoryContentChanged(copyForUpdate(dir));
+			for (int i = dir.dirCount() - 1; i >= 0; i--) {
 				if (scanControl.isStopped())
 					break;
+				final FileInfo subdir = dir.getDir(i);
+				pending.incrementAndGet();
+				TaskScheduler.instance().post(TaskScheduler.Lane.SCAN, () -> listSubtreeDir(subdir, maxDepth - 1, scanControl, folderStates, listed, pending, onFinished));
 			}
-			if (fullDepthScan && mHideEmptyDirs) {
-				if (dir.removeEmptyDirs()) {
-					BackgroundThread.instance().postGUI(() -> {
-						// make a copy to update in GUI
-						FileInfo cp = new FileInfo(dir);
-						cp.assign(dir);
-						cp.parent = dir.parent;
-						cp.setItems(dir);
-						onDirectoryContentChanged(cp);
-					});
-				}
-			}
+		} catch (Exception e) {
+			log.e("Exception while listing directory " + dir.getPathName(), e);
+		} finally {
+			if (pending.decrementAndGet() == 0)
+				onFinished.run();
 		}
-		BackgroundThread.instance().postGUI(() -> {
-			// make a copy to update in GUI
-			FileInfo cp = new FileInfo(dir);
-			cp.assign(dir);
-			cp.parent = dir.parent;
-			cp.setItems(dir);
-			onDirectoryContentChanged(cp);
-		});
-		return res;
+	}
+
+	/**
+	 * Fill not listed directory with children saved in DB, if directory is not changed since its last scan.
+	 * Books in archives are not restored: such directory is listed to scan archives.
+	 * @param dir is directory to restore
+	 * @param mtime is current modification time of directory
+	 * @param folderStates is saved states of folders with their children, can be null
+	 * @return true if directory children are restored
+	 */
+	private boolean restoreIndexedDirectory(FileInfo dir, long mtime, HashMap<String, CRDBService.FolderState> folderStates) {
+		CRDBService.FolderState state = null != folderStates ? folderStates.get(dir.getPathName()) : null;
+		if (null == state || state.mtime != mtime || state.files.size() + state.subdirs.size() != state.childCount)
+			return false;
+		for (FileInfo file : state.files) {
+			if (file.isArchive)
+				return false;
+		}
+		for (FileInfo file : state.files) {
+			FileInfo item = new FileInfo(file);
+			item.parent = dir;
+			dir.addFile(item);
+			mFileList.put(item.getPathName(), item);
+		}
+		for (String path : state.subdirs) {
+			FileInfo item = new FileInfo();
+			item.isDirectory = true;
+			item.pathname = path;
+			item.path = dir.getPathName();
+			item.filename = path.substring(path.lastIndexOf('/') + 1);
+			item.parent = dir;
+			dir.addDir(item);
+		}
+		dir.isListed = true;
+		return true;
+	}
+
+	/**
+	 * Remove empty directories from listed subtree, bottom-up.
+	 * @return true if directory is listed successfully with all its subdirectories
+	 */
+	private boolean pruneSubtree(FileInfo dir, Map<FileInfo, Boolean> listed) {
+		Boolean res = listed.get(dir);
+		if (res == null || !res)
+			return false;
+		boolean fullDepthScan = true;
+		for (int i = dir.dirCount() - 1; i >= 0; i--) {
+			if (!pruneSubtree(dir.getDir(i), listed))
+				fullDepthScan = false;
+		}
+		String path = dir.getPathName();
+		if (fullDepthScan && mHideEmptyDirs && dir.removeEmptyDirs()) {
+			// removed empty subdirectories won't be checked if directory is unchanged, so list it next time
+			mPrunedDirs.add(path);
+			postDirectoryContentChanged(copyForUpdate(dir));
+		} else {
+			mPrunedDirs.remove(path);
+		}
+		return fullDepthScan;
 	}
 
 	public FileInfo setSearchResults( FileInfo[] results ) {
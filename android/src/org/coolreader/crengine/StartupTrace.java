@@ -0,0 +1,73 @@
+package org.coolreader.crengine;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Startup milestones: time from activity creation to first page of last book.
+ * <p>
+ * Each milestone is logged with time since start() and emitted as systrace marker,
+ * whole time-to-first-page interval is emitted as async systrace section (API 29+).
+ * Thread-safe.
+ */
+public class StartupTrace {
+
+	public static final Logger log = L.create("st");
+
+	private static final String TIME_TO_FIRST_PAGE = "cr3:timeToFirstPage";
+
+	private static long startTime;
+	private static boolean active;
+
+	/**
+	 * Start measuring, call at the beginning of activity creation.
+	 */
+	public static synchronized void start() {
+		if (active)
+			return;
+		startTime = Utils.timeStamp();
+		active = true;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+			Trace.beginAsyncSection(TIME_TO_FIRST_PAGE, 0);
+		log.i("startup: started");
+	}
+
+	/**
+	 * Log startup milestone, ignored when startup is already finished.
+	 */
+	public static synchronized void mark(String milestone) {
+		if (!active)
+			return;
+		log.i("startup: " + milestone + " at " + Utils.timeInterval(startTime) + "ms");
+		beginSection("cr3:" + milestone);
+		endSection();
+	}
+
+	/**
+	 * Finish measuring: first page is shown, or startup is interrupted by user.
+	 */
+	public static synchronized void finish(String milestone) {
+		if (!active)
+			return;
+		mark(milestone);
+		active = false;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+			Trace.endAsyncSection(TIME_TO_FIRST_PAGE, 0);
+	}
+
+	/**
+	 * Begin systrace section in current thread.
+	 */
+	public static void beginSection(String name) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+			Trace.beginSection(name);
+	}
+
+	/**
+	 * End last systrace section started in current thread.
+	 */
+	public static void endSection() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+			Trace.endSection();
+	}
+}
@@ -32,6 +32,8 @@ import org.coolreader.tts.TTSControlBinder;
 import org.coolreader.tts.TTSControlService;
 import org.coolreader.tts.TTSControlServiceAccessor;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 
@@ -41,6 +43,9 @@ public class TTSToolbarDlg implements Settings {
 	public static final int MEDIA_COVER_WIDTH = 300;
 	public static final int MEDIA_COVER_HEIGHT = 400;
 
+	// max number of sentences queued to TTS after spoken one
+	private static final int SENTENCES_LOOKAHEAD = 6;
+
 	private final PopupWindow mWindow;
 	private final CoolReader mCoolReader;
 	private final ReaderView mReaderView;
@@ -68,6 +73,12 @@ public class TTSToolbarDlg implements Settings {
 	private String mCurrentVoiceName;
 	private boolean mGoogleTTSAbbreviationWorkaround;
 	private int mTTSSpeedPercent = 50;		// 50% (normal)
+	// sentences queued to TTS after spoken one: utterance id -> sentence, accessed in GUI thread only
+	private final LinkedHashMap<String, Selection> mQueuedSentences = new LinkedHashMap<>();
+	private Selection mSpokenSentence;
+	private boolean mQueueingSentences;
+	private int mQueueGeneration;
+	private int mUtteranceCounter;
 
 
 	static public TTSToolbarDlg showDialog( CoolReader coolReader, ReaderView readerView, TTSControlServiceAccessor ttsacc) {
@@ -157,6 +168,95 @@ public class TTSToolbarDlg implements Settings {
 		});
 	}
 
+	/**
+	 * Utterance started: select it by its positions when it's queued sentence, then queue following sentences.
+	 * Call in GUI thread.
+	 */
+	private void onUtteranceStarted(String utteranceId) {
+		if (mQueuedSentences.containsKey(utteranceId)) {
+			// sentences queued before started one are skipped by TTS service
+			Iterator<Map.Entry<String, Selection>> it = mQueuedSentences.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<String, Selection> entry = it.next();
+				it.remove();
+				if (entry.getKey().equals(utteranceId)) {
+					mSpokenSentence = entry.getValue();
+					break;
+				}
+			}
+			mReaderView.selectSentence(mSpokenSentence, new ReaderView.MoveSelectionCallback() {
+				@Override
+				public void onNewSelection(Selection selection) {
+					mCurrentSelection = selection;
+				}
+
+				@Override
+				public void onFail() {
+					log.e("cannot select spoken sentence " + mSpokenSentence.startPos);
+				}
+			});
+		} else {
+			mSpokenSentence = mCurrentSelection;
+		}
+		if (isSpeaking)
+			mTTSControl.bind(this::queueNextSentences);
+	}
+
+	/**
+	 * Say sentence and queue following sentences to TTS.
+	 * Call in GUI thread.
+	 */
+	private void saySentence(TTSControlBinder ttsbinder, Selection sentence) {
+		mSpokenSentence = sentence;
+		// lookahead is announced before say(), so TTS service doesn't request next sentence while it's got
+		queueNextSentences(ttsbinder);
+		ttsbinder.say(preprocessUtterance(sentence.text), null);
+	}
+
+	/**
+	 * Queue sentences following spoken one to TTS, to speak them w/o gap between sentences.
+	 * Call in GUI thread.
+	 */
+	private void queueNextSentences(TTSControlBinder ttsbinder) {
+		if (mQueueingSentences || mQueuedSentences.size() > SENTENCES_LOOKAHEAD / 2)
+			return;
+		Selection last = mSpokenSentence;
+		for (Selection sentence : mQueuedSentences.values())
+			last = sentence;
+		if (null == last || null == last.startPos)
+			return;
+		mQueueingSentences = true;
+		final int generation = mQueueGeneration;
+		ttsbinder.beginQueue();
+		mReaderView.getNextSentences(last, SENTENCES_LOOKAHEAD - mQueuedSentences.size(), sentences -> {
+			if (generation == mQueueGeneration) {
+				mQueueingSentences = false;
+				for (Selection sentence : sentences) {
+					String utteranceId = "cr3sentence" + (++mUtteranceCounter);
+					mQueuedSentences.put(utteranceId, sentence);
+					ttsbinder.queue(preprocessUtterance(sentence.text), utteranceId, result -> {
+						if (!result && generation == mQueueGeneration) {
+							// not supported or not playing: next sentence will be requested by TTS service
+							clearQueuedSentences();
+						}
+					});
+				}
+			}
+			// when nothing is queued and spoken sentence is done, TTS service requests next one now
+			ttsbinder.endQueue();
+		});
+	}
+
+	/**
+	 * Forget queued sentences and sentences being queued, TTS service drops them on stop.
+	 * Call in GUI thread.
+	 */
+	private void clearQueuedSentences() {
+		mQueuedSentences.clear();
+		mQueueingSentences = false;
+		mQueueGeneration++;
+	}
+
 	private String preprocessUtterance(String utterance) {
 		String newUtterance = utterance;
 		if (mGoogleTTSAbbreviationWorkaround) {
@@ -306,8 +406,9 @@ public class TTSToolbarDlg implements Settings {
 		mTTSControl.bind(ttsbinder -> {
 			ttsbinder.setStatusListener(new OnTTSStatusListener() {
 				@Override
-				public void onUtteranceStart() {
+				public void onUtteranceStart(String utteranceId) {
 					isSpeaking = true;
+					BackgroundThread.instance().postGUI(() -> onUtteranceStarted(utteranceId));
 				}
 
 				@Override
@@ -331,6 +432,7 @@ public class TTSToolbarDlg implements Settings {
 						case PAUSED:
 						case STOPPED:
 							isSpeaking = false;
+							BackgroundThread.instance().postGUI(() -> clearQueuedSentences());
 							BackgroundThread.instance().postGUI(() -> mPlayPauseButton.setImageResource(Utils.resolveResourceIdByAttr(mCoolReader, R.attr.ic_media_play_drawable, R.drawable.ic_media_play)));
 							if (mMotionWatchdog != null)
 								mMotionWatchdog.interrupt();
@@ -356,18 +458,21 @@ public class TTSToolbarDlg implements Settings {
 
 				@Override
 				public void onCurrentSentenceRequested(TTSControlBinder ttsbinder) {
-					if (null != mCurrentSelection) {
-						ttsbinder.say(preprocessUtterance(mCurrentSelection.text), null);
-					}
+					BackgroundThread.instance().postGUI(() -> {
+						clearQueuedSentences();
+						if (null != mCurrentSelection)
+							saySentence(ttsbinder, mCurrentSelection);
+					});
 				}
 
 				@Override
 				public void onNextSentenceRequested(TTSControlBinder ttsbinder) {
+					BackgroundThread.instance().postGUI(() -> clearQueuedSentences());
 					if (isSpeaking) {
 						moveSelection(ReaderCommand.DCMD_SELECT_NEXT_SENTENCE, new ReaderView.MoveSelectionCallback() {
 							@Override
 							public void onNewSelection(Selection selection) {
-								ttsbinder.say(preprocessUtterance(selection.text), null);
+								saySentence(ttsbinder, selection);
 							}
 
 							@Override
@@ -381,11 +486,12 @@ public class TTSToolbarDlg implements Settings {
 
 				@Override
 				public void onPreviousSentenceRequested(TTSControlBinder ttsbinder) {
+					BackgroundThread.instance().postGUI(() -> clearQueuedSentences());
 					if (isSpeaking) {
 						moveSelection(ReaderCommand.DCMD_SELECT_PREV_SENTENCE, new ReaderView.MoveSelectionCallback() {
 							@Override
 							public void onNewSelection(Selection selection) {
-								ttsbinder.say(preprocessUtterance(selection.text), null);
+								saySentence(ttsbinder, selection);
 							}
 
 							@Override
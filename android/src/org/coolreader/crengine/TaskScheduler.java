@@ -0,0 +1,183 @@
+package org.coolreader.crengine;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs background tasks in separate lanes, so slow work of one kind doesn't delay another.
+ * <p>
+ * RENDER lane is BackgroundThread: it owns native DocView and stays single-threaded.
+ * Other lanes have their own worker threads with lower priority:
+ * PREFETCH for cover decoding and other work user is waiting for soon,
+ * IO for network and file transfers, SCAN for bulk directory and book scanning.
+ * <p>
+ * Each task may have cancellation token: task cancelled before start is skipped.
+ * Thread-safe.
+ */
+public class TaskScheduler {
+
+	public static final Logger log = L.create("ts");
+
+	public enum Lane {
+		RENDER("render", 1, Thread.NORM_PRIORITY),
+		PREFETCH("prefetch", 2, Thread.NORM_PRIORITY - 1),
+		IO("io", 3, Thread.NORM_PRIORITY - 1),
+		SCAN("scan", BookScanPipeline.MAX_WORKERS, Thread.MIN_PRIORITY);
+
+		public final String name;
+		public final int threads;
+		public final int priority;
+
+		Lane(String name, int threads, int priority) {
+			this.name = name;
+			this.threads = threads;
+			this.priority = priority;
+		}
+	}
+
+	/**
+	 * Allows to cancel task which is not started yet; running task may check it to stop early.
+	 */
+	public static class CancellationToken {
+		private volatile boolean cancelled;
+
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	private static class LaneStats {
+		final AtomicInteger queued = new AtomicInteger();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxQueued = new AtomicInteger();
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicInteger cancelled = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+
+		@Override
+		public String toString() {
+			return "queued=" + queued.get() + ", running=" + running.get() + ", maxQueued=" + maxQueued.get() +
+					", completed=" + completed.get() + ", cancelled=" + cancelled.get() + ", failed=" + failed.get();
+		}
+	}
+
+	private static TaskScheduler instance;
+
+	public static synchronized TaskScheduler instance() {
+		if (instance == null)
+			instance = new TaskScheduler();
+		return instance;
+	}
+
+	private final ThreadPoolExecutor[] executors = new ThreadPoolExecutor[Lane.values().length];
+	private final LaneStats[] stats = new LaneStats[Lane.values().length];
+
+	private TaskScheduler() {
+		for (Lane lane : Lane.values()) {
+			stats[lane.ordinal()] = new LaneStats();
+			if (lane == Lane.RENDER)
+				continue; // BackgroundThread
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(lane.threads, lane.threads, 30, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), new LaneThreadFactory(lane));
+			executor.allowCoreThreadTimeOut(true);
+			executors[lane.ordinal()] = executor;
+		}
+	}
+
+	private static class LaneThreadFactory implements ThreadFactory {
+		private final Lane lane;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		LaneThreadFactory(Lane lane) {
+			this.lane = lane;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Lane-" + lane.name + "-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			t.setPriority(lane.priority);
+			return t;
+		}
+	}
+
+	/**
+	 * Post task to lane.
+	 * @param lane is lane to run task in
+	 * @param task is task to run
+	 * @return cancellation token of task
+	 */
+	public CancellationToken post(Lane lane, Runnable task) {
+		return post(lane, task, new CancellationToken());
+	}
+
+	/**
+	 * Post task to lane.
+	 * @param lane is lane to run task in
+	 * @param task is task to run
+	 * @param token is cancellation token, may be shared by several tasks
+	 * @return cancellation token of task
+	 */
+	public CancellationToken post(Lane lane, Runnable task, CancellationToken token) {
+		final LaneStats laneStats = stats[lane.ordinal()];
+		int depth = laneStats.queued.incrementAndGet();
+		int max;
+		while (depth > (max = laneStats.maxQueued.get()) && !laneStats.maxQueued.compareAndSet(max, depth)) {
+			// retry
+		}
+		Runnable wrapped = () -> {
+			laneStats.queued.decrementAndGet();
+			if (token.isCancelled()) {
+				laneStats.cancelled.incrementAndGet();
+				return;
+			}
+			laneStats.running.incrementAndGet();
+			try {
+				task.run();
+				laneStats.completed.incrementAndGet();
+			} catch (Throwable e) {
+				laneStats.failed.incrementAndGet();
+				log.e("Exception while running task in " + lane.name + " lane: " + task, e);
+			} finally {
+				laneStats.running.decrementAndGet();
+			}
+		};
+		if (lane == Lane.RENDER)
+			BackgroundThread.instance().postBackground(wrapped);
+		else
+			executors[lane.ordinal()].execute(wrapped);
+		return token;
+	}
+
+	/**
+	 * @return number of tasks waiting in lane queue
+	 */
+	public int getQueueDepth(Lane lane) {
+		return stats[lane.ordinal()].queued.get();
+	}
+
+	/**
+	 * @return number of tasks running in lane now
+	 */
+	public int getRunningCount(Lane lane) {
+		return stats[lane.ordinal()].running.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder("TaskScheduler[");
+		for (Lane lane : Lane.values()) {
+			if (lane.ordinal() > 0)
+				buf.append("; ");
+			buf.append(lane.name).append(": ").append(stats[lane.ordinal()]);
+		}
+		return buf.append("]").toString();
+	}
+}
@@ -329,6 +329,31 @@ public class Utils {
 		return false;
 	}
 	
+	/**
+	 * Convert text to the form used by full-text search index:
+	 * characters are case-converted the same way as in matchPattern(),
+	 * words are separated by single spaces, punctuation is dropped.
+	 * @return normalized text, empty string for null
+	 */
+	public static String normalizeForSearch(String text) {
+		if (text == null)
+			return "";
+		StringBuilder buf = new StringBuilder(text.length());
+		boolean space = false;
+		for (int i = 0; i < text.length(); i++) {
+			char ch = convertCharCaseForSearch(text.charAt(i));
+			if (Character.isLetterOrDigit(ch)) {
+				if (space && buf.length() > 0)
+					buf.append(' ');
+				buf.append(ch);
+				space = false;
+			} else {
+				space = true;
+			}
+		}
+		return buf.toString();
+	}
+
 	public static String[] splitByWhitespace(String str) {
 		ArrayList<String> list = new ArrayList<String>();
 		StringBuilder buf = new StringBuilder();
@@ -707,6 +732,54 @@ public class Utils {
 		}
 	}
 
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Converts bytes to lowercase hex string.
+	 */
+	public static String toHexString(byte[] data) {
+		char[] buf = new char[data.length * 2];
+		for (int i = 0; i < data.length; i++) {
+			buf[i * 2] = HEX_DIGITS[(data[i] >> 4) & 0x0F];
+			buf[i * 2 + 1] = HEX_DIGITS[data[i] & 0x0F];
+		}
+		return new String(buf);
+	}
+
+	/**
+	 * Converts string to sort key: keys compared by String.compareTo() give the same order as cmp() for source strings.
+	 * Use it when the same strings are compared many times, e.g. for sorting.
+	 * @param str is source string
+	 * @return sort key, null for null string
+	 */
+	public static String sortKey(String str) {
+		if (str == null)
+			return null;
+		str = str.toLowerCase();
+		int len = str.length();
+		StringBuilder buf = new StringBuilder(len + 4);
+		for (int i = 0; i < len; ) {
+			char ch = str.charAt(i);
+			if (ch < '0' || ch > '9') {
+				buf.append(ch);
+				i++;
+				continue;
+			}
+			// number: leading zeros are skipped, then count of digits goes before digits,
+			// so shorter number is less, and it's compared with non-digit chars as digit
+			int start = i;
+			while (i < len && str.charAt(i) >= '0' && str.charAt(i) <= '9')
+				i++;
+			while (start < i && str.charAt(start) == '0')
+				start++;
+			buf.append((char)('0' + Math.min(i - start, 9)));
+			buf.append(str, start, i);
+		}
+		// cmp() places string after strings it's prefix of
+		buf.append('\uFFFF');
+		return buf.toString();
+	}
+
 	public static String transcribeFileName( String fileName ) {
 		StringBuilder buf = new StringBuilder(fileName.length());
 		for ( char ch : fileName.toCharArray() ) {
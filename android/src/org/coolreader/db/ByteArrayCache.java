@@ -1,98 +1,152 @@
 package org.coolreader.db;
 
-import java.util.ArrayList;
-
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * LRU cache of byte arrays with exact byte budget.
+ * <p>
+ * Items evicted from main (strong) tier may be kept in optional second tier
+ * via soft references, so they can be reused until GC needs memory.
+ */
 public class ByteArrayCache {
 
 	public ByteArrayCache(int maxSize) {
+		this(maxSize, false);
+	}
+
+	/**
+	 * @param maxSize is max total size of data held by strong references, in bytes
+	 * @param useSoftTier is true to keep evicted items as soft references
+	 */
+	public ByteArrayCache(int maxSize, boolean useSoftTier) {
 		this.maxSize = maxSize;
+		if (useSoftTier)
+			softTier = new LinkedHashMap<>(64, 0.75f, true);
 	}
-	
+
 	public void put(String id, byte[] data) {
-		int index = find(id);
-		if (index >= 0) {
-			ByteArrayItem item = list.get(index);
-			if (item.data != null)
-				currentSize -= item.data.length;
-			item.data = data;
-			if (item.data != null)
-				currentSize += item.data.length;
-			moveOnTop(index);
-		} else {
-			ByteArrayItem item = new ByteArrayItem(id, data);
-			list.add(item);
-			if (item.data != null)
-				currentSize += item.data.length;
-		}
+		byte[] old = map.put(id, data);
+		if (old != null)
+			currentSize -= old.length;
+		if (data != null)
+			currentSize += data.length;
+		if (softTier != null)
+			softTier.remove(id);
 		checkSize();
 	}
-	
+
 	public byte[] get(String id) {
-		int index = find(id);
-		if (index < 0)
-			return null;
-		ByteArrayItem item = list.get(index);
-		moveOnTop(index);
-		return item.data;
+		byte[] data = map.get(id);
+		if (data != null) {
+			hits++;
+			return data;
+		}
+		if (softTier != null) {
+			SoftReference<byte[]> ref = softTier.remove(id);
+			data = ref != null ? ref.get() : null;
+			if (data != null) {
+				// promote back to main tier
+				softHits++;
+				put(id, data);
+				return data;
+			}
+		}
+		misses++;
+		return null;
 	}
-	
+
 	public void remove(String id) {
-		int index = find(id);
-		if (index < 0)
-			return;
-		list.remove(index);
+		byte[] old = map.remove(id);
+		if (old != null)
+			currentSize -= old.length;
+		if (softTier != null)
+			softTier.remove(id);
 	}
-	
+
 	public void clear() {
-		list.clear();
+		map.clear();
+		currentSize = 0;
+		if (softTier != null)
+			softTier.clear();
 	}
 
-	private static class ByteArrayItem {
-		public String id;
-		public byte[] data;
-		public ByteArrayItem(String id, byte[] data) {
-			this.id = id;
-			this.data = data;
-		}
+	public int getMaxSize() {
+		return maxSize;
 	}
-	
-	private int maxSize;
-	private int currentSize;
-	private ArrayList<ByteArrayItem> list = new ArrayList<ByteArrayItem>();
 
-	private int find(String id) {
-		for (int i=0; i<list.size(); i++)
-			if (list.get(i).id.equals(id))
-				return i;
-		return -1;
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		checkSize();
+	}
+
+	/**
+	 * @return number of bytes held by strong references
+	 */
+	public int getCurrentSize() {
+		return currentSize;
+	}
+
+	public int getItemCount() {
+		return map.size();
+	}
+
+	/**
+	 * @return ratio of successful lookups (both tiers), 0..1
+	 */
+	public double getHitRatio() {
+		int total = hits + softHits + misses;
+		return total > 0 ? (double)(hits + softHits) / total : 0;
+	}
+
+	public int getEvictions() {
+		return evictions;
 	}
 
-	private void moveOnTop(int index) {
-		if (index >= list.size() - 1)
-			return; // already on top
-		ByteArrayItem item = list.remove(index);
-		list.add(item);
+	@Override
+	public String toString() {
+		return "ByteArrayCache[items=" + map.size() + ", bytes=" + currentSize + "/" + maxSize +
+				(softTier != null ? ", softItems=" + softTier.size() : "") +
+				", hits=" + hits + ", softHits=" + softHits + ", misses=" + misses +
+				", hitRatio=" + String.format("%.2f", getHitRatio()) + ", evictions=" + evictions + "]";
 	}
 
+	// max number of soft references to keep: they are cheap, but not free
+	private static final int MAX_SOFT_ITEMS = 1000;
+
+	private int maxSize;
+	private int currentSize;
+	// iteration order is from least to most recently used
+	private final LinkedHashMap<String, byte[]> map = new LinkedHashMap<>(64, 0.75f, true);
+	private LinkedHashMap<String, SoftReference<byte[]>> softTier;
+	private int hits;
+	private int softHits;
+	private int misses;
+	private int evictions;
+
 	private void checkSize() {
-		int extraSize = currentSize - maxSize;
-		if (extraSize < maxSize / 10)
+		if (currentSize <= maxSize)
 			return;
-		ArrayList<Integer> itemsToRemove = new ArrayList<Integer>(list.size() / 2);
-		for (int i=0; i<list.size() - 1; i++) {
-			ByteArrayItem item = list.get(i);
-			if (item.data == null || item.data.length == 0)
-				continue;
-			extraSize -= item.data.length;
-			itemsToRemove.add(i);
-			if (extraSize < 0)
-				break;
+		Iterator<Map.Entry<String, byte[]>> it = map.entrySet().iterator();
+		while (currentSize > maxSize && it.hasNext()) {
+			Map.Entry<String, byte[]> eldest = it.next();
+			it.remove();
+			byte[] data = eldest.getValue();
+			if (data != null) {
+				currentSize -= data.length;
+				if (softTier != null && data.length > 0)
+					softTier.put(eldest.getKey(), new SoftReference<>(data));
+			}
+			evictions++;
 		}
-		for (int i = itemsToRemove.size() - 1; i >= 0; i--) {
-			ByteArrayItem item = list.get(itemsToRemove.get(i));
-			list.remove(itemsToRemove.get(i));
-			item.data = null; // faster GC
+		if (softTier != null && softTier.size() > MAX_SOFT_ITEMS) {
+			Iterator<String> sit = softTier.keySet().iterator();
+			while (softTier.size() > MAX_SOFT_ITEMS && sit.hasNext()) {
+				sit.next();
+				sit.remove();
+			}
 		}
 	}
 }
@@ -1,5 +1,6 @@
 package org.coolreader.db;
 
+import android.app.ActivityManager;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Environment;
@@ -10,6 +11,7 @@ import android.util.Log;
 import org.coolreader.crengine.BookInfo;
 import org.coolreader.crengine.Bookmark;
 import org.coolreader.crengine.DeviceInfo;
+import org.coolreader.crengine.DownloadManager;
 import org.coolreader.crengine.Engine;
 import org.coolreader.crengine.FileInfo;
 import org.coolreader.crengine.L;
@@ -21,6 +23,8 @@ import org.coolreader.crengine.Utils;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 public class CRDBService extends BaseService {
 	public static final Logger log = L.create("db");
@@ -37,6 +41,16 @@ public class CRDBService extends BaseService {
     public void onCreate() {
     	log.i("onCreate()");
     	super.onCreate();
+    	ActivityManager am = (ActivityManager)getSystemService(ACTIVITY_SERVICE);
+    	if (am != null) {
+    		final int memoryClass = am.getMemoryClass();
+    		execTask(new Task("setMemoryClass") {
+    			@Override
+    			public void work() {
+    				coverDB.setMemoryClass(memoryClass);
+    			}
+    		});
+    	}
     	execTask(new OpenDatabaseTask());
     }
 
@@ -292,6 +306,57 @@ public class CRDBService extends BaseService {
 		});
 	}
 	
+	public void saveThumbnail(final FileInfo fileInfo, final int width, final int height, final String pixelFormat, final byte[] pixels) {
+		execTask(new Task("saveThumbnail") {
+			@Override
+			public void work() {
+				coverDB.saveThumbnail(fileInfo.getPathName(), width, height, pixelFormat, fileInfo.size, pixels);
+			}
+		});
+		flush();
+	}
+
+	public interface CoverpageBatchLoadingCallback {
+		/**
+		 * @param thumbnails is map of book path to thumbnail pixels
+		 * @param coverpages is map of book path to coverpage data, for books w/o thumbnail
+		 */
+		void onCoverpagesLoaded(Map<String, byte[]> thumbnails, Map<String, byte[]> coverpages);
+	}
+
+	/**
+	 * Load thumbnails of the same size for several books in one DB task,
+	 * and coverpages of books with cached coverpages which have no thumbnail.
+	 */
+	public void loadCoverpageBatch(final ArrayList<FileInfo> files, final int width, final int height, final String pixelFormat, final CoverpageBatchLoadingCallback callback, final Handler handler)
+	{
+		execTask(new Task("loadCoverpageBatch") {
+			@Override
+			public void work() {
+				long start = Utils.timeStamp();
+				final Map<String, byte[]> thumbnails;
+				if (width > 0 && height > 0) {
+					HashMap<String, Long> fileSizes = new HashMap<>();
+					for (FileInfo file : files)
+						fileSizes.put(file.getPathName(), file.size);
+					thumbnails = coverDB.loadThumbnails(fileSizes, width, height, pixelFormat);
+				} else {
+					thumbnails = new HashMap<>();
+				}
+				ArrayList<String> cached = new ArrayList<>();
+				for (FileInfo file : files) {
+					String path = file.getPathName();
+					if (!thumbnails.containsKey(path) && file.format != null && file.format.needCoverPageCaching())
+						cached.add(path);
+				}
+				final Map<String, byte[]> coverpages = cached.size() > 0 ? coverDB.loadBookCoverpages(cached) : new HashMap<>();
+				log.v("loadCoverpageBatch: " + files.size() + " books, " + thumbnails.size() + " thumbnails, "
+						+ coverpages.size() + " coverpages in " + Utils.timeInterval(start) + " ms");
+				sendTask(handler, () -> callback.onCoverpagesLoaded(thumbnails, coverpages));
+			}
+		});
+	}
+
 	public void deleteCoverpage(final String bookId) {
 		execTask(new Task("deleteCoverpage") {
 			@Override
@@ -452,11 +517,11 @@ public class CRDBService extends BaseService {
 		});
 	}
 
-	public void findByFingerprints(final int maxCount, Collection<String> fingerprints, final BookSearchCallback callback, final Handler handler) {
+	public void findByFingerprints(final int maxCount, Collection<String> fingerprints, Collection<String> contentHashes, final BookSearchCallback callback, final Handler handler) {
 		execTask(new Task("findByFingerprint") {
 			@Override
 			public void work() {
-				final ArrayList<FileInfo> list = mainDB.findByFingerprints(maxCount, fingerprints);
+				final ArrayList<FileInfo> list = mainDB.findByFingerprints(maxCount, fingerprints, contentHashes);
 				sendTask(handler, () -> callback.onBooksFound(list));
 			}
 		});
@@ -489,6 +554,96 @@ public class CRDBService extends BaseService {
 		});
 	}
 
+	//=======================================================================================
+	// Folder state access code
+	//=======================================================================================
+	/**
+	 * State of folder at the moment of last scan, used to skip unchanged folders on rescan.
+	 */
+	public static class FolderState {
+		public final long mtime;
+		public final int childCount;
+		// indexed children, filled when states are loaded from DB: books of folder (only if folder is not modified since state is saved)
+		// and its subfolders having saved state
+		public final ArrayList<FileInfo> files = new ArrayList<>();
+		public final ArrayList<String> subdirs = new ArrayList<>();
+		public FolderState(long mtime, int childCount) {
+			this.mtime = mtime;
+			this.childCount = childCount;
+		}
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof FolderState))
+				return false;
+			FolderState other = (FolderState)o;
+			return mtime == other.mtime && childCount == other.childCount;
+		}
+		@Override
+		public int hashCode() {
+			return (int)(mtime ^ (mtime >>> 32)) * 31 + childCount;
+		}
+	}
+
+	public interface FolderStatesLoadingCallback {
+		void onFolderStatesLoaded(HashMap<String, FolderState> states);
+	}
+
+	public void loadFolderStates(final String path, final FolderStatesLoadingCallback callback, final Handler handler) {
+		execTask(new Task("loadFolderStates") {
+			@Override
+			public void work() {
+				final HashMap<String, FolderState> states = mainDB.loadFolderStates(path);
+				sendTask(handler, () -> callback.onFolderStatesLoaded(states));
+			}
+		});
+	}
+
+	public void saveFolderState(final String path, final FolderState state) {
+		execTask(new Task("saveFolderState") {
+			@Override
+			public void work() {
+				mainDB.saveFolderState(path, state);
+			}
+		});
+		flush();
+	}
+
+	public interface DownloadsLoadingCallback {
+		void onDownloadsLoaded(ArrayList<DownloadManager.Download> list);
+	}
+
+	public void loadDownloads(final DownloadsLoadingCallback callback, final Handler handler) {
+		execTask(new Task("loadDownloads") {
+			@Override
+			public void work() {
+				final ArrayList<DownloadManager.Download> list = mainDB.loadDownloads();
+				sendTask(handler, () -> callback.onDownloadsLoaded(list));
+			}
+		});
+	}
+
+	public void saveDownload(final DownloadManager.Download download) {
+		execTask(new Task("saveDownload") {
+			@Override
+			public void work() {
+				mainDB.saveDownload(download);
+			}
+		});
+		flush();
+	}
+
+	public void deleteDownload(final String url) {
+		execTask(new Task("deleteDownload") {
+			@Override
+			public void work() {
+				mainDB.deleteDownload(url);
+			}
+		});
+		flush();
+	}
+
 	public void loadFileInfos(final ArrayList<String> pathNames, final Scanner.ScanControl control, final Engine.ProgressControl progress, final FileInfoLoadingCallback callback, final Handler handler) {
 		execTask(new Task("loadFileInfos") {
 			@Override
@@ -610,7 +765,18 @@ public class CRDBService extends BaseService {
     	public void loadBookCoverpage(final FileInfo fileInfo, final CoverpageLoadingCallback callback) {
     		getService().loadBookCoverpage(new FileInfo(fileInfo), callback, new Handler());
     	}
-    	
+
+    	public void loadCoverpageBatch(final Collection<FileInfo> files, int width, int height, String pixelFormat, final CoverpageBatchLoadingCallback callback) {
+    		ArrayList<FileInfo> list = new ArrayList<>(files.size());
+    		for (FileInfo file : files)
+    			list.add(new FileInfo(file));
+    		getService().loadCoverpageBatch(list, width, height, pixelFormat, callback, new Handler());
+    	}
+
+    	public void saveThumbnail(final FileInfo fileInfo, int width, int height, String pixelFormat, byte[] pixels) {
+    		getService().saveThumbnail(new FileInfo(fileInfo), width, height, pixelFormat, pixels);
+    	}
+
     	public void loadOPDSCatalogs(final OPDSCatalogsLoadingCallback callback) {
     		getService().loadOPDSCatalogs(callback, new Handler());
     	}
@@ -680,9 +846,13 @@ public class CRDBService extends BaseService {
     	}
 
     	public void findByFingerprints(final int maxCount, Collection<String> fingerprints, final BookSearchCallback callback) {
-    		getService().findByFingerprints(maxCount, fingerprints, callback, new Handler());
+    		getService().findByFingerprints(maxCount, fingerprints, null, callback, new Handler());
     	}
 
+		public void findByFingerprints(final int maxCount, Collection<String> fingerprints, Collection<String> contentHashes, final BookSearchCallback callback) {
+			getService().findByFingerprints(maxCount, fingerprints, contentHashes, callback, new Handler());
+		}
+
 		public void findByPatterns(final int maxCount, final String authors, final String title, final String series, final String filename, final BookSearchCallback callback) {
 			getService().findByPatterns(maxCount, authors, title, series, filename, callback, new Handler());
 		}
@@ -691,6 +861,26 @@ public class CRDBService extends BaseService {
     		getService().loadFileInfos(pathNames, control, progress, callback, new Handler());
     	}
 
+		public void loadFolderStates(final String path, final FolderStatesLoadingCallback callback) {
+			getService().loadFolderStates(path, callback, new Handler());
+		}
+
+		public void saveFolderState(final String path, final FolderState state) {
+			getService().saveFolderState(path, state);
+		}
+
+		public void loadDownloads(final DownloadsLoadingCallback callback) {
+			getService().loadDownloads(callback, new Handler());
+		}
+
+		public void saveDownload(final DownloadManager.Download download) {
+			getService().saveDownload(new DownloadManager.Download(download));
+		}
+
+		public void deleteDownload(final String url) {
+			getService().deleteDownload(url);
+		}
+
     	public void deleteBook(final FileInfo fileInfo)	{
     		getService().deleteBook(new FileInfo(fileInfo));
     	}
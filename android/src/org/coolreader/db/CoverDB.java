@@ -3,6 +3,12 @@ package org.coolreader.db;
 import org.coolreader.crengine.L;
 import org.coolreader.crengine.Logger;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import android.database.Cursor;
 import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
@@ -11,13 +17,22 @@ public class CoverDB extends BaseDB {
 
 	public static final Logger log = L.create("cdb");
 	
-	public final int DB_VERSION = 9;
+	public final int DB_VERSION = 10;
 	private final static boolean CLEAR_ON_START = false;
 
 	private final static String[] COVERPAGE_SCHEMA = new String[] {
 		"CREATE TABLE IF NOT EXISTS coverpages (" +
 		"book_path VARCHAR NOT NULL PRIMARY KEY," +
 		"imagedata BLOB NULL" +
+		")",
+		"CREATE TABLE IF NOT EXISTS thumbnails (" +
+		"book_path VARCHAR NOT NULL," +
+		"width INTEGER NOT NULL," +
+		"height INTEGER NOT NULL," +
+		"pixel_format VARCHAR NOT NULL," +
+		"file_size INTEGER NOT NULL," +
+		"pixels BLOB NOT NULL," +
+		"PRIMARY KEY (book_path, width, height)" +
 		")"
 	};
 	
@@ -31,6 +46,7 @@ public class CoverDB extends BaseDB {
 			
 			if (currentVersion < 9)
 				execSQLIgnoreErrors("DROP TABLE coverpage");
+			// thumbnails table is created by COVERPAGE_SCHEMA
 			// ====================================================================
 			// set current version
 			if ( currentVersion<DB_VERSION )
@@ -42,7 +58,10 @@ public class CoverDB extends BaseDB {
 		if (CLEAR_ON_START) {
 			log.w("CLEAR_ON_START is ON: removing all coverpages from DB");
 			execSQLIgnoreErrors("DELETE FROM coverpages");
+			execSQLIgnoreErrors("DELETE FROM thumbnails");
 		}
+		Long thumbnailBytes = longQuery("SELECT sum(length(pixels)) FROM thumbnails");
+		thumbnailsSize = thumbnailBytes != null ? thumbnailBytes : 0;
 		
 		return true;
 	}
@@ -53,15 +72,38 @@ public class CoverDB extends BaseDB {
 	}
 
 	private void dumpStatistics() {
-		log.i("coverDB: " + longQuery("SELECT count(*) FROM coverpages") + " coverpages");
+		log.i("coverDB: " + longQuery("SELECT count(*) FROM coverpages") + " coverpages, "
+				+ longQuery("SELECT count(*) FROM thumbnails") + " thumbnails");
 	}
 
 	public void clearCaches() {
 		coverpageCache.clear();
 	}
-	
+
+	@Override
+	public void flush() {
+		super.flush();
+		log.d("flush: " + coverpageCache);
+	}
+
     private static final int COVERPAGE_CACHE_SIZE = 512 * 1024;
-    private ByteArrayCache coverpageCache = new ByteArrayCache(COVERPAGE_CACHE_SIZE);
+    private static final int COVERPAGE_CACHE_MAX_SIZE = 8 * 1024 * 1024;
+    private ByteArrayCache coverpageCache = new ByteArrayCache(COVERPAGE_CACHE_SIZE, true);
+
+	/**
+	 * Set coverpage cache budget depending on device memory class.
+	 * @param memoryClass is per-application memory limit, in megabytes
+	 */
+	public void setMemoryClass(int memoryClass) {
+		// use 1/32 of heap limit for coverpages
+		int size = memoryClass * 1024 * 1024 / 32;
+		if (size < COVERPAGE_CACHE_SIZE)
+			size = COVERPAGE_CACHE_SIZE;
+		if (size > COVERPAGE_CACHE_MAX_SIZE)
+			size = COVERPAGE_CACHE_MAX_SIZE;
+		log.i("coverpage cache size: " + size + " bytes (memory class " + memoryClass + "MB)");
+		coverpageCache.setMaxSize(size);
+	}
     
 	public void saveBookCoverpage(String bookId, byte[] data)
 	{
@@ -85,6 +127,8 @@ public class CoverDB extends BaseDB {
 				stmt.bindBlob(2, data);
 				stmt.execute();
 				Log.v("cr3", "db: saved " + data.length + " bytes of cover page for book " + bookId);
+				// thumbnails of previous coverpage are obsolete
+				deleteThumbnails(bookId);
 			}
 		} catch ( Exception e ) {
 			Log.e("cr3", "Exception while trying to save cover page to DB: " + e.getMessage() );
@@ -105,7 +149,10 @@ public class CoverDB extends BaseDB {
 		try {
 			rs = mDB.rawQuery("SELECT imagedata FROM coverpages WHERE book_path=" + quoteSqlString(bookId), null);
 			if ( rs.moveToFirst() ) {
-				return rs.getBlob(0);
+				data = rs.getBlob(0);
+				if (data != null)
+					coverpageCache.put(bookId, data);
+				return data;
 			}
 			return null;
 		} catch ( Exception e ) {
@@ -117,10 +164,172 @@ public class CoverDB extends BaseDB {
 		}
 	}
 	
+	// max number of books in one query of batch loading
+	private static final int BATCH_QUERY_SIZE = 64;
+
+	/**
+	 * Load coverpages of several books, using as few queries as possible.
+	 * @param bookIds is list of book paths
+	 * @return map of book path to coverpage data, for books having coverpage in DB
+	 */
+	public HashMap<String, byte[]> loadBookCoverpages(Collection<String> bookIds) {
+		HashMap<String, byte[]> res = new HashMap<>();
+		ArrayList<String> notCached = new ArrayList<>();
+		for (String bookId : bookIds) {
+			byte[] data = coverpageCache.get(bookId);
+			if (data != null)
+				res.put(bookId, data);
+			else
+				notCached.add(bookId);
+		}
+		if (!isOpened())
+			return res;
+		for (int start = 0; start < notCached.size(); start += BATCH_QUERY_SIZE) {
+			List<String> chunk = notCached.subList(start, Math.min(start + BATCH_QUERY_SIZE, notCached.size()));
+			Cursor rs = null;
+			try {
+				rs = mDB.rawQuery("SELECT book_path, imagedata FROM coverpages WHERE book_path IN (" + quoteSqlStrings(chunk) + ")", null);
+				while (rs.moveToNext()) {
+					String bookId = rs.getString(0);
+					byte[] data = rs.getBlob(1);
+					if (data != null) {
+						coverpageCache.put(bookId, data);
+						res.put(bookId, data);
+					}
+				}
+			} catch (Exception e) {
+				log.e("error while reading coverpages: " + e.getMessage());
+			} finally {
+				if (rs != null)
+					rs.close();
+			}
+		}
+		return res;
+	}
+
 	public void deleteCoverpage(String bookId) {
 		coverpageCache.remove(bookId);
 		if (!isOpened())
 			return;
 		execSQLIgnoreErrors("DELETE FROM coverpages WHERE book_path=" + quoteSqlString(bookId));
+		deleteThumbnails(bookId);
+	}
+
+	// max total size of thumbnail pixels in DB
+	private static final long THUMBNAILS_MAX_SIZE = 32 * 1024 * 1024;
+	private long thumbnailsSize;
+
+	/**
+	 * Save coverpage rendered at grid size, as raw bitmap pixels.
+	 * @param bookId is book path
+	 * @param width is thumbnail width
+	 * @param height is thumbnail height
+	 * @param pixelFormat is name of bitmap config of pixels
+	 * @param fileSize is size of book file, thumbnail is not used after file change
+	 * @param pixels is content of bitmap pixel buffer
+	 */
+	public void saveThumbnail(String bookId, int width, int height, String pixelFormat, long fileSize, byte[] pixels) {
+		if (!isOpened() || pixels == null)
+			return;
+		SQLiteStatement stmt = null;
+		try {
+			stmt = mDB.compileStatement("INSERT OR REPLACE INTO thumbnails (book_path, width, height, pixel_format, file_size, pixels) VALUES (?, ?, ?, ?, ?, ?)");
+			stmt.bindString(1, bookId);
+			stmt.bindLong(2, width);
+			stmt.bindLong(3, height);
+			stmt.bindString(4, pixelFormat);
+			stmt.bindLong(5, fileSize);
+			stmt.bindBlob(6, pixels);
+			stmt.execute();
+			thumbnailsSize += pixels.length;
+			log.v("saved " + width + "x" + height + " thumbnail for book " + bookId);
+		} catch (Exception e) {
+			log.e("Exception while trying to save thumbnail to DB: " + e.getMessage());
+		} finally {
+			if (stmt != null)
+				stmt.close();
+		}
+		if (thumbnailsSize > THUMBNAILS_MAX_SIZE)
+			trimThumbnails(THUMBNAILS_MAX_SIZE * 3 / 4);
+	}
+
+	/**
+	 * Load thumbnails of the same size for several books, using as few queries as possible.
+	 * @param fileSizes is map of book path to book file size
+	 * @return map of book path to thumbnail pixels, for books having actual thumbnail in DB
+	 */
+	public HashMap<String, byte[]> loadThumbnails(Map<String, Long> fileSizes, int width, int height, String pixelFormat) {
+		HashMap<String, byte[]> res = new HashMap<>();
+		if (!isOpened())
+			return res;
+		ArrayList<String> bookIds = new ArrayList<>(fileSizes.keySet());
+		for (int start = 0; start < bookIds.size(); start += BATCH_QUERY_SIZE) {
+			List<String> chunk = bookIds.subList(start, Math.min(start + BATCH_QUERY_SIZE, bookIds.size()));
+			Cursor rs = null;
+			try {
+				rs = mDB.rawQuery("SELECT book_path, file_size, pixels FROM thumbnails WHERE width=" + width + " AND height=" + height
+						+ " AND pixel_format=" + quoteSqlString(pixelFormat)
+						+ " AND book_path IN (" + quoteSqlStrings(chunk) + ")", null);
+				while (rs.moveToNext()) {
+					String bookId = rs.getString(0);
+					Long fileSize = fileSizes.get(bookId);
+					if (fileSize != null && fileSize == rs.getLong(1))
+						res.put(bookId, rs.getBlob(2));
+				}
+			} catch (Exception e) {
+				log.e("error while reading thumbnails: " + e.getMessage());
+			} finally {
+				if (rs != null)
+					rs.close();
+			}
+		}
+		return res;
+	}
+
+	public void deleteThumbnails(String bookId) {
+		if (!isOpened())
+			return;
+		execSQLIgnoreErrors("DELETE FROM thumbnails WHERE book_path=" + quoteSqlString(bookId));
+	}
+
+	private static String quoteSqlStrings(Collection<String> list) {
+		StringBuilder buf = new StringBuilder();
+		for (String s : list) {
+			if (buf.length() > 0)
+				buf.append(",");
+			buf.append(quoteSqlString(s));
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Remove oldest thumbnails to fit size limit.
+	 */
+	private void trimThumbnails(long maxSize) {
+		Cursor rs = null;
+		long lastRowId = -1;
+		// running size is estimate: it doesn't track replaced rows
+		Long total = longQuery("SELECT sum(length(pixels)) FROM thumbnails");
+		thumbnailsSize = total != null ? total : 0;
+		long size = thumbnailsSize;
+		try {
+			// replaced rows get new rowid, so rowid order is order of rendering
+			rs = mDB.rawQuery("SELECT rowid, length(pixels) FROM thumbnails ORDER BY rowid", null);
+			while (size > maxSize && rs.moveToNext()) {
+				lastRowId = rs.getLong(0);
+				size -= rs.getLong(1);
+			}
+		} catch (Exception e) {
+			log.e("error while trimming thumbnails: " + e.getMessage());
+			return;
+		} finally {
+			if (rs != null)
+				rs.close();
+		}
+		if (lastRowId >= 0) {
+			execSQLIgnoreErrors("DELETE FROM thumbnails WHERE rowid<=" + lastRowId);
+			log.i("thumbnails trimmed: " + thumbnailsSize + " -> " + size + " bytes");
+			thumbnailsSize = size;
+		}
 	}
 }
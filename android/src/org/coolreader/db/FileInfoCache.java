@@ -1,106 +1,132 @@
 package org.coolreader.db;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.coolreader.crengine.FileInfo;
 
+/**
+ * LRU cache of book records, indexed both by path name and by book id.
+ * All operations are O(1).
+ */
 public class FileInfoCache {
 
 	private final int maxSize;
-	private int currentSize;
 
-	private ArrayList<FileInfo> list = new ArrayList<FileInfo>(); 
-	
+	// path name -> item, iteration order is from least to most recently used
+	private final LinkedHashMap<String, FileInfo> byPath = new LinkedHashMap<>(64, 0.75f, true);
+	// book id -> path name key of item in byPath
+	private final HashMap<Long, String> byId = new HashMap<>();
+
+	private int hits;
+	private int misses;
+	private int evictions;
+
 	public FileInfoCache(int maxSize) {
 		this.maxSize = maxSize;
 	}
-	
+
 	public FileInfo remove(FileInfo entry) {
-		int index = findByPath(entry.getPathName());
-		if (index == -1)
-			index = findById(entry.id);
-		if (index == -1)
+		String key = findKey(entry.getPathName(), entry.id);
+		if (key == null)
 			return null;
-		FileInfo removed = list.get(index);
-		list.remove(index);
-		currentSize--;
-		return removed;
+		return removeByKey(key);
 	}
-	
+
 	public void put(FileInfo entry) {
-		int index = findByPath(entry.getPathName());
-		if (index == -1)
-			index = findById(entry.id);
-		if (index == -1) {
-			list.add(entry);
-			currentSize++;
-			checkSize();
+		String path = entry.getPathName();
+		if (path == null)
 			return;
-		}
-		list.set(index, entry);
-		moveOnTop(index);
+		String key = findKey(path, entry.id);
+		if (key != null && !key.equals(path))
+			removeByKey(key); // path is changed
+		FileInfo old = byPath.put(path, entry);
+		if (old != null && old.id != null && !old.id.equals(entry.id))
+			byId.remove(old.id);
+		if (entry.id != null)
+			byId.put(entry.id, path);
+		checkSize();
 	}
-	
+
 	public FileInfo get(String path) {
-		int index = findByPath(path);
-		if (index == -1)
+		if (path == null)
 			return null;
-		FileInfo item = list.get(index);
-		moveOnTop(index);
+		FileInfo item = byPath.get(path);
+		if (item != null)
+			hits++;
+		else
+			misses++;
 		return item;
 	}
-	
+
 	public FileInfo get(Long id) {
 		if (id == null)
 			return null;
-		int index = findById(id);
-		if (index == -1)
-			return null;
-		FileInfo item = list.get(index);
-		moveOnTop(index);
+		String key = byId.get(id);
+		FileInfo item = key != null ? byPath.get(key) : null;
+		if (item != null)
+			hits++;
+		else
+			misses++;
 		return item;
 	}
-	
+
 	public void clear() {
-		list.clear();
-		currentSize = 0;
+		byPath.clear();
+		byId.clear();
 	}
-	
-	private void moveOnTop(int index) {
-		if (index >= list.size() - 1)
-			return;
-		FileInfo item = list.get(index);
-		list.remove(index);
-		list.add(item);
+
+	public int size() {
+		return byPath.size();
 	}
-	
-	private int findByPath(String path) {
-		if (path == null)
-			return -1;
-		for (int i=0; i<list.size(); i++) {
-			if (path.equals(list.get(i).getPathName()))
-				return i;
-		}
-		return -1;
+
+	public int getHits() {
+		return hits;
 	}
 
-	private int findById(Long id) {
-		if (id == null)
-			return -1;
-		for (int i=0; i<list.size(); i++) {
-			if (id.equals(list.get(i).id))
-				return i;
-		}
-		return -1;
+	public int getMisses() {
+		return misses;
+	}
+
+	public int getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public String toString() {
+		return "FileInfoCache[size=" + byPath.size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+
+	private String findKey(String path, Long id) {
+		if (path != null && byPath.containsKey(path))
+			return path;
+		if (id != null)
+			return byId.get(id);
+		return null;
+	}
+
+	private FileInfo removeByKey(String key) {
+		FileInfo removed = byPath.remove(key);
+		if (removed != null && removed.id != null && key.equals(byId.get(removed.id)))
+			byId.remove(removed.id);
+		return removed;
 	}
 
 	private void checkSize() {
-		int itemsToRemove = currentSize - maxSize;
-		if (itemsToRemove < maxSize / 10)
+		int itemsToRemove = byPath.size() - maxSize;
+		if (itemsToRemove <= 0)
 			return;
-		for (int i=itemsToRemove; i>=0; i--) {
-			list.remove(i);
+		Iterator<Map.Entry<String, FileInfo>> it = byPath.entrySet().iterator();
+		while (itemsToRemove > 0 && it.hasNext()) {
+			Map.Entry<String, FileInfo> eldest = it.next();
+			it.remove();
+			FileInfo removed = eldest.getValue();
+			if (removed.id != null && eldest.getKey().equals(byId.get(removed.id)))
+				byId.remove(removed.id);
+			itemsToRemove--;
+			evictions++;
 		}
-		currentSize -= itemsToRemove;
 	}
 }
@@ -10,6 +10,7 @@ import android.util.Log;
 import org.coolreader.crengine.BookInfo;
 import org.coolreader.crengine.Bookmark;
 import org.coolreader.crengine.DocumentFormat;
+import org.coolreader.crengine.DownloadManager;
 import org.coolreader.crengine.Engine;
 import org.coolreader.crengine.FileInfo;
 import org.coolreader.crengine.L;
@@ -21,10 +22,14 @@ import org.coolreader.crengine.Services;
 import org.coolreader.crengine.Utils;
 import org.coolreader.genrescollection.GenresCollection;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -33,7 +38,7 @@ public class MainDB extends BaseDB {
 	public static final Logger vlog = L.create("mdb", Log.VERBOSE);
 	
 	private boolean pathCorrectionRequired = false;
-	public final int DB_VERSION = 34;
+	public final int DB_VERSION = 38;
 	@Override
 	protected boolean upgradeSchema() {
 		// When the database is just created, its version is 0.
@@ -60,7 +65,9 @@ public class MainDB extends BaseDB {
 			        "series_name_index ON series (name) ");
 			execSQL("CREATE TABLE IF NOT EXISTS folder (" +
 					"id INTEGER PRIMARY KEY AUTOINCREMENT," +
-					"name VARCHAR NOT NULL" +
+					"name VARCHAR NOT NULL," +
+					"mtime INTEGER DEFAULT 0," +
+					"child_count INTEGER DEFAULT 0" +
 					")");
 			execSQL("CREATE INDEX IF NOT EXISTS " +
 					"folder_name_index ON folder (name) ");
@@ -294,6 +301,43 @@ public class MainDB extends BaseDB {
 				if (pragma_foreign_keys != 0L)
 					execSQLIgnoreErrors("PRAGMA foreign_keys=ON");
 			}
+			if (currentVersion < 35) {
+				// folder state for incremental rescan
+				execSQLIgnoreErrors("ALTER TABLE folder ADD COLUMN mtime INTEGER DEFAULT 0");
+				execSQLIgnoreErrors("ALTER TABLE folder ADD COLUMN child_count INTEGER DEFAULT 0");
+			}
+			if (currentVersion < 36) {
+				// full-text index for library search
+				if (createFullTextIndex())
+					rebuildFullTextIndex();
+			}
+			if (currentVersion < 37) {
+				// persistent queue of DownloadManager
+				execSQLIgnoreErrors("CREATE TABLE IF NOT EXISTS download_queue (" +
+						"url VARCHAR NOT NULL PRIMARY KEY, " +
+						"referer VARCHAR DEFAULT NULL, " +
+						"username VARCHAR DEFAULT NULL, " +
+						"mime_type VARCHAR DEFAULT NULL, " +
+						"default_file_name VARCHAR DEFAULT NULL, " +
+						"out_dir VARCHAR NOT NULL, " +
+						"file_path VARCHAR DEFAULT NULL, " +
+						"etag VARCHAR DEFAULT NULL, " +
+						"total_size INTEGER DEFAULT -1, " +
+						"state INTEGER DEFAULT 0, " +
+						"create_time INTEGER DEFAULT 0" +
+						")");
+			}
+			if (currentVersion < 38) {
+				// indexed fingerprints for sync and dedup lookups
+				execSQLIgnoreErrors("CREATE INDEX IF NOT EXISTS " +
+						"book_crc32_index ON book (crc32) ");
+				execSQLIgnoreErrors("CREATE TABLE IF NOT EXISTS book_fingerprint (" +
+						"book_fk INTEGER NOT NULL PRIMARY KEY REFERENCES book (id), " +
+						"sha512 VARCHAR NOT NULL" +
+						")");
+				execSQLIgnoreErrors("CREATE INDEX IF NOT EXISTS " +
+						"book_fingerprint_sha512_index ON book_fingerprint (sha512) ");
+			}
 
 			//==============================================================
 			// add more updates above this line
@@ -390,6 +434,7 @@ public class MainDB extends BaseDB {
 
 	public void flush() {
         super.flush();
+        log.d("flush: " + fileInfoCache);
         if (seriesStmt != null) {
             seriesStmt.close();
             seriesStmt = null;
@@ -414,6 +459,14 @@ public class MainDB extends BaseDB {
             authorSelectStmt.close();
             authorSelectStmt = null;
         }
+        if (ftsDeleteStmt != null) {
+            ftsDeleteStmt.close();
+            ftsDeleteStmt = null;
+        }
+        if (ftsInsertStmt != null) {
+            ftsInsertStmt.close();
+            ftsInsertStmt = null;
+        }
 	}
 	
 	//=======================================================================================
@@ -653,6 +706,75 @@ public class MainDB extends BaseDB {
 		}
     }
 
+	//=======================================================================================
+	// Download queue access code
+	//=======================================================================================
+
+	public ArrayList<DownloadManager.Download> loadDownloads() {
+		ArrayList<DownloadManager.Download> list = new ArrayList<>();
+		if (!isOpened())
+			return list;
+		// password is not persisted: restored download gets it again when it's requested from catalog
+		String sql = "SELECT url, referer, username, mime_type, default_file_name, out_dir, file_path, etag, total_size, state, create_time FROM download_queue ORDER BY create_time";
+		try (Cursor rs = mDB.rawQuery(sql, null)) {
+			if (rs.moveToFirst()) {
+				do {
+					DownloadManager.Download d = new DownloadManager.Download();
+					int i = 0;
+					d.url = rs.getString(i++);
+					d.referer = rs.getString(i++);
+					d.username = rs.getString(i++);
+					d.mimeType = rs.getString(i++);
+					d.defaultFileName = rs.getString(i++);
+					d.outDir = rs.getString(i++);
+					d.filePath = rs.getString(i++);
+					d.etag = rs.getString(i++);
+					d.totalSize = rs.getLong(i++);
+					d.state = rs.getInt(i++);
+					d.createTime = rs.getLong(i++);
+					list.add(d);
+				} while (rs.moveToNext());
+			}
+		} catch (Exception e) {
+			log.e("exception while loading download queue", e);
+		}
+		return list;
+	}
+
+	public void saveDownload(DownloadManager.Download d) {
+		if (!isOpened())
+			return;
+		beginChanges();
+		try (SQLiteStatement stmt = mDB.compileStatement("INSERT OR REPLACE INTO download_queue " +
+				"(url, referer, username, mime_type, default_file_name, out_dir, file_path, etag, total_size, state, create_time) " +
+				"VALUES (?,?,?,?,?,?,?,?,?,?,?)")) {
+			// password is not saved
+			String[] values = { d.url, d.referer, d.username, d.mimeType, d.defaultFileName, d.outDir, d.filePath, d.etag };
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null)
+					stmt.bindString(i + 1, values[i]);
+				else
+					stmt.bindNull(i + 1);
+			}
+			stmt.bindLong(9, d.totalSize);
+			stmt.bindLong(10, d.state);
+			stmt.bindLong(11, d.createTime);
+			stmt.executeInsert();
+		} catch (SQLException e) {
+			log.e("error while saving download " + d.url, e);
+		}
+	}
+
+	public void deleteDownload(String url) {
+		if (!isOpened())
+			return;
+		beginChanges();
+		try (SQLiteStatement stmt = mDB.compileStatement("DELETE FROM download_queue WHERE url=?")) {
+			stmt.bindString(1, url);
+			stmt.execute();
+		}
+	}
+
 	//=======================================================================================
     // Bookmarks access code
     //=======================================================================================
@@ -760,11 +882,13 @@ public class MainDB extends BaseDB {
 	}
 	
 	private void sortItems(ArrayList<FileInfo> items, final ItemGroupExtractor extractor) {
-		Collections.sort(items, (lhs, rhs) -> {
-			String l = extractor.getComparisionField(lhs) != null ? extractor.getComparisionField(lhs).toUpperCase() : "";
-			String r = extractor.getComparisionField(rhs) != null ? extractor.getComparisionField(rhs).toUpperCase() : "";
-			return l.compareTo(r);
-		});
+		// convert once per item, not on each comparison
+		final IdentityHashMap<FileInfo, String> keys = new IdentityHashMap<>(items.size());
+		for (FileInfo item : items) {
+			String field = extractor.getComparisionField(item);
+			keys.put(item, field != null ? field.toUpperCase() : "");
+		}
+		Collections.sort(items, (lhs, rhs) -> keys.get(lhs).compareTo(keys.get(rhs)));
 	}
 	
 	private void addGroupedItems(FileInfo parent, ArrayList<FileInfo> items, int start, int end, String groupPrefixTag, int level, final ItemGroupExtractor extractor) {
@@ -981,6 +1105,158 @@ public class MainDB extends BaseDB {
 	}
 	
 	
+	//=======================================================================================
+	// Full-text search index
+	//=======================================================================================
+
+	private Boolean ftsAvailable;
+	private SQLiteStatement ftsDeleteStmt;
+	private SQLiteStatement ftsInsertStmt;
+
+	/**
+	 * Create full-text index table. Text is stored normalized by Utils.normalizeForSearch(),
+	 * so default tokenizer gives the same results with any SQLite version.
+	 * @return true if index table is created
+	 */
+	private boolean createFullTextIndex() {
+		final String columns = "title, authors, series, filename, description, keywords";
+		ftsAvailable = null;
+		try {
+			execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS book_fts USING fts4 (" + columns + ")");
+		} catch (SQLException e) {
+			// FTS4 is not supported by SQLite before 3.7.4
+			try {
+				execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS book_fts USING fts3 (" + columns + ")");
+			} catch (SQLException e2) {
+				log.e("cannot create full-text index, library search will scan all books", e2);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isFullTextIndexAvailable() {
+		if (ftsAvailable == null) {
+			Long count = longQuery("SELECT count(*) FROM sqlite_master WHERE type='table' AND name='book_fts'");
+			ftsAvailable = count != null && count > 0;
+		}
+		return ftsAvailable;
+	}
+
+	private void rebuildFullTextIndex() {
+		if (!isFullTextIndexAvailable())
+			return;
+		long startTime = Utils.timeStamp();
+		int count = 0;
+		mDB.beginTransaction();
+		try {
+			execSQL("DELETE FROM book_fts");
+			try (Cursor rs = mDB.rawQuery(READ_FILEINFO_SQL, null)) {
+				if (rs.moveToFirst()) {
+					do {
+						FileInfo fi = new FileInfo();
+						readFileInfoFromCursor(fi, rs);
+						updateFullTextIndex(fi, false);
+						count++;
+					} while (rs.moveToNext());
+				}
+			}
+			mDB.setTransactionSuccessful();
+		} catch (SQLException e) {
+			log.e("error while building full-text index", e);
+		} finally {
+			mDB.endTransaction();
+		}
+		log.i("full-text index is built for " + count + " books in " + Utils.timeInterval(startTime) + " ms");
+	}
+
+	/**
+	 * Write book record into full-text index.
+	 * @param replace is true to remove old index record of this book first
+	 */
+	private void updateFullTextIndex(FileInfo fileInfo, boolean replace) {
+		if (fileInfo.id == null || !isFullTextIndexAvailable())
+			return;
+		if (replace) {
+			if (ftsDeleteStmt == null)
+				ftsDeleteStmt = mDB.compileStatement("DELETE FROM book_fts WHERE docid=?");
+			ftsDeleteStmt.bindLong(1, fileInfo.id);
+			ftsDeleteStmt.execute();
+		}
+		if (ftsInsertStmt == null)
+			ftsInsertStmt = mDB.compileStatement("INSERT INTO book_fts (docid, title, authors, series, filename, description, keywords) VALUES (?,?,?,?,?,?,?)");
+		ftsInsertStmt.bindLong(1, fileInfo.id);
+		ftsInsertStmt.bindString(2, Utils.normalizeForSearch(fileInfo.title));
+		ftsInsertStmt.bindString(3, Utils.normalizeForSearch(fileInfo.authors));
+		ftsInsertStmt.bindString(4, Utils.normalizeForSearch(fileInfo.series));
+		ftsInsertStmt.bindString(5, Utils.normalizeForSearch(fileInfo.filename));
+		ftsInsertStmt.bindString(6, Utils.normalizeForSearch(fileInfo.description));
+		ftsInsertStmt.bindString(7, Utils.normalizeForSearch(fileInfo.genres));
+		ftsInsertStmt.executeInsert();
+	}
+
+	/**
+	 * Append prefix terms for each word of pattern to full-text query, restricted to column.
+	 */
+	private static void appendFullTextTerms(StringBuilder buf, String column, String pattern) {
+		if (pattern == null)
+			return;
+		String normalized = Utils.normalizeForSearch(pattern);
+		if (normalized.length() == 0)
+			return;
+		for (String word : normalized.split(" ")) {
+			if (buf.length() > 0)
+				buf.append(' ');
+			buf.append(column).append(':').append(word).append('*');
+		}
+	}
+
+	/**
+	 * @return 2 if whole text matches pattern, 1 if text starts with pattern, 0 for other matches or empty pattern
+	 */
+	private static int getSearchRank(String text, String pattern) {
+		if (pattern == null || pattern.length() == 0 || text == null)
+			return 0;
+		String t = Utils.normalizeForSearch(text);
+		String p = Utils.normalizeForSearch(pattern);
+		if (p.length() == 0)
+			return 0;
+		if (t.equals(p))
+			return 2;
+		return t.startsWith(p) ? 1 : 0;
+	}
+
+	/**
+	 * Append SQL expression of getSearchRank() of full-text index column multiplied by weight, for non-empty pattern.
+	 */
+	private static void appendSearchRankExpression(StringBuilder buf, ArrayList<String> args, String column, String pattern, int weight) {
+		String p = Utils.normalizeForSearch(pattern);
+		if (p.length() == 0)
+			return;
+		if (buf.length() > 0)
+			buf.append(" + ");
+		buf.append(weight).append(" * (CASE WHEN ").append(column).append(" = ? THEN 2 WHEN substr(")
+				.append(column).append(", 1, ").append(p.length()).append(") = ? THEN 1 ELSE 0 END)");
+		args.add(p);
+		args.add(p);
+	}
+
+	/**
+	 * @return best rank of matching author, -1 if no authors match any of patterns
+	 */
+	private static int getAuthorsSearchRank(String authors, String[] patterns) {
+		if (authors == null)
+			return -1;
+		int best = -1;
+		for (String author : authors.split("\\|")) {
+			for (String pattern : patterns) {
+				if (Utils.matchPattern(author, pattern))
+					best = Math.max(best, getSearchRank(author, pattern));
+			}
+		}
+		return best;
+	}
+
 	//=======================================================================================
     // Series access code
     //=======================================================================================
@@ -999,7 +1275,9 @@ public class MainDB extends BaseDB {
 			seriesSelectStmt = mDB.compileStatement("SELECT id FROM series WHERE name=?");
 		try {
 			seriesSelectStmt.bindString(1, seriesName);
-			return seriesSelectStmt.simpleQueryForLong();
+			id = seriesSelectStmt.simpleQueryForLong();
+			seriesCache.put(seriesName, id);
+			return id;
 		} catch ( Exception e ) {
 			// not found
 		}
@@ -1029,7 +1307,9 @@ public class MainDB extends BaseDB {
 			folderSelectStmt = mDB.compileStatement("SELECT id FROM folder WHERE name=?");
 		try {
 			folderSelectStmt.bindString(1, folderName);
-			return folderSelectStmt.simpleQueryForLong();
+			id = folderSelectStmt.simpleQueryForLong();
+			folderCache.put(folderName, id);
+			return id;
 		} catch ( Exception e ) {
 			// not found
 		}
@@ -1041,6 +1321,90 @@ public class MainDB extends BaseDB {
 		return id;
 	}
 	
+	/**
+	 * Load saved states of folder and all its subfolders, with their indexed children.
+	 * Books are loaded only for folders not modified since their state was saved,
+	 * i.e. for folders which can be restored w/o listing.
+	 * @param path is path name of top folder
+	 * @return map of folder path name to folder state
+	 */
+	public HashMap<String, CRDBService.FolderState> loadFolderStates(String path) {
+		HashMap<String, CRDBService.FolderState> states = new HashMap<>();
+		if (!isOpened() || path == null)
+			return states;
+		String prefix = path.endsWith("/") ? path : path + "/";
+		// all names starting with prefix are in range [prefix, prefixEnd), so folder_name_index is used
+		String prefixEnd = prefix.substring(0, prefix.length() - 1) + (char)('/' + 1);
+		String sql = "SELECT id, name, mtime, child_count FROM folder WHERE mtime>0 AND (name=? OR (name>=? AND name<?))";
+		ArrayList<Long> unchangedFolderIds = new ArrayList<>();
+		try (Cursor rs = mDB.rawQuery(sql, new String[] { path, prefix, prefixEnd })) {
+			if (rs.moveToFirst()) {
+				do {
+					String name = rs.getString(1);
+					long mtime = rs.getLong(2);
+					states.put(name, new CRDBService.FolderState(mtime, rs.getInt(3)));
+					if (new File(name).lastModified() == mtime)
+						unchangedFolderIds.add(rs.getLong(0));
+				} while (rs.moveToNext());
+			}
+		} catch (Exception e) {
+			log.e("error while loading folder states", e);
+			return states;
+		}
+		// children of folders: subfolders with saved state and books saved in DB
+		for (Map.Entry<String, CRDBService.FolderState> entry : states.entrySet()) {
+			String name = entry.getKey();
+			int p = name.lastIndexOf('/');
+			CRDBService.FolderState parentState = p > 0 ? states.get(name.substring(0, p)) : null;
+			if (null != parentState)
+				parentState.subdirs.add(name);
+		}
+		// modified folders are listed anyway, don't load their books
+		try {
+			for (int start = 0; start < unchangedFolderIds.size(); start += SAVE_FILEINFOS_CHUNK_SIZE) {
+				int end = Math.min(unchangedFolderIds.size(), start + SAVE_FILEINFOS_CHUNK_SIZE);
+				StringBuilder buf = new StringBuilder(READ_FILEINFO_SQL);
+				buf.append(" WHERE b.folder_fk IN (");
+				for (int i = start; i < end; i++) {
+					if (i > start)
+						buf.append(",");
+					buf.append(unchangedFolderIds.get(i));
+				}
+				buf.append(")");
+				try (Cursor rs = mDB.rawQuery(buf.toString(), null)) {
+					if (rs.moveToFirst()) {
+						do {
+							FileInfo fileInfo = new FileInfo();
+							readFileInfoFromCursor(fileInfo, rs);
+							CRDBService.FolderState state = states.get(fileInfo.path);
+							if (null != state)
+								state.files.add(fileInfo);
+						} while (rs.moveToNext());
+					}
+				}
+			}
+		} catch (Exception e) {
+			// incomplete children don't match saved child count, such folders will be listed
+			log.e("error while loading books of folders", e);
+		}
+		return states;
+	}
+
+	/**
+	 * Save folder state (modification time and number of children) after folder is scanned.
+	 * @param path is path name of folder
+	 * @param state is folder state
+	 */
+	public void saveFolderState(String path, CRDBService.FolderState state) {
+		if (!isOpened())
+			return;
+		Long id = getFolderId(path);
+		if (id == null)
+			return;
+		beginChanges();
+		execSQLIgnoreErrors("UPDATE folder SET mtime=" + state.mtime + ", child_count=" + state.childCount + " WHERE id=" + id);
+	}
+
 	//=======================================================================================
     // Author access code
     //=======================================================================================
@@ -1058,7 +1422,9 @@ public class MainDB extends BaseDB {
 			authorSelectStmt = mDB.compileStatement("SELECT id FROM author WHERE name=?");
 		try {
 			authorSelectStmt.bindString(1, authorName);
-			return authorSelectStmt.simpleQueryForLong();
+			id = authorSelectStmt.simpleQueryForLong();
+			authorCache.put(authorName, id);
+			return id;
 		} catch ( Exception e ) {
 			// not found
 		}
@@ -1334,21 +1700,31 @@ public class MainDB extends BaseDB {
 	}
 
 	private boolean save(FileInfo fileInfo)	{
+		return save(fileInfo, null);
+	}
+
+	private boolean save(FileInfo fileInfo, SaveBatch batch)	{
 		boolean authorsChanged = true;
 		boolean genresChanged = true;
 		try {
-			FileInfo oldValue = findFileInfoByPathname(fileInfo.getPathName(), false);
+			FileInfo oldValue;
+			if (batch != null)
+				oldValue = batch.existing.get(fileInfo.getPathName());
+			else
+				oldValue = findFileInfoByPathname(fileInfo.getPathName(), false);
 			if (oldValue == null && fileInfo.id != null)
 				oldValue = findFileInfoById(fileInfo.id);
 			if (oldValue != null && fileInfo.id == null && oldValue.id != null)
 				fileInfo.id = oldValue.id;
+			boolean fieldsChanged = true;
 			if (oldValue != null) {
 				// found, updating
-				if (!fileInfo.equals(oldValue)) {
+				fieldsChanged = !fileInfo.equals(oldValue);
+				if (fieldsChanged) {
 					vlog.d("updating file " + fileInfo.getPathName());
 					beginChanges();
 					QueryHelper h = new QueryHelper(fileInfo, oldValue);
-					h.update(fileInfo.id);
+					h.update(fileInfo.id, batch != null ? batch.stmtCache : null);
 				}
 				authorsChanged = !eq(fileInfo.authors, oldValue.authors);
 				genresChanged = !eq(fileInfo.genres, oldValue.genres);
@@ -1357,25 +1733,34 @@ public class MainDB extends BaseDB {
 				vlog.d("inserting new file " + fileInfo.getPathName());
 				beginChanges();
 				QueryHelper h = new QueryHelper(fileInfo, new FileInfo());
-				fileInfo.id = h.insert();
+				fileInfo.id = h.insert(batch != null ? batch.stmtCache : null);
 				authorsChanged = true;
 				genresChanged = true;
 			}
 			
+			if (fileInfo.id != null)
+				saveContentHash(fileInfo, oldValue);
 			fileInfoCache.put(fileInfo);
 			if (fileInfo.id != null) {
 				if ( authorsChanged ) {
 					vlog.d("updating authors for file " + fileInfo.getPathName());
 					beginChanges();
 					Long[] authorIds = getAuthorIds(fileInfo.authors);
-					saveBookAuthors(fileInfo.id, authorIds);
+					if (batch != null)
+						batch.saveBookAuthors(fileInfo.id, authorIds);
+					else
+						saveBookAuthors(fileInfo.id, authorIds);
 				}
 				if (genresChanged) {
 					vlog.d("updating genres for file " + fileInfo.getPathName());
 					beginChanges();
-					Integer[] genresIds = getGenresIds(fileInfo.genres);
-					saveBookGenres(fileInfo.id, genresIds);
+					if (batch != null)
+						batch.saveBookGenres(fileInfo.id, batch.getGenresIds(fileInfo.genres));
+					else
+						saveBookGenres(fileInfo.id, getGenresIds(fileInfo.genres));
 				}
+				if (fieldsChanged || authorsChanged || genresChanged)
+					updateFullTextIndex(fileInfo, true);
 				return true;
 			}
 			return false;
@@ -1385,6 +1770,99 @@ public class MainDB extends BaseDB {
 		}
 	}
 
+	/**
+	 * Save content hash of book into fingerprint table when it's changed.
+	 * Stored hash is kept for item w/o hash if file contents is not changed (the same crc32).
+	 */
+	private void saveContentHash(FileInfo fileInfo, FileInfo oldValue) {
+		String oldHash = oldValue != null ? oldValue.contentHash : null;
+		if (eq(fileInfo.contentHash, oldHash))
+			return;
+		beginChanges();
+		if (fileInfo.contentHash != null) {
+			try (SQLiteStatement stmt = mDB.compileStatement("INSERT OR REPLACE INTO book_fingerprint (book_fk, sha512) VALUES (?, ?)")) {
+				stmt.bindLong(1, fileInfo.id);
+				stmt.bindString(2, fileInfo.contentHash);
+				stmt.execute();
+			}
+		} else if (oldValue.crc32 == fileInfo.crc32) {
+			fileInfo.contentHash = oldHash;
+		} else {
+			execSQLIgnoreErrors("DELETE FROM book_fingerprint WHERE book_fk=" + fileInfo.id);
+		}
+	}
+
+	/**
+	 * Max number of items to save using single set of lookup queries.
+	 * Must be less than SQLite host parameters limit (999).
+	 */
+	private final static int SAVE_FILEINFOS_CHUNK_SIZE = 500;
+	/**
+	 * Commit transaction after this number of saved items instead of waiting for periodic flush.
+	 */
+	private final static int SAVE_FILEINFOS_COMMIT_THRESHOLD = 2000;
+	private int uncommittedFileInfos = 0;
+
+	/**
+	 * State shared by all items of single saveFileInfos() chunk:
+	 * prefetched existing records, reusable compiled statements, resolved genre ids.
+	 */
+	private class SaveBatch {
+		final HashMap<String, FileInfo> existing = new HashMap<>();
+		final HashMap<String, SQLiteStatement> stmtCache = new HashMap<>();
+		final HashMap<String, Integer[]> genresIdsCache = new HashMap<>();
+		SQLiteStatement bookAuthorStmt;
+		SQLiteStatement bookGenreStmt;
+
+		Integer[] getGenresIds(String keywords) {
+			if (keywords == null)
+				return null;
+			if (genresIdsCache.containsKey(keywords))
+				return genresIdsCache.get(keywords);
+			Integer[] ids = MainDB.this.getGenresIds(keywords);
+			genresIdsCache.put(keywords, ids);
+			return ids;
+		}
+
+		void saveBookAuthors(Long bookId, Long[] authors) {
+			if (authors == null || authors.length == 0)
+				return;
+			if (bookAuthorStmt == null)
+				bookAuthorStmt = mDB.compileStatement("INSERT OR IGNORE INTO book_author (book_fk,author_fk) VALUES (?,?)");
+			for (Long id : authors) {
+				bookAuthorStmt.bindLong(1, bookId);
+				bookAuthorStmt.bindLong(2, id);
+				bookAuthorStmt.execute();
+			}
+		}
+
+		void saveBookGenres(Long bookId, Integer[] genres) {
+			if (genres == null || genres.length == 0)
+				return;
+			if (bookGenreStmt == null)
+				bookGenreStmt = mDB.compileStatement("INSERT OR IGNORE INTO book_genre (book_fk,genre_fk) VALUES (?,?)");
+			for (Integer id : genres) {
+				bookGenreStmt.bindLong(1, bookId);
+				bookGenreStmt.bindLong(2, id);
+				bookGenreStmt.execute();
+			}
+		}
+
+		void close() {
+			for (SQLiteStatement stmt : stmtCache.values())
+				stmt.close();
+			stmtCache.clear();
+			if (bookAuthorStmt != null) {
+				bookAuthorStmt.close();
+				bookAuthorStmt = null;
+			}
+			if (bookGenreStmt != null) {
+				bookGenreStmt.close();
+				bookGenreStmt = null;
+			}
+		}
+	}
+
 	public void saveFileInfos(Collection<FileInfo> list)
 	{
 		Log.v("cr3db", "save BookInfo collection: " + list.size() + " items");
@@ -1392,11 +1870,138 @@ public class MainDB extends BaseDB {
 			Log.e("cr3db", "cannot save book info : DB is closed");
 			return;
 		}
+		long start = Utils.timeStamp();
+		int saved = 0;
+		ArrayList<FileInfo> chunk = new ArrayList<>(Math.min(list.size(), SAVE_FILEINFOS_CHUNK_SIZE));
 		for (FileInfo fileInfo : list) {
-			save(fileInfo);
+			chunk.add(fileInfo);
+			if (chunk.size() >= SAVE_FILEINFOS_CHUNK_SIZE) {
+				saved += saveFileInfosChunk(chunk);
+				chunk.clear();
+			}
 		}
+		if (chunk.size() > 0)
+			saved += saveFileInfosChunk(chunk);
+		log.i("saveFileInfos: " + saved + " of " + list.size() + " items saved in " + Utils.timeInterval(start) + " ms");
 	}
-	
+
+	private int saveFileInfosChunk(ArrayList<FileInfo> chunk) {
+		SaveBatch batch = new SaveBatch();
+		int saved = 0;
+		try {
+			prefetchFileInfos(chunk, batch.existing);
+			// resolve ids of all folders, series and authors of chunk at once
+			ArrayList<String> folders = new ArrayList<>();
+			ArrayList<String> series = new ArrayList<>();
+			ArrayList<String> authors = new ArrayList<>();
+			for (FileInfo fileInfo : chunk) {
+				folders.add(fileInfo.path);
+				series.add(fileInfo.series);
+				if (fileInfo.authors != null)
+					Collections.addAll(authors, fileInfo.authors.split("\\|"));
+			}
+			prefetchNameIds("folder", folders, folderCache);
+			prefetchNameIds("series", series, seriesCache);
+			prefetchNameIds("author", authors, authorCache);
+			beginChanges();
+			for (FileInfo fileInfo : chunk) {
+				if (save(fileInfo, batch))
+					saved++;
+			}
+		} catch (SQLiteException e) {
+			log.e("error while writing to DB", e);
+		} finally {
+			batch.close();
+		}
+		uncommittedFileInfos += chunk.size();
+		if (uncommittedFileInfos >= SAVE_FILEINFOS_COMMIT_THRESHOLD) {
+			uncommittedFileInfos = 0;
+			flush();
+		}
+		return saved;
+	}
+
+	/**
+	 * Find existing records for list of files using single query, put them into map and cache.
+	 */
+	private void prefetchFileInfos(Collection<FileInfo> files, Map<String, FileInfo> found) {
+		ArrayList<String> pathNames = new ArrayList<>(files.size());
+		for (FileInfo fileInfo : files)
+			pathNames.add(fileInfo.getPathName());
+		findFileInfosByPathnames(pathNames, found, null);
+	}
+
+	/**
+	 * Find records for list of path names using chunked "pathname IN (...)" queries.
+	 * Cached records are used if present, records read from DB are put into cache.
+	 * @param pathNames is list of path names to find
+	 * @param found is map to put found records to, by path name
+	 * @param control allows to stop long operation, can be null
+	 * @return number of executed queries
+	 */
+	private int findFileInfosByPathnames(Collection<String> pathNames, Map<String, FileInfo> found, Scanner.ScanControl control) {
+		ArrayList<String> uncached = new ArrayList<>(pathNames.size());
+		for (String pathName : pathNames) {
+			FileInfo cached = fileInfoCache.get(pathName);
+			if (cached != null)
+				found.put(pathName, cached);
+			else
+				uncached.add(pathName);
+		}
+		int queries = 0;
+		for (int start = 0; start < uncached.size(); start += SAVE_FILEINFOS_CHUNK_SIZE) {
+			if (control != null && control.isStopped())
+				break;
+			int end = Math.min(uncached.size(), start + SAVE_FILEINFOS_CHUNK_SIZE);
+			StringBuilder buf = new StringBuilder(READ_FILEINFO_SQL);
+			buf.append(" WHERE pathname IN (");
+			for (int i = start; i < end; i++)
+				buf.append(i > start ? ",?" : "?");
+			buf.append(")");
+			queries++;
+			try (Cursor rs = mDB.rawQuery(buf.toString(), uncached.subList(start, end).toArray(new String[0]))) {
+				if (rs.moveToFirst()) {
+					do {
+						FileInfo fileInfo = new FileInfo();
+						readFileInfoFromCursor(fileInfo, rs);
+						found.put(fileInfo.getPathName(), fileInfo);
+						fileInfoCache.put(fileInfo);
+					} while (rs.moveToNext());
+				}
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * Resolve ids of names which are not yet cached using single query.
+	 * Names not found in DB will be inserted later by getXXXId() calls.
+	 */
+	private void prefetchNameIds(String tableName, Collection<String> names, HashMap<String, Long> cache) {
+		HashSet<String> uncached = new HashSet<>();
+		for (String name : names) {
+			if (name != null && name.trim().length() > 0 && !cache.containsKey(name))
+				uncached.add(name);
+		}
+		String[] allNames = uncached.toArray(new String[0]);
+		for (int start = 0; start < allNames.length; start += SAVE_FILEINFOS_CHUNK_SIZE) {
+			int end = Math.min(allNames.length, start + SAVE_FILEINFOS_CHUNK_SIZE);
+			StringBuilder buf = new StringBuilder("SELECT id, name FROM ");
+			buf.append(tableName);
+			buf.append(" WHERE name IN (");
+			for (int i = start; i < end; i++)
+				buf.append(i > start ? ",?" : "?");
+			buf.append(")");
+			try (Cursor rs = mDB.rawQuery(buf.toString(), Arrays.copyOfRange(allNames, start, end))) {
+				if (rs.moveToFirst()) {
+					do {
+						cache.put(rs.getString(1), rs.getLong(0));
+					} while (rs.moveToNext());
+				}
+			}
+		}
+	}
+
 	/**
 	 * Load recent books list, with bookmarks
 	 * @param maxCount is max number of recent books to get
@@ -1492,11 +2097,21 @@ public class MainDB extends BaseDB {
 			return this;
 		}
 		Long insert()
+		{
+			return insert(null);
+		}
+		/**
+		 * Insert new record.
+		 * @param stmtCache is cache of compiled statements to reuse, or null to compile statement for single use
+		 * @return id of inserted record, null on error
+		 */
+		Long insert(Map<String, SQLiteStatement> stmtCache)
 		{
 			if ( fields.size()==0 )
 				return null;
 			beginChanges();
 			StringBuilder valueBuf = new StringBuilder();
+			SQLiteStatement stmt = null;
 			try {
 				String ignoreOption = ""; //"OR IGNORE ";
 				StringBuilder buf = new StringBuilder("INSERT " + ignoreOption + " INTO ");
@@ -1513,33 +2128,34 @@ public class MainDB extends BaseDB {
 				}
 				buf.append(")");
 				String sql = buf.toString();
-				Log.d("cr3db", "going to execute " + sql);
-				long id;
-				try (SQLiteStatement stmt = mDB.compileStatement(sql)) {
-					for (int i = 1; i <= values.size(); i++) {
-						Object v = values.get(i - 1);
-						valueBuf.append(v != null ? v.toString() : "null");
-						valueBuf.append(",");
-						if (v == null)
-							stmt.bindNull(i);
-						else if (v instanceof String)
-							stmt.bindString(i, (String) v);
-						else if (v instanceof Long)
-							stmt.bindLong(i, (Long) v);
-						else if (v instanceof Double)
-							stmt.bindDouble(i, (Double) v);
-					}
-					id = stmt.executeInsert();
-					Log.d("cr3db", "added book, id=" + id + ", query=" + sql);
+				stmt = compileCached(sql, stmtCache);
+				for (Object v : values) {
+					valueBuf.append(v != null ? v.toString() : "null");
+					valueBuf.append(",");
 				}
+				bindValues(stmt, values);
+				long id = stmt.executeInsert();
+				Log.d("cr3db", "added book, id=" + id + ", query=" + sql);
 				return id;
 			} catch ( Exception e ) {
 				Log.e("cr3db", "insert failed: " + e.getMessage());
 				Log.e("cr3db", "values: " + valueBuf.toString());
 				return null;
+			} finally {
+				if (stmt != null && stmtCache == null)
+					stmt.close();
 			}
 		}
 		boolean update( Long id )
+		{
+			return update(id, null);
+		}
+		/**
+		 * Update existing record.
+		 * @param id is id of record to update
+		 * @param stmtCache is cache of compiled statements to reuse, or null to compile statement for single use
+		 */
+		boolean update( Long id, Map<String, SQLiteStatement> stmtCache )
 		{
 			if ( fields.size()==0 )
 				return false;
@@ -1555,11 +2171,47 @@ public class MainDB extends BaseDB {
 				buf.append("=?");
 				first = false;
 			}
-			buf.append(" WHERE id=" + id );
-			vlog.v("executing " + buf);
-			mDB.execSQL(buf.toString(), values.toArray());
+			buf.append(" WHERE id=?");
+			String sql = buf.toString();
+			vlog.v("executing " + sql + ", id=" + id);
+			SQLiteStatement stmt = compileCached(sql, stmtCache);
+			try {
+				bindValues(stmt, values);
+				stmt.bindLong(values.size() + 1, id);
+				stmt.execute();
+			} finally {
+				if (stmtCache == null)
+					stmt.close();
+			}
 			return true;
 		}
+		private SQLiteStatement compileCached(String sql, Map<String, SQLiteStatement> stmtCache)
+		{
+			if (stmtCache == null)
+				return mDB.compileStatement(sql);
+			SQLiteStatement stmt = stmtCache.get(sql);
+			if (stmt == null) {
+				stmt = mDB.compileStatement(sql);
+				stmtCache.put(sql, stmt);
+			} else {
+				stmt.clearBindings();
+			}
+			return stmt;
+		}
+		private void bindValues(SQLiteStatement stmt, ArrayList<Object> values)
+		{
+			for (int i = 1; i <= values.size(); i++) {
+				Object v = values.get(i - 1);
+				if (v == null)
+					stmt.bindNull(i);
+				else if (v instanceof String)
+					stmt.bindString(i, (String) v);
+				else if (v instanceof Long)
+					stmt.bindLong(i, (Long) v);
+				else if (v instanceof Double)
+					stmt.bindDouble(i, (Double) v);
+			}
+		}
 		Long fromFormat( DocumentFormat f )
 		{
 			if ( f==null )
@@ -1616,7 +2268,8 @@ public class MainDB extends BaseDB {
 		"s.name as series_name, " +
 		"series_number, " +
 		"format, filesize, arcsize, " +
-		"create_time, last_access_time, flags, language, description, crc32, domVersion, rendFlags ";
+		"create_time, last_access_time, flags, language, description, crc32, domVersion, rendFlags, " +
+		"(SELECT bf.sha512 FROM book_fingerprint bf WHERE bf.book_fk=b.id) as sha512 ";
 	
 	private static final String READ_FILEINFO_SQL = 
 		"SELECT " +
@@ -1650,6 +2303,7 @@ public class MainDB extends BaseDB {
 		fileInfo.crc32 = rs.getLong(i++);
 		fileInfo.domVersion = rs.getInt(i++);
 		fileInfo.blockRenderingFlags = rs.getInt(i++);
+		fileInfo.contentHash = rs.getString(i++);
 		fileInfo.isArchive = fileInfo.arcname != null;
 	}
 
@@ -1697,6 +2351,176 @@ public class MainDB extends BaseDB {
 	public ArrayList<FileInfo> findByPatterns(int maxCount, String authors, String title, String series, String filename)
 	{
 		beginReading();
+		long startTime = Utils.timeStamp();
+		ArrayList<FileInfo> list;
+		if (isFullTextIndexAvailable() && hasFullTextTerms(authors, title, series, filename))
+			list = findByPatternsIndexed(maxCount, authors, title, series, filename);
+		else
+			list = findByPatternsScan(maxCount, authors, title, series, filename);
+		endReading();
+		log.d("findByPatterns: " + list.size() + " books found in " + Utils.timeInterval(startTime) + " ms");
+		return list;
+	}
+
+	/**
+	 * Check if full-text query can be made for patterns: some of patterns is not empty after normalization
+	 * (e.g. has more than punctuation), and each of authors is not empty too, since query is made for each author.
+	 */
+	private static boolean hasFullTextTerms(String authors, String title, String series, String filename) {
+		StringBuilder buf = new StringBuilder();
+		appendFullTextTerms(buf, "title", title);
+		appendFullTextTerms(buf, "series", series);
+		appendFullTextTerms(buf, "filename", filename);
+		if (authors != null && authors.length() > 0) {
+			for (String author : authors.split("\\|")) {
+				StringBuilder q = new StringBuilder(buf);
+				appendFullTextTerms(q, "authors", author);
+				if (q.length() == 0)
+					return false;
+			}
+			return true;
+		}
+		return buf.length() > 0;
+	}
+
+	/**
+	 * Find books using full-text index: index gives candidates by word prefixes,
+	 * candidates are checked with Utils.matchPattern() to keep exact search semantics, then ranked.
+	 * Candidates are read best first, ranked by title, series and filename in SQL, until no more of them
+	 * can get into maxCount best books; authors rank is known only after book is loaded.
+	 */
+	private ArrayList<FileInfo> findByPatternsIndexed(int maxCount, String authors, String title, String series, String filename)
+	{
+		ArrayList<FileInfo> list = new ArrayList<>();
+		StringBuilder buf = new StringBuilder();
+		appendFullTextTerms(buf, "title", title);
+		appendFullTextTerms(buf, "series", series);
+		appendFullTextTerms(buf, "filename", filename);
+		// When synchronizing from the cloud, the 'authors' variable can contain multiple authors separated by '|'.
+		// See MainDB.READ_FILEINFO_FIELDS
+		String[] authorsArray = authors != null && authors.length() > 0 ? authors.split("\\|") : null;
+		ArrayList<String> queries = new ArrayList<>();
+		if (authorsArray != null) {
+			// any of authors: separate query for each one
+			for (String author : authorsArray) {
+				StringBuilder q = new StringBuilder(buf);
+				appendFullTextTerms(q, "authors", author);
+				queries.add(q.toString());
+			}
+		} else {
+			queries.add(buf.toString());
+		}
+		// the same weights as in rank calculated below
+		ArrayList<String> args = new ArrayList<>();
+		StringBuilder rankExpr = new StringBuilder();
+		appendSearchRankExpression(rankExpr, args, "title", title, 3);
+		appendSearchRankExpression(rankExpr, args, "series", series, 2);
+		appendSearchRankExpression(rankExpr, args, "filename", filename, 1);
+		if (rankExpr.length() == 0)
+			rankExpr.append("0");
+		final int maxAuthorsRank = authorsArray != null ? 2 * 2 : 0;
+		String sql = "SELECT docid, " + rankExpr + " AS search_rank FROM book_fts WHERE book_fts MATCH ? ORDER BY search_rank DESC";
+		final IdentityHashMap<FileInfo, Integer> ranks = new IdentityHashMap<>();
+		HashSet<Long> foundIds = new HashSet<>();
+		for (String query : queries) {
+			if (query.length() == 0)
+				continue;
+			// each query is limited separately
+			ArrayList<FileInfo> found = new ArrayList<>();
+			args.add(query);
+			try (Cursor rs = mDB.rawQuery(sql, args.toArray(new String[0]))) {
+				ArrayList<Long> chunk = new ArrayList<>();
+				boolean hasMore = rs.moveToFirst();
+				while (hasMore) {
+					long id = rs.getLong(0);
+					int candidateRank = rs.getInt(1);
+					if (foundIds.add(id))
+						chunk.add(id);
+					hasMore = rs.moveToNext();
+					if (hasMore && chunk.size() < SAVE_FILEINFOS_CHUNK_SIZE)
+						continue;
+					loadSearchCandidates(chunk, authorsArray, title, series, filename, found, ranks);
+					chunk.clear();
+					if (found.size() >= maxCount) {
+						sortSearchResults(found, ranks);
+						while (found.size() > maxCount)
+							found.remove(found.size() - 1);
+						// candidates left are not ranked higher than last one read
+						if (ranks.get(found.get(maxCount - 1)) >= candidateRank + maxAuthorsRank)
+							break;
+					}
+				}
+			}
+			args.remove(args.size() - 1);
+			list.addAll(found);
+		}
+		// best matches first
+		sortSearchResults(list, ranks);
+		while (list.size() > maxCount)
+			list.remove(list.size() - 1);
+		for (FileInfo fi : list)
+			fileInfoCache.put(fi);
+		return list;
+	}
+
+	/**
+	 * Load books found in full-text index, add ones matching patterns to list and their ranks to map.
+	 */
+	private void loadSearchCandidates(ArrayList<Long> ids, String[] authorsArray, String title, String series, String filename,
+									  ArrayList<FileInfo> list, IdentityHashMap<FileInfo, Integer> ranks) {
+		if (ids.isEmpty())
+			return;
+		StringBuilder idsBuf = new StringBuilder();
+		for (int i = 0; i < ids.size(); i++) {
+			if (i > 0)
+				idsBuf.append(",");
+			idsBuf.append(ids.get(i));
+		}
+		String sql = READ_FILEINFO_SQL + " WHERE b.id IN (" + idsBuf + ")";
+		try (Cursor rs = mDB.rawQuery(sql, null)) {
+			if (rs.moveToFirst()) {
+				do {
+					if (title != null && title.length() > 0 && !Utils.matchPattern(rs.getString(5), title))
+						continue;
+					if (filename != null && filename.length() > 0 && !Utils.matchPattern(rs.getString(3), filename))
+						continue;
+					FileInfo fi = new FileInfo();
+					readFileInfoFromCursor(fi, rs);
+					if (series != null && series.length() > 0 && !Utils.matchPattern(fi.series, series))
+						continue;
+					int authorsRank = 0;
+					if (authorsArray != null) {
+						authorsRank = getAuthorsSearchRank(fi.authors, authorsArray);
+						if (authorsRank < 0)
+							continue;
+					}
+					int rank = 3 * getSearchRank(fi.title, title) + 2 * authorsRank
+							+ 2 * getSearchRank(fi.series, series) + getSearchRank(fi.filename, filename);
+					ranks.put(fi, rank);
+					list.add(fi);
+				} while (rs.moveToNext());
+			}
+		}
+	}
+
+	private static void sortSearchResults(ArrayList<FileInfo> list, final IdentityHashMap<FileInfo, Integer> ranks) {
+		Collections.sort(list, (f1, f2) -> {
+			int res = ranks.get(f2) - ranks.get(f1);
+			if (res != 0)
+				return res;
+			String t1 = f1.title != null ? f1.title : f1.filename;
+			String t2 = f2.title != null ? f2.title : f2.filename;
+			if (t1 == null || t2 == null)
+				return t1 == null ? (t2 == null ? 0 : 1) : -1;
+			return t1.compareToIgnoreCase(t2);
+		});
+	}
+
+	/**
+	 * Find books scanning all records, used when full-text index is not available.
+	 */
+	private ArrayList<FileInfo> findByPatternsScan(int maxCount, String authors, String title, String series, String filename)
+	{
 		ArrayList<FileInfo> list = new ArrayList<>();
 		StringBuilder buf = new StringBuilder();
 		boolean hasCondition = false;
@@ -1759,7 +2583,6 @@ public class MainDB extends BaseDB {
 				} while (count < maxCount && rs.moveToNext());
 			}
 		}
-		endReading();
 		return list;
 	}
 
@@ -1863,58 +2686,117 @@ public class MainDB extends BaseDB {
 		return list;
 	}
 
+	/**
+	 * Max number of values in single IN (...) lookup.
+	 */
+	private final static int FIND_BY_FINGERPRINTS_CHUNK_SIZE = 500;
+
 	public ArrayList<FileInfo> findByFingerprints(int maxCount, Collection<String> fingerprints)
 	{
-		// TODO: replace crc32 with sha512
+		return findByFingerprints(maxCount, fingerprints, null);
+	}
 
+	/**
+	 * Find books by fingerprints, using indexed lookups.
+	 * @param maxCount is max number of books to return
+	 * @param fingerprints are crc32 of book files as decimal strings, can be null
+	 * @param contentHashes are SHA-512 of book files as hex strings, can be null
+	 * @return books having any of specified crc32 or content hashes
+	 */
+	public ArrayList<FileInfo> findByFingerprints(int maxCount, Collection<String> fingerprints, Collection<String> contentHashes)
+	{
 		ArrayList<FileInfo> list = new ArrayList<>();
-		if (fingerprints.size() < 1)
+		ArrayList<String> crcValues = new ArrayList<>();
+		if (fingerprints != null) {
+			HashSet<Long> unique = new HashSet<>();
+			for (String fingerprint : fingerprints) {
+				try {
+					long crc = Long.parseLong(fingerprint);
+					if (unique.add(crc))
+						crcValues.add(Long.toString(crc));
+				} catch (NumberFormatException e) {
+					log.w("findByFingerprints: invalid fingerprint " + fingerprint);
+				}
+			}
+		}
+		ArrayList<String> hashValues = new ArrayList<>();
+		if (contentHashes != null) {
+			HashSet<String> unique = new HashSet<>();
+			for (String hash : contentHashes) {
+				if (hash == null || !hash.matches("[0-9a-fA-F]+"))
+					continue;
+				hash = hash.toLowerCase();
+				if (unique.add(hash))
+					hashValues.add("'" + hash + "'");
+			}
+		}
+		if (crcValues.isEmpty() && hashValues.isEmpty())
 			return list;
 
 		beginReading();
-		StringBuilder condition = new StringBuilder(" WHERE ");
-		Iterator<String> it = fingerprints.iterator();
-		while (it.hasNext()) {
-			condition.append("b.crc32=").append(it.next());
-			if (it.hasNext())
-				condition.append(" OR ");
-		}
-		String sql = READ_FILEINFO_SQL + condition.toString();
-		Log.d("cr3", "sql: " + sql );
-		try (Cursor rs = mDB.rawQuery(sql, null)) {
-			if (rs.moveToFirst()) {
-				int count = 0;
-				do {
-					FileInfo fi = new FileInfo();
-					readFileInfoFromCursor(fi, rs);
-					list.add(fi);
-					fileInfoCache.put(fi);
-					count++;
-				} while (count < maxCount && rs.moveToNext());
-			}
-		}
+		HashSet<Long> foundIds = new HashSet<>();
+		findByFingerprintsChunked(maxCount, "b.id IN (SELECT bf.book_fk FROM book_fingerprint bf WHERE bf.sha512 IN (%s))", hashValues, foundIds, list);
+		findByFingerprintsChunked(maxCount, "b.crc32 IN (%s)", crcValues, foundIds, list);
 		endReading();
 		return list;
 	}
 
+	private void findByFingerprintsChunked(int maxCount, String conditionFormat, ArrayList<String> values, HashSet<Long> foundIds, ArrayList<FileInfo> list) {
+		for (int start = 0; start < values.size() && list.size() < maxCount; start += FIND_BY_FINGERPRINTS_CHUNK_SIZE) {
+			int end = Math.min(values.size(), start + FIND_BY_FINGERPRINTS_CHUNK_SIZE);
+			StringBuilder buf = new StringBuilder();
+			for (int i = start; i < end; i++) {
+				if (i > start)
+					buf.append(",");
+				buf.append(values.get(i));
+			}
+			String sql = READ_FILEINFO_SQL + " WHERE " + String.format(conditionFormat, buf);
+			try (Cursor rs = mDB.rawQuery(sql, null)) {
+				if (rs.moveToFirst()) {
+					do {
+						FileInfo fi = new FileInfo();
+						readFileInfoFromCursor(fi, rs);
+						if (!foundIds.add(fi.id))
+							continue;
+						list.add(fi);
+						fileInfoCache.put(fi);
+					} while (list.size() < maxCount && rs.moveToNext());
+				}
+			}
+		}
+	}
+
 	public ArrayList<FileInfo> loadFileInfos(ArrayList<String> pathNames, final Scanner.ScanControl control, final Engine.ProgressControl progress) {
 		ArrayList<FileInfo> list = new ArrayList<>();
 		if (!isOpened())
 			return list;
 		try {
+			long start = Utils.timeStamp();
 			beginReading();
+			// load all known records at once
+			HashMap<String, FileInfo> found = new HashMap<>(pathNames.size());
+			int queries = findFileInfosByPathnames(pathNames, found, control);
+			progress.setProgress(2500);
+			// check remaining paths for moved files one by one
 			int count = pathNames.size();
 			int i = 0;
+			int movedChecks = 0;
 			for (String path : pathNames) {
-				FileInfo file = findFileInfoByPathname(path, true);
 				if (control.isStopped())
 					break;
-				progress.setProgress(i * 10000 / (2*count));
+				FileInfo file = found.get(path);
+				if (file == null) {
+					movedChecks++;
+					file = findMovedFileInfo(path);
+					progress.setProgress(2500 + i * 2500 / count);
+				}
 				if (file != null)
 					list.add(new FileInfo(file));
 				i++;
 			}
 			endReading();
+			log.i("loadFileInfos: " + list.size() + " of " + count + " items loaded in " + Utils.timeInterval(start) + " ms, " +
+					queries + " bulk queries, " + movedChecks + " checks for moved files");
 		} catch (Exception e) {
 			log.e("Exception while loading books from DB", e);
 		}
@@ -2020,7 +2902,10 @@ public class MainDB extends BaseDB {
 		execSQLIgnoreErrors("DELETE FROM bookmark WHERE book_fk=" + bookId);
 		execSQLIgnoreErrors("DELETE FROM book_author WHERE book_fk=" + bookId);
 		execSQLIgnoreErrors("DELETE FROM book_genre WHERE book_fk=" + bookId);
+		execSQLIgnoreErrors("DELETE FROM book_fingerprint WHERE book_fk=" + bookId);
 		execSQLIgnoreErrors("DELETE FROM book WHERE id=" + bookId);
+		if (isFullTextIndexAvailable())
+			execSQLIgnoreErrors("DELETE FROM book_fts WHERE docid=" + bookId);
 		return bookId;
 	}
 	
@@ -2029,7 +2914,8 @@ public class MainDB extends BaseDB {
 		beginReading();
 		int rowCount = 0;
 		Map<String, Long> map = new HashMap<>();
-		String sql = "SELECT id, pathname FROM book";
+		Map<Long, String> filenames = new HashMap<>();
+		String sql = "SELECT id, pathname, filename FROM book";
 		try (Cursor rs = mDB.rawQuery(sql, null)) {
 			if (rs.moveToFirst()) {
 				// read DB
@@ -2044,6 +2930,7 @@ public class MainDB extends BaseDB {
 						Log.w("cr3", "DB contains unknown path " + pathname);
 					} else if (!pathname.equals(corrected)) {
 						map.put(pathname, id);
+						filenames.put(id, rs.getString(2));
 					}
 				} while (rs.moveToNext());
 			}
@@ -2059,7 +2946,17 @@ public class MainDB extends BaseDB {
 				String corrected = pathCorrector.normalize(pathname);
 				if (corrected != null && !corrected.equals(pathname)) {
 					count++;
-					execSQLIgnoreErrors("update book set pathname=" + quoteSqlString(corrected) + " WHERE id=" + entry.getValue());
+					Long id = entry.getValue();
+					String filename = corrected.substring(corrected.lastIndexOf('/') + 1);
+					if (filename.equals(filenames.get(id))) {
+						execSQLIgnoreErrors("update book set pathname=" + quoteSqlString(corrected) + " WHERE id=" + id);
+					} else {
+						execSQLIgnoreErrors("update book set pathname=" + quoteSqlString(corrected) + ", filename=" + quoteSqlString(filename) + " WHERE id=" + id);
+						// record is changed w/o save(): update its file name in full-text index too
+						FileInfo fileInfo = new FileInfo();
+						if (findBy(fileInfo, "b.id", id))
+							updateFullTextIndex(fileInfo, true);
+					}
 				}
 			}
 			flush();
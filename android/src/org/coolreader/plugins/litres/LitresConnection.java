@@ -24,6 +24,7 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import org.coolreader.crengine.L;
+import org.coolreader.crengine.TaskScheduler;
 import org.coolreader.crengine.Utils;
 import org.coolreader.db.ServiceThread;
 import org.coolreader.plugins.AsyncResponse;
@@ -224,7 +225,8 @@ public class LitresConnection {
 	public void sendFileRequest(final String url, final Map<String, String> params, final File fileToStore, final FileResponse contentHandler, final ResultHandler resultHandler) {
 		Log.i(TAG, "sending request to " + url);
 		final Handler callbackHandler = new Handler();
-		workerThread.post(new Runnable() {
+		// file downloads don't wait for catalog requests in worker thread
+		TaskScheduler.instance().post(TaskScheduler.Lane.IO, new Runnable() {
 			void onError(int errorCode, String errorMessage) {
 				contentHandler.onError(errorCode, errorMessage);
 				callbackHandler.post(() -> resultHandler.onResponse(contentHandler.getResponse()));
@@ -26,6 +26,7 @@ public final class FileMetadata implements Cloneable {
 
 	public static final String CUSTOM_PROP_FINGERPRINT = "cr3.fingerprint";
 	public static final String CUSTOM_PROP_SOURCE_SIZE = "cr3.filesize";
+	public static final String CUSTOM_PROP_CONTENT_HASH = "cr3.sha512";
 
 	public String id;
 	public String fileName;
@@ -70,6 +71,23 @@ public final class FileMetadata implements Cloneable {
 		appProperties.put(CUSTOM_PROP_FINGERPRINT, fingerprint);
 	}
 
+	public String getCustomPropContentHash() {
+		String hash = "";
+		if (null != appProperties) {
+			String str = appProperties.get(CUSTOM_PROP_CONTENT_HASH);
+			if (null != str) {
+				hash = str;
+			}
+		}
+		return hash;
+	}
+
+	public void setCustomPropContentHash(String hash) {
+		if (null == appProperties)
+			appProperties = new HashMap<String, String>();
+		appProperties.put(CUSTOM_PROP_CONTENT_HASH, hash);
+	}
+
 	public int getCustomPropSourceSize() {
 		int size = -1;
 		if (null != appProperties) {
@@ -51,6 +51,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.zip.GZIPInputStream;
@@ -1217,6 +1218,8 @@ public class Synchronizer {
 							HashMap<String, String> customProps = new HashMap<String, String>(2);
 							customProps.put(FileMetadata.CUSTOM_PROP_FINGERPRINT, fingerprint);
 							customProps.put(FileMetadata.CUSTOM_PROP_SOURCE_SIZE, Long.toString(bookFileSize, 10));
+							if (fileInfo.hasContentHash())
+								customProps.put(FileMetadata.CUSTOM_PROP_CONTENT_HASH, fileInfo.contentHash);
 							log.d("UploadCurrentBookBodySyncOperation: starting to upload file: " + bookFileName);
 							m_remoteAccess.writeFile(cloudFilePath, outputStream.toByteArray(), customProps, new OnOperationCompleteListener<Boolean>() {
 								@Override
@@ -1307,23 +1310,39 @@ public class Synchronizer {
 								CRDBService.LocalBinder db = m_coolReader.getDB();
 								ArrayList<DownloadInfo> filesToDownload = new ArrayList<DownloadInfo>();
 								ArrayList<String> fingerprints = new ArrayList<String>(filesToCheck.size());
+								ArrayList<String> contentHashes = new ArrayList<String>(filesToCheck.size());
 								for (DownloadInfo info : filesToCheck) {
 									fingerprints.add(info.m_meta.getCustomPropFingerprint());
+									String hash = info.m_meta.getCustomPropContentHash();
+									if (hash.length() > 0)
+										contentHashes.add(hash);
 								}
-								db.findByFingerprints(fingerprints.size() + 10, fingerprints, fileList -> {
+								db.findByFingerprints(fingerprints.size() + contentHashes.size() + 10, fingerprints, contentHashes, fileList -> {
 									// db service thread
+									// fingerprints of existing files
+									HashSet<String> existingHashes = new HashSet<String>();
+									HashSet<Long> existingCrc32 = new HashSet<Long>();
+									HashSet<Long> existingCrc32WithoutHash = new HashSet<Long>();
+									for (FileInfo fileInfo : fileList) {
+										if (!fileInfo.exists())
+											continue;
+										existingCrc32.add(fileInfo.crc32);
+										if (fileInfo.hasContentHash())
+											existingHashes.add(fileInfo.contentHash);
+										else
+											existingCrc32WithoutHash.add(fileInfo.crc32);
+									}
 									for (DownloadInfo reqinfo : filesToCheck) {
-										boolean found = false;
-										for (FileInfo fileInfo : fileList) {
-											long req_crc32 = -1;
-											try {
-												req_crc32 = Long.parseLong(reqinfo.m_meta.getCustomPropFingerprint());
-											} catch (Exception ignored) {}
-											if (fileInfo.crc32 == req_crc32 && fileInfo.exists()) {
-												found = true;
-												break;
-											}
-										}
+										long req_crc32 = -1;
+										try {
+											req_crc32 = Long.parseLong(reqinfo.m_meta.getCustomPropFingerprint());
+										} catch (Exception ignored) {}
+										String req_hash = reqinfo.m_meta.getCustomPropContentHash().toLowerCase();
+										boolean found;
+										if (req_hash.length() > 0)
+											found = existingHashes.contains(req_hash) || existingCrc32WithoutHash.contains(req_crc32);
+										else
+											found = existingCrc32.contains(req_crc32);
 										if (!found)
 											filesToDownload.add(reqinfo);
 									}
@@ -3,8 +3,9 @@ package org.coolreader.tts;
 public interface OnTTSStatusListener {
 	/**
 	 * On utterance speech synthesis started.
+	 * @param utteranceId id of started utterance, as passed to TTSControlBinder.queue()
 	 */
-	void onUtteranceStart();
+	void onUtteranceStart(String utteranceId);
 
 	/**
 	 * On utterance speech synthesis completed.
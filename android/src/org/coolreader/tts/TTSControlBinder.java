@@ -35,6 +35,18 @@ public class TTSControlBinder extends Binder {
 		mService.say(utterance, callback, new Handler());
 	}
 
+	public void queue(String utterance, String utteranceId, TTSControlService.BooleanResultCallback callback) {
+		mService.queue(utterance, utteranceId, callback, new Handler());
+	}
+
+	public void beginQueue() {
+		mService.beginQueue();
+	}
+
+	public void endQueue() {
+		mService.endQueue();
+	}
+
 	public void pause(TTSControlService.BooleanResultCallback callback) {
 		mService.pause(callback, new Handler());
 	}
@@ -57,6 +57,8 @@ import org.coolreader.db.Task;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -105,6 +107,12 @@ public class TTSControlService extends BaseService {
 	private String mAuthors;
 	private String mTitle;
 	private String mCurrentUtterance;
+	// utterances queued after current one: utterance id -> utterance
+	private final LinkedHashMap<String, String> mQueuedUtterances = new LinkedHashMap<>();
+	// utterances being prepared to queue by status listener, see beginQueue()
+	private int mPendingQueueRequests = 0;
+	// utterance is done w/o queued ones while queue requests are pending: next sentence is requested after them
+	private boolean mNextSentenceDeferred = false;
 	private Bitmap mCoverBitmap;
 	private Bundle mTTSParamsBundle = null;			// for API21+
 	private HashMap<String, String> mTTSParamsMap;	// for API<21
@@ -743,6 +751,15 @@ public class TTSControlService extends BaseService {
 	 * @param utterance Utterance to speech.
 	 */
 	private boolean say_impl(String utterance) {
+		return say_impl(utterance, CR3_UTTERANCE_ID);
+	}
+
+	/**
+	 * Add specified text to speech queue.
+	 * @param utterance Utterance to speech.
+	 * @param utteranceId Utterance id passed to progress listener.
+	 */
+	private boolean say_impl(String utterance, String utteranceId) {
 		if (null != mTTS) {
 			int ret;
 			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -750,13 +767,13 @@ public class TTSControlService extends BaseService {
 					mTTSParamsBundle = new Bundle();
 					mTTSParamsBundle.putInt(TextToSpeech.Engine.KEY_PARAM_STREAM, AudioManager.STREAM_MUSIC);
 				}
-				ret = mTTS.speak(utterance, TextToSpeech.QUEUE_ADD, mTTSParamsBundle, CR3_UTTERANCE_ID);
+				ret = mTTS.speak(utterance, TextToSpeech.QUEUE_ADD, mTTSParamsBundle, utteranceId);
 			} else {
 				if (null == mTTSParamsMap) {
 					mTTSParamsMap = new HashMap<String, String>();
 					mTTSParamsMap.put(TextToSpeech.Engine.KEY_PARAM_STREAM, String.valueOf(AudioManager.STREAM_MUSIC));
-					mTTSParamsMap.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, CR3_UTTERANCE_ID);
 				}
+				mTTSParamsMap.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, utteranceId);
 				ret = mTTS.speak(utterance, TextToSpeech.QUEUE_ADD, mTTSParamsMap);
 			}
 			return TextToSpeech.SUCCESS == ret;
@@ -764,11 +781,61 @@ public class TTSControlService extends BaseService {
 		return false;
 	}
 
+	/**
+	 * Remove utterance and all utterances queued before it from queue. Call with mLocker held.
+	 * @param utteranceId Utterance id.
+	 * @return utterance text, null if it's not queued.
+	 */
+	private String dequeueUtterance_impl(String utteranceId) {
+		if (!mQueuedUtterances.containsKey(utteranceId))
+			return null;
+		Iterator<Map.Entry<String, String>> it = mQueuedUtterances.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, String> entry = it.next();
+			it.remove();
+			if (entry.getKey().equals(utteranceId))
+				return entry.getValue();
+		}
+		return null;
+	}
+
+	private void onUtteranceStarted_impl(String utteranceId) {
+		synchronized (mLocker) {
+			String utterance = dequeueUtterance_impl(utteranceId);
+			if (null != utterance)
+				mCurrentUtterance = utterance;
+		}
+		if (null != mStatusListener)
+			mStatusListener.onUtteranceStart(utteranceId);
+	}
+
+	private void onUtteranceDone_impl(String utteranceId) {
+		boolean requestNext;
+		synchronized (mLocker) {
+			dequeueUtterance_impl(utteranceId);
+			// when next sentence is already queued, it's spoken w/o request;
+			// when it's being queued, it's spoken as soon as it's queued
+			requestNext = mQueuedUtterances.isEmpty() && 0 == mPendingQueueRequests;
+			if (mQueuedUtterances.isEmpty() && mPendingQueueRequests > 0)
+				mNextSentenceDeferred = true;
+		}
+		if (null != mStatusListener) {
+			mStatusListener.onUtteranceDone();
+			if (requestNext)
+				mStatusListener.onNextSentenceRequested(mBinder);
+		}
+	}
+
 	/**
 	 * Stop to speech current utterance. Optional callback can be used to implement sentence switch.
 	 * @param callback runnable to executed after completion.
 	 */
 	private boolean stopUtterance_impl(Runnable callback) {
+		synchronized (mLocker) {
+			// TTS engine drops queued utterances
+			mQueuedUtterances.clear();
+			mNextSentenceDeferred = false;
+		}
 		if (null != mTTS) {
 			mOnUtteranceStopOnce = callback;
 			if (mTTS.isSpeaking()) {
@@ -1094,6 +1161,75 @@ public class TTSControlService extends BaseService {
 		});
 	}
 
+	/**
+	 * Add utterance to speech queue, to speak it right after previous one w/o gap.
+	 * Supported when playing only, on API15+.
+	 * @param utterance Utterance to speech.
+	 * @param utteranceId Utterance id, passed to OnTTSStatusListener.onUtteranceStart() when it's spoken.
+	 */
+	public void queue(String utterance, String utteranceId, BooleanResultCallback callback, Handler handler) {
+		execTask(new Task("queue") {
+			@Override
+			public void work() {
+				boolean result = false;
+				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1 && State.PLAYING == getState_impl()) {
+					synchronized (mLocker) {
+						mQueuedUtterances.put(utteranceId, utterance);
+					}
+					result = say_impl(utterance, utteranceId);
+					if (!result) {
+						synchronized (mLocker) {
+							mQueuedUtterances.remove(utteranceId);
+						}
+					}
+				}
+				if (null != callback) {
+					final boolean res = result;
+					sendTask(handler, () -> callback.onResult(res));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Announce utterances to queue: while they are pending, next sentence is not requested
+	 * when current utterance is done, it's requested by endQueue() if nothing is queued then.
+	 * Call before say() of the utterance they should follow, to not miss its end.
+	 */
+	public void beginQueue() {
+		execTask(new Task("beginQueue") {
+			@Override
+			public void work() {
+				synchronized (mLocker) {
+					mPendingQueueRequests++;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Announced utterances are queued or dropped, each beginQueue() call must be paired with endQueue().
+	 */
+	public void endQueue() {
+		execTask(new Task("endQueue") {
+			@Override
+			public void work() {
+				boolean requestNext = false;
+				synchronized (mLocker) {
+					if (mPendingQueueRequests > 0)
+						mPendingQueueRequests--;
+					if (0 == mPendingQueueRequests && mNextSentenceDeferred) {
+						mNextSentenceDeferred = false;
+						// queued utterances are spoken right away, since TTS is idle
+						requestNext = mQueuedUtterances.isEmpty() && State.PLAYING == mState;
+					}
+				}
+				if (requestNext && null != mStatusListener)
+					mStatusListener.onNextSentenceRequested(mBinder);
+			}
+		});
+	}
+
 	public void pause(BooleanResultCallback callback, Handler handler) {
 		execTask(new Task("pause") {
 			@Override
@@ -1411,6 +1547,7 @@ public class TTSControlService extends BaseService {
 				mTTS.setOnUtteranceProgressListener(new UtteranceProgressListener() {
 					@Override
 					public void onStart(String utteranceId) {
+						onUtteranceStarted_impl(utteranceId);
 					}
 
 					@Override
@@ -1419,10 +1556,7 @@ public class TTSControlService extends BaseService {
 							mOnUtteranceStopOnce.run();
 							mOnUtteranceStopOnce = null;
 						}
-						if (null != mStatusListener) {
-							mStatusListener.onUtteranceDone();
-							mStatusListener.onNextSentenceRequested(mBinder);
-						}
+						onUtteranceDone_impl(utteranceId);
 						synchronized (mLocker) {
 							if (null != mMediaPlayer) {
 								mMediaPlayer.stop();
@@ -1450,10 +1584,7 @@ public class TTSControlService extends BaseService {
 								mOnUtteranceStopOnce.run();
 								mOnUtteranceStopOnce = null;
 							}
-							if (null != mStatusListener) {
-								mStatusListener.onUtteranceDone();
-								mStatusListener.onNextSentenceRequested(mBinder);
-							}
+							onUtteranceDone_impl(utteranceId);
 							synchronized (mLocker) {
 								if (null != mMediaPlayer) {
 									mMediaPlayer.stop();
@@ -1482,10 +1613,7 @@ public class TTSControlService extends BaseService {
 								mOnUtteranceStopOnce.run();
 								mOnUtteranceStopOnce = null;
 							}
-							if (null != mStatusListener) {
-								mStatusListener.onUtteranceDone();
-								mStatusListener.onNextSentenceRequested(mBinder);
-							}
+							onUtteranceDone_impl(utteranceId);
 							synchronized (mLocker) {
 								if (null != mMediaPlayer) {
 									mMediaPlayer.stop();
@@ -0,0 +1,115 @@
+package org.coolreader.crengine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class OPDSCacheTest {
+
+	private static final String FEED_TYPE = "application/atom+xml";
+
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("opds").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files)
+				f.delete();
+		}
+		dir.delete();
+	}
+
+	private static byte[] body(int size) {
+		byte[] body = new byte[size];
+		for (int i = 0; i < size; i++)
+			body[i] = (byte) ('a' + i % 26);
+		return body;
+	}
+
+	@Test
+	public void putAndGet() throws IOException {
+		OPDSCache cache = new OPDSCache(dir, 1000);
+		byte[] body = body(100);
+		cache.put("", "http://example.com/opds", "\"v1\"", null, FEED_TYPE, body);
+		OPDSCache.Response response = cache.get("", "http://example.com/opds");
+		assertNotNull(response);
+		assertEquals("http://example.com/opds", response.url);
+		assertEquals("\"v1\"", response.etag);
+		assertNull(response.lastModified);
+		assertEquals(FEED_TYPE, response.contentType);
+		assertArrayEquals(body, Files.readAllBytes(response.bodyFile.toPath()));
+		assertNull(cache.get("", "http://example.com/other"));
+	}
+
+	@Test
+	public void responseWithoutValidatorsIsNotSaved() {
+		OPDSCache cache = new OPDSCache(dir, 1000);
+		cache.put("", "http://example.com/opds", null, null, FEED_TYPE, body(100));
+		assertNull(cache.get("", "http://example.com/opds"));
+	}
+
+	@Test
+	public void tooLargeResponseIsNotSaved() {
+		OPDSCache cache = new OPDSCache(dir, 1000);
+		cache.put("", "http://example.com/opds", "\"v1\"", null, FEED_TYPE, body(251));
+		assertNull(cache.get("", "http://example.com/opds"));
+	}
+
+	@Test
+	public void responsesAreSeparatedByCatalog() {
+		OPDSCache cache = new OPDSCache(dir, 1000);
+		String key1 = OPDSCache.getCatalogKey("user1", "pass");
+		String key2 = OPDSCache.getCatalogKey("user2", "pass");
+		cache.put(key1, "http://example.com/opds", "\"v1\"", null, FEED_TYPE, body(10));
+		assertNotNull(cache.get(key1, "http://example.com/opds"));
+		assertNull(cache.get(key2, "http://example.com/opds"));
+		assertNull(cache.get("", "http://example.com/opds"));
+	}
+
+	@Test
+	public void trimRemovesLeastRecentlyUsed() {
+		OPDSCache cache = new OPDSCache(dir, 1000);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 4; i++) {
+			cache.put("", "http://example.com/" + i, "\"v1\"", null, FEED_TYPE, body(250));
+			// older entries are used less recently
+			cache.get("", "http://example.com/" + i).bodyFile.setLastModified(now - (10 - i) * 10000L);
+		}
+		// entry 0 is revalidated, so it's used most recently
+		cache.touch(cache.get("", "http://example.com/0"));
+		cache.put("", "http://example.com/4", "\"v1\"", null, FEED_TYPE, body(250));
+		assertNotNull(cache.get("", "http://example.com/0"));
+		assertNull(cache.get("", "http://example.com/1"));
+		for (int i = 2; i <= 4; i++)
+			assertNotNull(cache.get("", "http://example.com/" + i));
+	}
+
+	@Test
+	public void catalogKey() {
+		assertEquals("", OPDSCache.getCatalogKey(null, null));
+		assertEquals("", OPDSCache.getCatalogKey("", ""));
+		String key = OPDSCache.getCatalogKey("user", "pass");
+		assertEquals(key, OPDSCache.getCatalogKey("user", "pass"));
+		assertNotEquals("", key);
+		assertNotEquals(key, OPDSCache.getCatalogKey("user", "other"));
+		assertNotEquals(key, OPDSCache.getCatalogKey("user", null));
+		// key is used in file names: it must not contain credentials
+		assertEquals(-1, key.indexOf("pass"));
+	}
+}
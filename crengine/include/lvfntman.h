@@ -23,6 +23,18 @@
 #include "lvarray.h"
 #include "lvcontainer.h"
 
+/// properties of registered font face, allow to register it again w/o parsing of font file
+struct font_face_props_t {
+    lString8 fileName;
+    int index;
+    int weight;
+    bool italic;
+    bool scalable;
+    css_font_family_t family;
+    lString8 typeface;
+    font_face_props_t() : index(0), weight(400), italic(false), scalable(true), family(css_ff_sans_serif) { }
+};
+
 /// font manager interface class
 class LVFontManager {
 protected:
@@ -71,6 +83,8 @@ public:
     }
     /// registers font by name
     virtual bool RegisterFont( lString8 name ) = 0;
+    /// registers font face with known properties, font file is not opened until font is used
+    virtual bool RegisterFontFace( const font_face_props_t & /*props*/ ) { return false; }
     /// registers font by name and face
     virtual bool RegisterExternalFont(int /*documentId*/, lString32 /*name*/, lString8 /*face*/, bool /*bold*/, bool /*italic*/) { return false; }
     /// registers document font
@@ -125,6 +139,10 @@ public:
     virtual void getFaceList( lString32Collection & ) { }
     /// returns available font files
     virtual void getFontFileNameList( lString32Collection & ) { }
+    /// returns properties of registered font faces, except document fonts
+    virtual void getFontFacePropsList( LVArray<font_face_props_t> & ) { }
+    /// returns font files with faces skipped as duplicates of already registered faces
+    virtual void getDuplicateFontFileList( lString32Collection & ) { }
     /// check font language compatibility
     virtual font_lang_compat checkFontLangCompat(const lString8 &typeface, const lString8 &langTag) { return font_lang_compat_invalid_tag; }
     /// returns first found face from passed list, or return face for font found by family only
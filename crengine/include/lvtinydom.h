@@ -643,6 +643,8 @@ public:
     void invalidateCacheFile() { _cacheFileLeaveAsDirty = true; }
     /// get cache file full path
     lString32 getCacheFilePath();
+    /// get full path of cache file in use, or of file to be created on swap to cache; empty if cache is disabled
+    lString32 getCacheFileTargetPath();
 #endif
 
     /// minimize memory consumption
@@ -2877,6 +2879,8 @@ public:
     static LVStreamRef openExisting( lString32 filename, lUInt32 crc, lUInt32 docFlags, lString32 &cachePath );
     /// create new cache file
     static LVStreamRef createNew( lString32 filename, lUInt32 crc, lUInt32 docFlags, lUInt32 fileSize, lString32 &cachePath );
+    /// returns full path of cache file for document, empty string if cache is disabled
+    static lString32 getFilePath( lString32 filename, lUInt32 crc, lUInt32 docFlags );
     /// init document cache
     static bool init( lString32 cacheDir, lvsize_t maxSize );
     /// close document cache manager
@@ -52,7 +52,8 @@ void CRThreadExecutor::run() {
         {
             CRGuard guard(_monitor);
             CR_UNUSED(guard);
-            if (_queue.length() == 0)
+            // monitor may wake up spuriously
+            while (_queue.length() == 0 && !_stopped)
                 _monitor->wait();
             if (_stopped)
                 break;
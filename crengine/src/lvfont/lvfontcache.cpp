@@ -193,6 +193,34 @@ static int s_int_comparator(const void * n1, const void * n2)
     return *i1 == *i2 ? 0 : (*i1 < *i2 ? -1 : 1);
 }
 
+void LVFontCache::getFontFacePropsList(LVArray<font_face_props_t> &list) {
+    list.clear();
+    for (int i = 0; i < _registered_list.length(); i++) {
+        LVFontDef *def = _registered_list[i]->getDef();
+        // skip document fonts, aliases, synthesized weights and fake italic definitions
+        if (def->getDocumentId() != -1 || def->getName().empty() || !def->isRealWeight())
+            continue;
+        if (def->getItalic() && !def->isRealItalic())
+            continue;
+        font_face_props_t props;
+        props.fileName = def->getName();
+        props.index = def->getIndex();
+        props.weight = def->getWeight();
+        props.italic = def->getItalic();
+        props.family = def->getFamily();
+        props.typeface = def->getTypeFace();
+        // only scalable faces have fake italic definition
+        props.scalable = props.italic;
+        for (int j = 0; j < _registered_list.length() && !props.scalable; j++) {
+            LVFontDef *other = _registered_list[j]->getDef();
+            if (other->getItalic() && !other->isRealItalic() && other->getDocumentId() == -1
+                    && other->getIndex() == def->getIndex() && other->getName() == def->getName())
+                props.scalable = true;
+        }
+        list.add(props);
+    }
+}
+
 void LVFontCache::getAvailableFontWeights(LVArray<int>& weights, lString8 faceName) {
     weights.clear();
     for (int i = 0; i < _registered_list.length(); i++) {
@@ -20,6 +20,7 @@
 #include "lvptrvec.h"
 #include "lvstring32collection.h"
 #include "lvfontdef.h"
+#include "lvfntman.h"
 
 /// font cache item
 class LVFontCacheItem {
@@ -106,6 +107,8 @@ public:
         list.sort();
     }
 
+    virtual void getFontFacePropsList(LVArray<font_face_props_t> &list);
+
     virtual void getAvailableFontWeights(LVArray<int>& weights, lString8 faceName);
 
     virtual void clearFallbackFonts() {
@@ -763,6 +763,17 @@ void LVFreeTypeFontManager::getFontFileNameList(lString32Collection &list) {
     _cache.getFontFileNameList(list);
 }
 
+void LVFreeTypeFontManager::getFontFacePropsList(LVArray<font_face_props_t> &list) {
+    FONT_MAN_GUARD
+    _cache.getFontFacePropsList(list);
+}
+
+void LVFreeTypeFontManager::getDuplicateFontFileList(lString32Collection &list) {
+    FONT_MAN_GUARD
+    list.clear();
+    list.addAll(_duplicateFontFiles);
+}
+
 bool LVFreeTypeFontManager::SetAlias(lString8 alias, lString8 facename, int id, bool bold, bool italic) {
     FONT_MAN_GUARD
     lString8 fontname=lString8("\0");
@@ -1458,6 +1469,7 @@ bool LVFreeTypeFontManager::RegisterFont(lString8 name) {
 
         if (_cache.findDuplicate(&def)) {
             CRLog::trace("font definition is duplicate");
+            _duplicateFontFiles.add(Utf8ToUnicode(name));
             return false;
         }
         _cache.update(&def, LVFontRef(NULL));
@@ -1482,6 +1494,35 @@ bool LVFreeTypeFontManager::RegisterFont(lString8 name) {
     return res;
 }
 
+bool LVFreeTypeFontManager::RegisterFontFace(const font_face_props_t &props) {
+    FONT_MAN_GUARD
+    // the same definition as RegisterFont() makes, but w/o opening of font file
+    LVFontDef def(
+            props.fileName,
+            -1, // height==-1 for scalable fonts
+            props.weight,
+            props.italic,
+            -1, // OpenType features = -1 for not yet instantiated fonts
+            props.family,
+            props.typeface,
+            props.index
+    );
+    if (_cache.findDuplicate(&def)) {
+        CRLog::trace("font definition is duplicate");
+        _duplicateFontFiles.add(Utf8ToUnicode(props.fileName));
+        return false;
+    }
+    _cache.update(&def, LVFontRef(NULL));
+    if (props.scalable && !def.getItalic()) {
+        // fake italic, see RegisterFont()
+        LVFontDef newDef( def );
+        newDef.setItalic(2); // can italicize
+        if ( !_cache.findDuplicate( &newDef ) )
+            _cache.update( &newDef, LVFontRef(NULL) );
+    }
+    return true;
+}
+
 bool LVFreeTypeFontManager::Init(lString8 path) {
     _path = path;
     initSystemFonts();
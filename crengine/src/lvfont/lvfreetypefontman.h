@@ -36,6 +36,7 @@ private:
     lString8 _path;
     lString8Collection _fallbackFontFaces;
     LVFontCache _cache;
+    lString32Collection _duplicateFontFiles;
     FT_Library _library;
     LVFontGlobalGlyphCache _globalCache;
     lString32 _requiredChars;
@@ -114,6 +115,12 @@ public:
     /// returns registered font files
     virtual void getFontFileNameList(lString32Collection &list);
 
+    /// returns properties of registered font faces, except document fonts
+    virtual void getFontFacePropsList(LVArray<font_face_props_t> &list);
+
+    /// returns font files with faces skipped as duplicates of already registered faces
+    virtual void getDuplicateFontFileList(lString32Collection &list);
+
     bool SetAlias(lString8 alias, lString8 facename, int id, bool bold, bool italic);
 
     virtual LVFontRef GetFont(int size, int weight, bool italic, css_font_family_t family, lString8 typeface,
@@ -137,6 +144,8 @@ public:
 
     virtual bool RegisterFont(lString8 name);
 
+    virtual bool RegisterFontFace(const font_face_props_t &props);
+
     virtual bool Init(lString8 path);
 
     virtual bool SetAsPreferredFontWithBias( lString8 face, int bias, bool clearOthersBias );
@@ -2811,6 +2811,15 @@ lString32 tinyNodeCollection::getCacheFilePath() {
     return _cacheFile != NULL ? _cacheFile->getCachePath() : lString32::empty_str;
 }
 
+lString32 tinyNodeCollection::getCacheFileTargetPath() {
+    if ( _cacheFile != NULL )
+        return _cacheFile->getCachePath();
+    // the same name as createCacheFile() uses
+    lString32 fname = getProps()->getStringDef( DOC_PROP_FILE_NAME, "noname" );
+    lUInt32 crc = (lUInt32)getProps()->getIntDef(DOC_PROP_FILE_CRC32, 0);
+    return ldomDocCache::getFilePath( fname, crc, getPersistenceFlags() );
+}
+
 void tinyNodeCollection::clearNodeStyle( lUInt32 dataIndex )
 {
     ldomNodeStyleInfo info;
@@ -16127,6 +16136,12 @@ public:
         return fn + lString32( s ); //_cacheDir +
     }
 
+    /// full path of cache file
+    lString32 getFilePath( lString32 filename, lUInt32 crc, lUInt32 docFlags )
+    {
+        return _cacheDir + makeFileName( filename, crc, docFlags );
+    }
+
     /// open existing cache file stream
     LVStreamRef openExisting( lString32 filename, lUInt32 crc, lUInt32 docFlags, lString32 &cachePath )
     {
@@ -16276,6 +16291,14 @@ LVStreamRef ldomDocCache::createNew( lString32 filename, lUInt32 crc, lUInt32 do
     return _cacheInstance->createNew( filename, crc, docFlags, fileSize, cachePath );
 }
 
+/// returns full path of cache file for document, empty string if cache is disabled
+lString32 ldomDocCache::getFilePath( lString32 filename, lUInt32 crc, lUInt32 docFlags )
+{
+    if ( !_cacheInstance )
+        return lString32::empty_str;
+    return _cacheInstance->getFilePath( filename, crc, docFlags );
+}
+
 /// delete all cache files
 bool ldomDocCache::clear()
 {